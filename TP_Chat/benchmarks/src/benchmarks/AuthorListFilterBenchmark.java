@@ -0,0 +1,131 @@
+package benchmarks;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.AuthorListFilter;
+import models.Message;
+
+/**
+ * Messages tested per second by an {@link AuthorListFilter} (author ids
+ * interned in the {@link models.AuthorTable} looked up in a bit set) versus
+ * looking up the authors names in a {@link HashSet} (as a filter on names
+ * would do), with half of the authors selected.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuthorListFilterBenchmark
+{
+	/**
+	 * Number of tested messages per invocation
+	 */
+	private static final int MESSAGES = 1024;
+
+	/**
+	 * Number of distinct authors
+	 */
+	@Param({"4", "1000"})
+	public int authors;
+
+	/**
+	 * Messages to test (including server's messages without author)
+	 */
+	private Message[] messages;
+
+	/**
+	 * Filter selecting even authors
+	 */
+	private AuthorListFilter filter;
+
+	/**
+	 * Names of even authors
+	 */
+	private Set<String> names;
+
+	/**
+	 * Generates messages, the filter and the names set
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		filter = new AuthorListFilter();
+		names = new HashSet<String>();
+		for (int i = 0; i < authors; i += 2)
+		{
+			String name = "author" + i;
+			filter.add(name);
+			names.add(name);
+		}
+		filter.setFiltering(true);
+
+		Random rand = new Random(MESSAGES);
+		messages = new Message[MESSAGES];
+		for (int i = 0; i < MESSAGES; i++)
+		{
+			int author = rand.nextInt(authors + 1);
+			messages[i] = new Message("content " + i,
+			                          (author < authors ? "author" + author :
+			                           null));
+		}
+	}
+
+	/**
+	 * Tests messages with {@link AuthorListFilter#test(Message)}
+	 * @return the number of accepted messages
+	 */
+	@Benchmark
+	@OperationsPerInvocation(MESSAGES)
+	public int filterTest()
+	{
+		int count = 0;
+		for (int i = 0; i < MESSAGES; i++)
+		{
+			if (filter.test(messages[i]))
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Tests messages authors names in a {@link HashSet}
+	 * @return the number of accepted messages
+	 */
+	@Benchmark
+	@OperationsPerInvocation(MESSAGES)
+	public int namesLookup()
+	{
+		int count = 0;
+		for (int i = 0; i < MESSAGES; i++)
+		{
+			String author = messages[i].getAuthor();
+			if ((author != null) && names.contains(author))
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,140 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Message;
+import models.Message.MessageOrder;
+
+/**
+ * Messages comparisons per second using {@link Message#compareTo(Message)}
+ * (criteria read from the shared criteria set on each comparison) versus a
+ * comparator compiled once with {@link Message#comparator(java.util.Collection)}
+ * for all combinations of {@link MessageOrder}s.
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageComparatorBenchmark
+{
+	/**
+	 * Number of compared pairs of messages per invocation
+	 */
+	private static final int PAIRS = 1024;
+
+	/**
+	 * Authors names used in generated messages (including server's messages
+	 * without author)
+	 */
+	private static final String[] AUTHORS =
+	{
+		"Zébulon", "Ténéphore", "Zéphirine", "Anatole", null
+	};
+
+	/**
+	 * Comma separated criteria: every ordered combination of distinct
+	 * {@link MessageOrder}s
+	 */
+	@Param({"DATE", "AUTHOR", "CONTENT",
+	        "AUTHOR,DATE", "DATE,AUTHOR", "AUTHOR,CONTENT", "CONTENT,AUTHOR",
+	        "DATE,CONTENT", "CONTENT,DATE",
+	        "AUTHOR,DATE,CONTENT", "AUTHOR,CONTENT,DATE", "DATE,AUTHOR,CONTENT",
+	        "DATE,CONTENT,AUTHOR", "CONTENT,AUTHOR,DATE", "CONTENT,DATE,AUTHOR"})
+	public String orders;
+
+	/**
+	 * Messages to compare: messages[i] is compared to messages[i + 1]
+	 */
+	private Message[] messages;
+
+	/**
+	 * Comparator compiled from {@link #orders}
+	 */
+	private Comparator<Message> comparator;
+
+	/**
+	 * Set criteria into {@link Message}, generates messages and compiles
+	 * {@link #comparator}
+	 */
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		List<MessageOrder> criteria = new ArrayList<MessageOrder>();
+		for (String order : orders.split(","))
+		{
+			criteria.add(MessageOrder.valueOf(order));
+		}
+
+		Message.clearOrders();
+		for (MessageOrder criterium : criteria)
+		{
+			Message.addOrder(criterium);
+		}
+		comparator = Message.comparator(criteria);
+
+		Random rand = new Random(PAIRS);
+		long time = System.currentTimeMillis();
+		messages = new Message[PAIRS + 1];
+		for (int i = 0; i < messages.length; i++)
+		{
+			// Few distinct values so that several criteria are used
+			messages[i] = new Message(new Date(time + rand.nextInt(4)),
+			                          "content " + rand.nextInt(4),
+			                          AUTHORS[rand.nextInt(AUTHORS.length)]);
+		}
+	}
+
+	/**
+	 * Comparisons with {@link Message#compareTo(Message)}
+	 * @return sum of comparisons results
+	 */
+	@Benchmark
+	@OperationsPerInvocation(PAIRS)
+	public int compareTo()
+	{
+		int sum = 0;
+		for (int i = 0; i < PAIRS; i++)
+		{
+			sum += messages[i].compareTo(messages[i + 1]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Comparisons with compiled comparator
+	 * @return sum of comparisons results
+	 */
+	@Benchmark
+	@OperationsPerInvocation(PAIRS)
+	public int compiledComparator()
+	{
+		int sum = 0;
+		for (int i = 0; i < PAIRS; i++)
+		{
+			sum += comparator.compare(messages[i], messages[i + 1]);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,170 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Message;
+
+/**
+ * Messages (de)serialized per second through long lived object streams as
+ * between the server and its clients (class descriptors are only written
+ * once per stream):
+ * <ul>
+ * <li>{@link #serialize()}: writing distinct messages (as broadcast by the
+ * server to each client)</li>
+ * <li>{@link #deserialize()}: reading messages (as a client's
+ * {@link chat.client.ServerHandler} does)</li>
+ * </ul>
+ * Streams are reset after each batch of messages so that their handle tables
+ * do not grow during the benchmark.
+ * @author davidroussel
+ */
+@State(Scope.Thread)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageSerializationBenchmark
+{
+	/**
+	 * Number of messages (de)serialized per invocation
+	 */
+	private static final int BATCH = 1024;
+
+	/**
+	 * Authors names used in generated messages (including server's messages
+	 * without author)
+	 */
+	private static final String[] AUTHORS =
+	{
+		"Zébulon", "Ténéphore", "Zéphirine", "Anatole", null
+	};
+
+	/**
+	 * Length of messages contents
+	 */
+	@Param({"16", "256"})
+	public int length;
+
+	/**
+	 * Messages to serialize
+	 */
+	private Message[] messages;
+
+	/**
+	 * Object stream discarding written bytes
+	 */
+	private ObjectOutputStream out;
+
+	/**
+	 * Serialized {@link #messages} (including the stream header)
+	 */
+	private byte[] serialized;
+
+	/**
+	 * Generates messages and serializes them once
+	 * @throws IOException if serialization fails
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		Random rand = new Random(BATCH);
+		long time = System.currentTimeMillis();
+		messages = new Message[BATCH];
+		for (int i = 0; i < BATCH; i++)
+		{
+			StringBuilder content = new StringBuilder(length);
+			while (content.length() < length)
+			{
+				content.append((char) ('a' + rand.nextInt(26)));
+			}
+			messages[i] = new Message(new Date(time + i),
+			                          content.toString(),
+			                          AUTHORS[rand.nextInt(AUTHORS.length)]);
+		}
+
+		out = new ObjectOutputStream(new OutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+				// discarded
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len)
+			{
+				// discarded
+			}
+		});
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes))
+		{
+			for (Message message : messages)
+			{
+				oos.writeObject(message);
+			}
+		}
+		serialized = bytes.toByteArray();
+	}
+
+	/**
+	 * Serializes a batch of messages
+	 * @return the last written message
+	 * @throws IOException if serialization fails
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Message serialize() throws IOException
+	{
+		for (int i = 0; i < BATCH; i++)
+		{
+			out.writeObject(messages[i]);
+		}
+		out.reset();
+		return messages[BATCH - 1];
+	}
+
+	/**
+	 * Deserializes a batch of messages
+	 * @return the sum of the read messages hash codes
+	 * @throws IOException if deserialization fails
+	 * @throws ClassNotFoundException if Message class can not be found
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int deserialize() throws IOException, ClassNotFoundException
+	{
+		int sum = 0;
+		ObjectInputStream in =
+		    new ObjectInputStream(new ByteArrayInputStream(serialized));
+		for (int i = 0; i < BATCH; i++)
+		{
+			sum += in.readObject().hashCode();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,250 @@
+package benchmarks;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import models.AuthorListFilter;
+import models.Message;
+import models.Message.MessageOrder;
+import models.MessageOrdering;
+import models.MessageStore;
+
+/**
+ * Refresh cost of the messages displayed in a GUI client sorted by date:
+ * <ul>
+ * <li>{@link #sortedStreamRefresh(Blackhole)}: sorting the whole messages
+ * collection with a stream (former behavior on each refresh)</li>
+ * <li>{@link #storeViewRefresh(Blackhole)}: traversing the sorted view of a
+ * {@link MessageStore} (full refresh without sorting)</li>
+ * <li>{@link #storeInsert()}: inserting new messages into the sorted view of a
+ * {@link MessageStore} (refresh when a new message arrives), which appends
+ * them at the end of the view since they are the most recent ones</li>
+ * <li>{@link #storeInsertMiddle()}: inserting new messages into the view of
+ * a {@link MessageStore} sorted by content, where they land anywhere in the
+ * view</li>
+ * <li>{@link #filteredViewRefresh(Blackhole)}: filtering the sorted view of a
+ * {@link MessageStore} with an {@link AuthorListFilter} on one author</li>
+ * <li>{@link #postingsRefresh(Blackhole)}: merging the posting lists of the
+ * same author (refresh when filtering is turned on)</li>
+ * </ul>
+ * @author davidroussel
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageStoreBenchmark
+{
+	/**
+	 * Number of messages inserted in a single shot of {@link #storeInsert()}
+	 */
+	private static final int BATCH = 1000;
+
+	/**
+	 * Authors names used in generated messages
+	 */
+	private static final String[] AUTHORS =
+	{
+		"Zébulon", "Ténéphore", "Zéphirine", "Anatole", "Eulalie", "Hippolyte"
+	};
+
+	/**
+	 * Number of messages already received
+	 */
+	@Param({"10000", "100000"})
+	public int size;
+
+	/**
+	 * Messages collection as formerly used by GUI clients
+	 */
+	private Vector<Message> vector;
+
+	/**
+	 * Messages store sorted by date
+	 */
+	private MessageStore store;
+
+	/**
+	 * Messages store sorted by content
+	 */
+	private MessageStore contentStore;
+
+	/**
+	 * Filter on the first author
+	 */
+	private AuthorListFilter filter;
+
+	/**
+	 * Ids of the authors selected in {@link #filter}
+	 */
+	private BitSet authorIds;
+
+	/**
+	 * New messages to insert during {@link #storeInsert()}
+	 */
+	private Message[] newMessages;
+
+	/**
+	 * Index of the next message to insert from {@link #newMessages}
+	 */
+	private int next;
+
+	/**
+	 * Generates a message
+	 * @param rand random generator
+	 * @param time message date (in ms)
+	 * @return a new message
+	 */
+	static Message newMessage(Random rand, long time)
+	{
+		return new Message(new Date(time),
+		                   "message " + rand.nextInt(),
+		                   AUTHORS[rand.nextInt(AUTHORS.length)]);
+	}
+
+	/**
+	 * Creates {@link #vector} and {@link #store} with {@link #size} messages
+	 * sorted by date
+	 */
+	@Setup(Level.Trial)
+	public void setupTrial()
+	{
+		Message.clearOrders();
+		Message.addOrder(MessageOrder.DATE);
+
+		Random rand = new Random(size);
+		long time = System.currentTimeMillis();
+		vector = new Vector<Message>(size);
+		for (int i = 0; i < size; i++)
+		{
+			// Messages arrive roughly in date order
+			vector.add(newMessage(rand, time + (i * 10) + rand.nextInt(50)));
+		}
+
+		filter = new AuthorListFilter();
+		filter.add(AUTHORS[0]);
+		filter.setFiltering(true);
+		authorIds = filter.getAuthorIds();
+
+		newMessages = new Message[BATCH];
+		for (int i = 0; i < BATCH; i++)
+		{
+			newMessages[i] = newMessage(rand, time + ((size + i) * 10));
+		}
+	}
+
+	/**
+	 * (Re)creates {@link #store} and {@link #contentStore} before each
+	 * iteration since {@link #storeInsert()} and {@link #storeInsertMiddle()}
+	 * add messages to them
+	 */
+	@Setup(Level.Iteration)
+	public void setupIteration()
+	{
+		store = new MessageStore();
+		store.setOrdering(Message.getOrdering());
+		contentStore = new MessageStore();
+		contentStore.setOrdering(MessageOrdering.of(MessageOrder.CONTENT));
+		for (Message m : vector)
+		{
+			store.add(m);
+			contentStore.add(m);
+		}
+		next = 0;
+	}
+
+	/**
+	 * Former refresh: sorting all messages
+	 * @param bh black hole consuming messages
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public void sortedStreamRefresh(Blackhole bh)
+	{
+		vector.stream().sorted().forEach(bh::consume);
+	}
+
+	/**
+	 * Full refresh from the sorted view of the store
+	 * @param bh black hole consuming messages
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public void storeViewRefresh(Blackhole bh)
+	{
+		store.stream().forEach(bh::consume);
+	}
+
+	/**
+	 * Filtered refresh: filtering all messages of the sorted view
+	 * @param bh black hole consuming messages
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public void filteredViewRefresh(Blackhole bh)
+	{
+		store.stream().filter(filter).forEach(bh::consume);
+	}
+
+	/**
+	 * Filtered refresh: merging posting lists of the selected authors
+	 * @param bh black hole consuming messages
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public void postingsRefresh(Blackhole bh)
+	{
+		store.stream(authorIds).forEach(bh::consume);
+	}
+
+	/**
+	 * Incremental refresh: insertion of a new message into the sorted view
+	 * @return the view index of the inserted message
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 10, batchSize = BATCH)
+	@Measurement(iterations = 20, batchSize = BATCH)
+	public int storeInsert()
+	{
+		return store.add(newMessages[next++]);
+	}
+
+	/**
+	 * Incremental refresh: insertion of a new message into a view sorted by
+	 * content (new messages are inserted in the middle of the view)
+	 * @return the view index of the inserted message
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 10, batchSize = BATCH)
+	@Measurement(iterations = 20, batchSize = BATCH)
+	public int storeInsertMiddle()
+	{
+		return contentStore.add(newMessages[next++]);
+	}
+}
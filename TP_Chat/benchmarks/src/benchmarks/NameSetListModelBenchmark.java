@@ -0,0 +1,135 @@
+package benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.NameSetListModel;
+
+/**
+ * Operations per second on a {@link NameSetListModel} (sorted names list of
+ * GUI clients) listened to by a {@link ListDataListener} as by a
+ * {@link javax.swing.JList}:
+ * <ul>
+ * <li>{@link #addRemove()}: adding or removing a random name (users
+ * logging in or out)</li>
+ * <li>{@link #indexOf()}: searching a random name</li>
+ * <li>{@link #getElements()}: accessing all rows (painting the list)</li>
+ * </ul>
+ * @author davidroussel
+ */
+@State(Scope.Thread)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NameSetListModelBenchmark
+{
+	/**
+	 * Number of distinct names (the model contains about half of them)
+	 */
+	@Param({"100", "10000"})
+	public int names;
+
+	/**
+	 * The model under test
+	 */
+	private NameSetListModel model;
+
+	/**
+	 * Pool of names added to or removed from {@link #model}
+	 */
+	private String[] pool;
+
+	/**
+	 * Creates {@link #model} containing half of the names of {@link #pool}
+	 */
+	@Setup(Level.Iteration)
+	public void setup()
+	{
+		model = new NameSetListModel();
+		pool = new String[names];
+		for (int i = 0; i < names; i++)
+		{
+			pool[i] = String.format("user%06d", i);
+			if ((i % 2) == 0)
+			{
+				model.add(pool[i]);
+			}
+		}
+		model.addListDataListener(new ListDataListener()
+		{
+			@Override
+			public void intervalAdded(ListDataEvent e)
+			{
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e)
+			{
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e)
+			{
+			}
+		});
+	}
+
+	/**
+	 * Adds or removes a random name
+	 * @return true if the model has changed
+	 */
+	@Benchmark
+	public boolean addRemove()
+	{
+		String name = pool[ThreadLocalRandom.current().nextInt(names)];
+		if (!model.add(name))
+		{
+			return model.remove(name);
+		}
+		return true;
+	}
+
+	/**
+	 * Searches a random name
+	 * @return the index of the name or -1
+	 */
+	@Benchmark
+	public int indexOf()
+	{
+		return model.indexOf(pool[ThreadLocalRandom.current().nextInt(names)]);
+	}
+
+	/**
+	 * Accesses all rows
+	 * @return the total length of the names
+	 */
+	@Benchmark
+	public int getElements()
+	{
+		int length = 0;
+		int size = model.getSize();
+		for (int i = 0; i < size; i++)
+		{
+			length += model.getElementAt(i).length();
+		}
+		return length;
+	}
+}
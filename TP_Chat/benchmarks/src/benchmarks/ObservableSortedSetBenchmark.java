@@ -0,0 +1,117 @@
+package benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.ConcurrentObservableSortedSet;
+import models.ObservableSortedSet;
+
+/**
+ * Contention between writers adding/removing names and readers iterating
+ * over an {@link ObservableSortedSet} (synchronized {@link java.util.TreeSet}
+ * with snapshot iterators) versus a {@link ConcurrentObservableSortedSet}
+ * (concurrent skip list with weakly consistent iterators).
+ * Each group runs 1 writer thread and 3 reader threads on the same set.
+ * @author davidroussel
+ */
+@State(Scope.Group)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ObservableSortedSetBenchmark
+{
+	/**
+	 * Set implementation: "synchronized" or "concurrent"
+	 */
+	@Param({"synchronized", "concurrent"})
+	public String impl;
+
+	/**
+	 * Number of distinct names (the set contains about half of them)
+	 */
+	@Param({"100", "10000"})
+	public int names;
+
+	/**
+	 * The set under test
+	 */
+	private ObservableSortedSet<String> set;
+
+	/**
+	 * Pool of names added to or removed from {@link #set}
+	 */
+	private String[] pool;
+
+	/**
+	 * Creates {@link #set} containing half of the names of {@link #pool}
+	 */
+	@Setup(Level.Iteration)
+	public void setup()
+	{
+		set = (impl.equals("concurrent") ?
+		    new ConcurrentObservableSortedSet<String>() :
+		    new ObservableSortedSet<String>());
+		pool = new String[names];
+		for (int i = 0; i < names; i++)
+		{
+			pool[i] = String.format("user%06d", i);
+			if ((i % 2) == 0)
+			{
+				set.add(pool[i]);
+			}
+		}
+		// An observer so that changes are fully notified
+		set.addObserver((o, arg) -> {});
+	}
+
+	/**
+	 * Writer: adds or removes a random name
+	 * @return true if the set has changed
+	 */
+	@Benchmark
+	@Group("addIterate")
+	@GroupThreads(1)
+	public boolean write()
+	{
+		String name = pool[ThreadLocalRandom.current().nextInt(names)];
+		if (!set.add(name))
+		{
+			return set.remove(name);
+		}
+		return true;
+	}
+
+	/**
+	 * Reader: iterates over the whole set
+	 * @return the total length of the names in the set
+	 */
+	@Benchmark
+	@Group("addIterate")
+	@GroupThreads(3)
+	public int iterate()
+	{
+		int length = 0;
+		for (String name : set)
+		{
+			length += name.length();
+		}
+		return length;
+	}
+}
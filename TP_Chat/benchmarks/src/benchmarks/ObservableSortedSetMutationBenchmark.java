@@ -0,0 +1,133 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.ConcurrentObservableSortedSet;
+import models.ObservableSortedSet;
+
+/**
+ * Uncontended mutations per second of an {@link ObservableSortedSet} versus
+ * a {@link ConcurrentObservableSortedSet} with an observer (so every change
+ * is recorded and notified):
+ * <ul>
+ * <li>{@link #addRemove()}: adding or removing a random name (one
+ * notification per change)</li>
+ * <li>{@link #batchAddRemove()}: adding then removing a batch of names with
+ * {@link ObservableSortedSet#addAll(java.util.Collection)} and
+ * {@link ObservableSortedSet#removeAll(java.util.Collection)} (one
+ * notification per batch)</li>
+ * </ul>
+ * See {@link ObservableSortedSetBenchmark} for contended accesses.
+ * @author davidroussel
+ */
+@State(Scope.Thread)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ObservableSortedSetMutationBenchmark
+{
+	/**
+	 * Number of names added and removed by {@link #batchAddRemove()}
+	 */
+	private static final int BATCH = 64;
+
+	/**
+	 * Set implementation: "synchronized" or "concurrent"
+	 */
+	@Param({"synchronized", "concurrent"})
+	public String impl;
+
+	/**
+	 * Number of distinct names (the set contains about half of them)
+	 */
+	@Param({"100", "10000"})
+	public int names;
+
+	/**
+	 * The set under test
+	 */
+	private ObservableSortedSet<String> set;
+
+	/**
+	 * Pool of names added to or removed from {@link #set}
+	 */
+	private String[] pool;
+
+	/**
+	 * Names absent from {@link #set} added and removed by
+	 * {@link #batchAddRemove()}
+	 */
+	private List<String> batch;
+
+	/**
+	 * Creates {@link #set} containing half of the names of {@link #pool}
+	 */
+	@Setup(Level.Iteration)
+	public void setup()
+	{
+		set = (impl.equals("concurrent") ?
+		    new ConcurrentObservableSortedSet<String>() :
+		    new ObservableSortedSet<String>());
+		pool = new String[names];
+		for (int i = 0; i < names; i++)
+		{
+			pool[i] = String.format("user%06d", i);
+			if ((i % 2) == 0)
+			{
+				set.add(pool[i]);
+			}
+		}
+		String[] absent = new String[BATCH];
+		for (int i = 0; i < BATCH; i++)
+		{
+			absent[i] = String.format("guest%06d", i);
+		}
+		batch = Arrays.asList(absent);
+		set.addObserver((o, arg) -> {});
+	}
+
+	/**
+	 * Adds or removes a random name
+	 * @return true if the set has changed
+	 */
+	@Benchmark
+	public boolean addRemove()
+	{
+		String name = pool[ThreadLocalRandom.current().nextInt(names)];
+		if (!set.add(name))
+		{
+			return set.remove(name);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds then removes {@link #batch}
+	 * @return true if the set has changed
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2 * BATCH)
+	public boolean batchAddRemove()
+	{
+		return set.addAll(batch) & set.removeAll(batch);
+	}
+}
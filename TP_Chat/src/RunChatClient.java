@@ -11,6 +11,8 @@ import java.util.Vector;
 import chat.Failure;
 import chat.UserOutputType;
 import chat.client.ChatClient;
+import chat.client.ClientLifecycle;
+import chat.client.MessageListener;
 import models.OSCheck;
 import widgets.AbstractClientFrame;
 import widgets.ClientFrame;
@@ -42,6 +44,12 @@ public class RunChatClient extends AbstractRunChat
 	 */
 	private OutputStream userOut;
 
+	/**
+	 * Listener receiving messages from server directly (without any output
+	 * stream) when the GUI supports {@link models.Message} objects
+	 */
+	private MessageListener userListener;
+
 	/**
 	 * Flag indicating if the client as a graphical interface or not
 	 */
@@ -57,6 +65,12 @@ public class RunChatClient extends AbstractRunChat
 	 */
 	private int guiVersion;
 
+	/**
+	 * Maximum number of messages kept in memory by the GUI (older messages
+	 * are spilled to a temporary file) or 0 to keep all messages in memory
+	 */
+	private int window;
+
 	/**
 	 * Clients threads pool containg all threads used in the client.
 	 * Typically there will be a thread for the {@link ChatClient} and
@@ -86,6 +100,7 @@ public class RunChatClient extends AbstractRunChat
 		 */
 		userIn = null;
 		userOut = null;
+		userListener = null;
 
 		/*
 		 * Client threads pool initialization
@@ -114,12 +129,14 @@ public class RunChatClient extends AbstractRunChat
 		host = null;
 		name = null;
 		gui = false;
+		window = 0;
 
 		/*
 		 * Client specific arguments parsing
 		 * -h | --host : server name or IP address
 		 * -n | --name : user name on server
 		 * -g | --gui : use GUI(s) or console interface
+		 * -w | --window : number of messages kept in memory by the GUI
 		 */
 		for (int i = 0; i < args.length; i++)
 		{
@@ -149,6 +166,23 @@ public class RunChatClient extends AbstractRunChat
 					logger.warning("Setting user name to: nothing, invalid value");
 				}
 			}
+			else if (args[i].equals("--window") || args[i].equals("-w"))
+			{
+				if (i < (args.length - 1))
+				{
+					// parse next arg for in window value
+					Integer windowInteger = readInt(args[++i]);
+					if ((windowInteger != null) && (windowInteger.intValue() >= 0))
+					{
+						window = windowInteger.intValue();
+					}
+					logger.fine("Setting messages window to " + window);
+				}
+				else
+				{
+					logger.warning("invalid window value");
+				}
+			}
 			if (args[i].equals("--gui") || args[i].equals("-g"))
 			{
 				gui = true;
@@ -237,7 +271,7 @@ public class RunChatClient extends AbstractRunChat
 		logger.info("Creating client to " + host + " at port " + port
 				+ " with verbose " + (verbose ? "on" : "off ... "));
 
-		Boolean commonRun;
+		ClientLifecycle lifecycle;
 
 		if (gui) // GUI client
 		{
@@ -249,41 +283,53 @@ public class RunChatClient extends AbstractRunChat
 			}
 
 			/*
-			 * We need a common run between the frame, the ServerHandler and the
-			 * UserHandler created below
+			 * We need a common lifecycle between the frame, the ServerHandler
+			 * and the UserHandler created below
 			 */
-			commonRun = Boolean.TRUE;
+			lifecycle = new ClientLifecycle(logger);
 
 			/*
 			 * Chat client window creation
 			 */
-			final AbstractClientFrame frame =
-			    (guiVersion > 1 ? new ClientFrame2(name,
-			                                       host,
-			                                       commonRun,
-			                                       logger) :
-			                      new ClientFrame(name,
-			                                      host,
-			                                      commonRun,
-			                                      logger));
+			final AbstractClientFrame frame;
+			if (guiVersion > 1)
+			{
+				ClientFrame2 frame2 = new ClientFrame2(name,
+				                                       host,
+				                                       lifecycle,
+				                                       window,
+				                                       logger);
+				/*
+				 * Messages objects are directly delivered to the frame's
+				 * message queue
+				 */
+				userListener = frame2.getMessageQueue();
+				frame = frame2;
+			}
+			else
+			{
+				frame = new ClientFrame(name, host, lifecycle, logger);
+			}
 
 			/*
 			 * TODO GUI Output stream instantiation: userOut from the
 			 * ClientFrame#getInPipe() :
 			 * 	- PipedOutputStream created on the frame's PipedInputStream
+			 * (only for text messages)
 			 */
-			try
+			if (userListener == null)
 			{
-				// userOut = TODO Complete ...
-				userOut = new PipedOutputStream(frame.getInPipe());
-				//throw new IOException(); // TODO Remove when done
-			}
-			catch (IOException e)
-			{
-				logger.severe(Failure.USER_OUTPUT_STREAM
-						+ " unable to get piped out stream");
-				logger.severe(e.getLocalizedMessage());
-				System.exit(Failure.USER_OUTPUT_STREAM.toInteger());
+				try
+				{
+					userOut = new PipedOutputStream(frame.getInPipe());
+				}
+				catch (IOException e)
+				{
+					logger.severe(Failure.USER_OUTPUT_STREAM
+							+ " unable to get piped out stream");
+					logger.severe(e.getLocalizedMessage());
+					System.exit(Failure.USER_OUTPUT_STREAM.toInteger());
+				}
 			}
 
 			/*
@@ -340,22 +386,36 @@ public class RunChatClient extends AbstractRunChat
 			userIn = System.in;
 			// userOut is simply the System output stream
 			userOut = System.out;
-			// We don't need a common run with console client
-			commonRun = null;
+			// Console client creates its own lifecycle
+			lifecycle = null;
 		}
 
 		/*
 		 * ChatClient launch
 		 */
-		UserOutputType outType = UserOutputType.fromInteger(guiVersion);
-		ChatClient client = new ChatClient(host,		// server's name or IP
-		                                   port,		// tcp port
-		                                   name,		// user's name
-		                                   userIn,		// user input
-		                                   userOut,		// user output
-		                                   outType,		// user output type (text or object)
-		                                   commonRun,	// GUI commonRun
-		                                   logger);		// parent logger
+		ChatClient client;
+		if (userListener != null)
+		{
+			client = new ChatClient(host,			// server's name or IP
+			                        port,			// tcp port
+			                        name,			// user's name
+			                        userIn,			// user input
+			                        userListener,	// direct user output
+			                        lifecycle,		// GUI lifecycle
+			                        logger);		// parent logger
+		}
+		else
+		{
+			UserOutputType outType = UserOutputType.fromInteger(guiVersion);
+			client = new ChatClient(host,		// server's name or IP
+			                        port,		// tcp port
+			                        name,		// user's name
+			                        userIn,		// user input
+			                        userOut,	// user output
+			                        outType,	// user output type (text or object)
+			                        lifecycle,	// GUI lifecycle
+			                        logger);	// parent logger
+		}
 		if (client.isReady())
 		{
 			Thread clientThread = new Thread(client);
@@ -1,9 +1,13 @@
 import java.io.IOException;
 import java.net.SocketException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import chat.Failure;
 import chat.Vocabulary;
 import chat.server.ChatServer;
+import chat.server.ServerMetrics;
 
 /**
  * Chat server launcher
@@ -29,6 +33,27 @@ public class RunChatServer extends AbstractRunChat
 	 */
 	private int history;
 
+	/**
+	 * Period (in seconds) of server's metrics dumps in the log (or 0 to dump
+	 * metrics only when the server terminates)
+	 * @see ServerMetrics#dump()
+	 */
+	private int metricsPeriod;
+
+	/**
+	 * Maximum number of messages per second each client can send (or 0 for
+	 * no limit)
+	 * @see ChatServer#setRateLimit(int)
+	 */
+	private int rateLimit;
+
+	/**
+	 * Maximum time (in ms) a broadcast can wait for a client before it is
+	 * disconnected (or 0 to never disconnect slow consumers)
+	 * @see ChatServer#setSlowConsumerTimeout(long)
+	 */
+	private int slowConsumerTimeout;
+
 	/**
 	 * Default time out to wait for client connection : 5 seconds
 	 */
@@ -62,6 +87,9 @@ public class RunChatServer extends AbstractRunChat
 		timeout = DEFAULTTIMEOUT;
 		quitOnLastclient = true;
 		history = DEFAULTHISTORY;
+		metricsPeriod = 0;
+		rateLimit = 0;
+		slowConsumerTimeout = 0;
 
 		/*
 		 * Common arguments parsing
@@ -75,6 +103,9 @@ public class RunChatServer extends AbstractRunChat
 		 * 	-t | --timeout : server socket wait timeout
 		 * 	-q | --quit : quits on last client logging out
 		 * 	-h | --history : number of messages to record
+		 * 	-m | --metrics : metrics dump period in seconds
+		 * 	-r | --rate : maximum messages per second of each client
+		 * 	-s | --slow : maximum time in ms a client can block broadcasts
 		 */
 		for (int i=0; i < args.length; i++)
 		{
@@ -122,6 +153,59 @@ public class RunChatServer extends AbstractRunChat
 					logger.warning("invalid history value");
 				}
 			}
+			if (args[i].equals("--metrics") || args[i].equals("-m"))
+			{
+				if (i < (args.length - 1))
+				{
+					// parse next arg for in metrics period value
+					Integer periodInteger = readInt(args[++i]);
+					if ((periodInteger != null) &&
+					    (periodInteger.intValue() >= 0))
+					{
+						metricsPeriod = periodInteger.intValue();
+					}
+					logger.info("Setting metrics period to " + metricsPeriod);
+				}
+				else
+				{
+					logger.warning("invalid metrics period value");
+				}
+			}
+			if (args[i].equals("--rate") || args[i].equals("-r"))
+			{
+				if (i < (args.length - 1))
+				{
+					// parse next arg for in rate limit value
+					Integer rateInteger = readInt(args[++i]);
+					if ((rateInteger != null) && (rateInteger.intValue() >= 0))
+					{
+						rateLimit = rateInteger.intValue();
+					}
+					logger.info("Setting rate limit to " + rateLimit);
+				}
+				else
+				{
+					logger.warning("invalid rate limit value");
+				}
+			}
+			if (args[i].equals("--slow") || args[i].equals("-s"))
+			{
+				if (i < (args.length - 1))
+				{
+					// parse next arg for in slow consumer timeout value
+					Integer slowInteger = readInt(args[++i]);
+					if ((slowInteger != null) && (slowInteger.intValue() >= 0))
+					{
+						slowConsumerTimeout = slowInteger.intValue();
+					}
+					logger.info("Setting slow consumer timeout to "
+					    + slowConsumerTimeout);
+				}
+				else
+				{
+					logger.warning("invalid slow consumer timeout value");
+				}
+			}
 		}
 	}
 
@@ -164,9 +248,26 @@ public class RunChatServer extends AbstractRunChat
 		Thread serverThread = null;
 		if (server != null)
 		{
+			server.setRateLimit(rateLimit);
+			server.setSlowConsumerTimeout(slowConsumerTimeout);
 			serverThread = new Thread(server);
 			serverThread.start();
 
+			if (metricsPeriod > 0)
+			{
+				ServerMetrics metrics = server.getMetrics();
+				ScheduledExecutorService dumper =
+				    Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+					    Thread t = new Thread(r, "Metrics dump");
+					    t.setDaemon(true);
+					    return t;
+				    });
+				dumper.scheduleAtFixedRate(() -> {
+					logger.info("Server metrics" + System.lineSeparator()
+					    + metrics.dump());
+				}, metricsPeriod, metricsPeriod, TimeUnit.SECONDS);
+			}
+
 			logger.info("Waiting for server to terminate ... ");
 			try
 			{
@@ -190,6 +291,7 @@ public class RunChatServer extends AbstractRunChat
 	 * 	<li>--timeout <timeout in ms> : server socket waiting time out</li>
 	 * 	<li>--quit : quits on last client logout</li>
 	 * 	<li>--history <nb messages> : number of messages to keep</li>
+	 * 	<li>--metrics <seconds> : period of metrics dumps in the log</li>
 	 * </ul>
 	 */
 	public static void main(String[] args)
@@ -0,0 +1,668 @@
+package bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import chat.Failure;
+import chat.client.HeadlessClient;
+import chat.client.MessageListener;
+import chat.server.ChatServer;
+import chat.server.LatencyHistogram;
+import logger.LoggerFactory;
+import models.Message;
+
+/**
+ * Load generator measuring the end to end behavior of chat servers.
+ * <ul>
+ * <li>Starts one {@link ChatServer} per room on consecutive ports (or uses
+ * already running servers with --host)</li>
+ * <li>Connects {@link HeadlessClient}s spread evenly over the rooms. Since a
+ * server broadcasts every message to all its clients, each room has
+ * clients / rooms receivers</li>
+ * <li>Senders post messages at a fixed rate. Each message contains the time
+ * it was scheduled to be sent so that receivers record the send to receive
+ * latency in a {@link LatencyHistogram}. Using the scheduled time rather
+ * than the actual sending time includes the delays of senders held back by a
+ * slow server (coordinated omission)</li>
+ * <li>Only messages scheduled after the warm up and before the end of the
+ * measure are counted. Messages still in flight are awaited a few seconds
+ * before counting losses</li>
+ * <li>Results are printed on the standard output as a single JSON line (and
+ * appended to a file with --output) so runs can be compared with a
+ * baseline. Progress is logged on the error output</li>
+ * </ul>
+ * Usage: ChatLoadGenerator [options]
+ * <ul>
+ * <li>-c | --clients n : number of connected clients (default 100)</li>
+ * <li>-r | --rooms n : number of rooms (default 1)</li>
+ * <li>-s | --senders n : number of clients sending messages (default all)</li>
+ * <li>-m | --rate n : messages per second sent by each sender (default
+ * 10)</li>
+ * <li>-d | --duration s : measure duration in seconds (default 10)</li>
+ * <li>-u | --warmup s : warm up duration in seconds (default 2)</li>
+ * <li>--host name : host of already running servers (default: embedded
+ * servers)</li>
+ * <li>-p | --port n : port of the first room (default
+ * {@link ChatServer#DEFAULTPORT})</li>
+ * <li>-h | --history n : number of messages kept by embedded servers</li>
+ * <li>-o | --output file : file to append the JSON results to</li>
+ * <li>-v | --verbose : logs servers and clients messages</li>
+ * </ul>
+ * @author davidroussel
+ */
+public class ChatLoadGenerator
+{
+	/**
+	 * Prefix of generated messages, followed by their scheduled sending time
+	 */
+	public static final String PREFIX = "load ";
+
+	/**
+	 * Maximum time to wait for messages in flight after the measure (in ms)
+	 */
+	private static final long DRAIN_TIMEOUT = 5000;
+
+	/**
+	 * Accept timeout of embedded servers (in ms) which is also the maximum
+	 * time they need to stop listening
+	 */
+	private static final int SERVER_TIMEOUT = 200;
+
+	/**
+	 * Number of connected clients
+	 */
+	private int clients = 100;
+
+	/**
+	 * Number of rooms (servers)
+	 */
+	private int rooms = 1;
+
+	/**
+	 * Number of senders (or -1 for all clients)
+	 */
+	private int senders = -1;
+
+	/**
+	 * Messages per second sent by each sender
+	 */
+	private int rate = 10;
+
+	/**
+	 * Measure duration in seconds
+	 */
+	private int duration = 10;
+
+	/**
+	 * Warm up duration in seconds
+	 */
+	private int warmup = 2;
+
+	/**
+	 * Host of already running servers (or null to start embedded servers)
+	 */
+	private String host = null;
+
+	/**
+	 * Port of the first room
+	 */
+	private int port = ChatServer.DEFAULTPORT;
+
+	/**
+	 * Number of messages kept by embedded servers
+	 */
+	private int history = 10;
+
+	/**
+	 * File to append results to (or null)
+	 */
+	private String output = null;
+
+	/**
+	 * Verbose status
+	 */
+	private boolean verbose = false;
+
+	/**
+	 * Send to receive latencies (in ns) of messages received during the
+	 * measure
+	 */
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	/**
+	 * Number of messages sent during the measure
+	 */
+	private final LongAdder sent = new LongAdder();
+
+	/**
+	 * Number of deliveries expected for messages sent during the measure (sum
+	 * of their rooms sizes)
+	 */
+	private final LongAdder expected = new LongAdder();
+
+	/**
+	 * Number of messages received during the measure (by all clients)
+	 */
+	private final LongAdder delivered = new LongAdder();
+
+	/**
+	 * Number of messages which could not be sent
+	 */
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * Number of connections closed before the end of the run
+	 */
+	private final LongAdder closed = new LongAdder();
+
+	/**
+	 * Scheduled time (System.nanoTime) of the beginning of the measure
+	 */
+	private volatile long measureStart;
+
+	/**
+	 * Scheduled time (System.nanoTime) of the end of the measure
+	 */
+	private volatile long measureEnd;
+
+	/**
+	 * Logger used to display progress
+	 */
+	private Logger logger;
+
+	/**
+	 * Logger given to servers and clients
+	 */
+	private Logger chatLogger;
+
+	/**
+	 * Listener recording messages received by a client
+	 */
+	private class Receiver implements MessageListener
+	{
+		/**
+		 * Flag set when the run is finished so closing is not counted
+		 */
+		private final AtomicLong done;
+
+		/**
+		 * Constructor
+		 * @param done time at which the run is finished (0 until then)
+		 */
+		private Receiver(AtomicLong done)
+		{
+			this.done = done;
+		}
+
+		@Override
+		public void messageReceived(Message message)
+		{
+			long now = System.nanoTime();
+			String content = message.getContent();
+			if (!content.startsWith(PREFIX))
+			{
+				return;
+			}
+			long scheduled;
+			try
+			{
+				scheduled = Long.parseLong(content.substring(PREFIX.length()));
+			}
+			catch (NumberFormatException e)
+			{
+				return;
+			}
+			if ((scheduled - measureStart >= 0L) && (scheduled - measureEnd < 0L))
+			{
+				latencies.record(now - scheduled);
+				delivered.increment();
+			}
+		}
+
+		@Override
+		public void connectionClosed()
+		{
+			if (done.get() == 0L)
+			{
+				closed.increment();
+			}
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param args program's arguments
+	 */
+	public ChatLoadGenerator(String[] args)
+	{
+		setAttributes(args);
+		logger = LoggerFactory.getConsoleLogger(getClass(),
+		                                        (verbose ? Level.ALL : Level.INFO));
+		// servers and clients loggers are children of this one
+		chatLogger = Logger.getLogger(getClass().getName() + ".chat");
+		chatLogger.setParent(logger);
+		chatLogger.setLevel(verbose ? Level.ALL : Level.WARNING);
+	}
+
+	/**
+	 * Sets attributes values based on argument parsing
+	 * @param args arguments to parse
+	 */
+	private void setAttributes(String[] args)
+	{
+		for (int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			boolean hasValue = i < (args.length - 1);
+			if (arg.equals("--verbose") || arg.equals("-v"))
+			{
+				verbose = true;
+			}
+			else if (hasValue && (arg.equals("--clients") || arg.equals("-c")))
+			{
+				clients = readInt(args[++i], 1);
+			}
+			else if (hasValue && (arg.equals("--rooms") || arg.equals("-r")))
+			{
+				rooms = readInt(args[++i], 1);
+			}
+			else if (hasValue && (arg.equals("--senders") || arg.equals("-s")))
+			{
+				senders = readInt(args[++i], 0);
+			}
+			else if (hasValue && (arg.equals("--rate") || arg.equals("-m")))
+			{
+				rate = readInt(args[++i], 1);
+			}
+			else if (hasValue && (arg.equals("--duration") || arg.equals("-d")))
+			{
+				duration = readInt(args[++i], 1);
+			}
+			else if (hasValue && (arg.equals("--warmup") || arg.equals("-u")))
+			{
+				warmup = readInt(args[++i], 0);
+			}
+			else if (hasValue && arg.equals("--host"))
+			{
+				host = args[++i];
+			}
+			else if (hasValue && (arg.equals("--port") || arg.equals("-p")))
+			{
+				port = readInt(args[++i], 1024);
+			}
+			else if (hasValue && (arg.equals("--history") || arg.equals("-h")))
+			{
+				history = readInt(args[++i], 0);
+			}
+			else if (hasValue && (arg.equals("--output") || arg.equals("-o")))
+			{
+				output = args[++i];
+			}
+			else
+			{
+				System.err.println("ChatLoadGenerator: invalid argument " + arg);
+				System.exit(Failure.OTHER.toInteger());
+			}
+		}
+		if (rooms > clients)
+		{
+			rooms = clients;
+		}
+		if ((senders < 0) || (senders > clients))
+		{
+			senders = clients;
+		}
+	}
+
+	/**
+	 * Reads a number argument
+	 * @param s the string to parse
+	 * @param min the minimum valid value
+	 * @return the parsed number (exits if s is not a valid number)
+	 */
+	private static int readInt(String s, int min)
+	{
+		try
+		{
+			int value = Integer.parseInt(s);
+			if (value >= min)
+			{
+				return value;
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			// handled below
+		}
+		System.err.println("ChatLoadGenerator: invalid value " + s
+		    + " (should be a number >= " + min + ")");
+		System.exit(Failure.OTHER.toInteger());
+		return min;
+	}
+
+	/**
+	 * Runs the load: starts servers, connects clients, sends messages during
+	 * warm up and measure, waits for messages in flight and disconnects
+	 * @return the results as a JSON object
+	 */
+	public String run()
+	{
+		/*
+		 * Embedded servers
+		 */
+		List<ChatServer> servers = new ArrayList<ChatServer>();
+		List<Thread> serverThreads = new ArrayList<Thread>();
+		String serverHost = host;
+		if (host == null)
+		{
+			serverHost = "localhost";
+			for (int r = 0; r < rooms; r++)
+			{
+				try
+				{
+					servers.add(new ChatServer(port + r,
+					                           SERVER_TIMEOUT,
+					                           false,
+					                           history,
+					                           chatLogger));
+				}
+				catch (IOException e)
+				{
+					logger.severe(Failure.CREATE_SERVER_SOCKET + " on port "
+					    + (port + r) + ": " + e.getLocalizedMessage());
+					System.exit(Failure.CREATE_SERVER_SOCKET.toInteger());
+				}
+				Thread serverThread = new Thread(servers.get(r),
+				                                 "ChatServer:" + (port + r));
+				serverThread.setDaemon(true);
+				serverThread.start();
+				serverThreads.add(serverThread);
+			}
+			logger.info("ChatLoadGenerator: " + rooms
+			    + " embedded server(s) started on port " + port);
+		}
+
+		/*
+		 * Clients spread over rooms (client i is in room i % rooms)
+		 */
+		AtomicLong done = new AtomicLong();
+		List<HeadlessClient> bots = new ArrayList<HeadlessClient>(clients);
+		int[] roomSizes = new int[rooms];
+		long connectStart = System.nanoTime();
+		for (int i = 0; i < clients; i++)
+		{
+			int room = i % rooms;
+			try
+			{
+				bots.add(HeadlessClient.connect(serverHost,
+				                                port + room,
+				                                "bot" + i,
+				                                new Receiver(done),
+				                                chatLogger));
+			}
+			catch (IOException e)
+			{
+				logger.severe(Failure.CLIENT_CONNECTION + ": bot" + i + " "
+				    + e.getLocalizedMessage());
+				System.exit(Failure.CLIENT_CONNECTION.toInteger());
+			}
+			roomSizes[room]++;
+		}
+		logger.info("ChatLoadGenerator: " + clients + " clients connected in "
+		    + ((System.nanoTime() - connectStart) / 1000000) + " ms");
+
+		/*
+		 * Senders: the first senders clients (hence spread over rooms) send
+		 * rate messages per second each, with their first messages spread
+		 * over one period
+		 */
+		long period = TimeUnit.SECONDS.toNanos(1) / rate;
+		long base = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+		measureStart = base + TimeUnit.SECONDS.toNanos(warmup);
+		measureEnd = measureStart + TimeUnit.SECONDS.toNanos(duration);
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+		    Runtime.getRuntime().availableProcessors(), (Runnable r) -> {
+			    Thread t = new Thread(r, "Sender");
+			    t.setDaemon(true);
+			    return t;
+		    });
+		for (int i = 0; i < senders; i++)
+		{
+			HeadlessClient bot = bots.get(i);
+			int roomSize = roomSizes[i % rooms];
+			long offset = (period * i) / senders;
+			long first = base + offset;
+			AtomicLong next = new AtomicLong();
+			scheduler.scheduleAtFixedRate(() -> {
+				long scheduled = first + (next.getAndIncrement() * period);
+				if (scheduled - measureEnd >= 0L)
+				{
+					return;
+				}
+				boolean measured = scheduled - measureStart >= 0L;
+				if (measured)
+				{
+					sent.increment();
+					expected.add(roomSize);
+				}
+				bot.post(PREFIX + scheduled).whenComplete((Message m, Throwable t) -> {
+					if ((t != null) && measured)
+					{
+						failures.increment();
+					}
+				});
+			}, first - System.nanoTime(), period, TimeUnit.NANOSECONDS);
+		}
+		logger.info("ChatLoadGenerator: " + senders + " senders at " + rate
+		    + " msg/s, warm up " + warmup + " s, measure " + duration + " s");
+
+		sleepUntil(measureEnd);
+		scheduler.shutdownNow();
+		try
+		{
+			scheduler.awaitTermination(1, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		/*
+		 * Waits for messages in flight
+		 */
+		long drainEnd = System.nanoTime()
+		    + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT);
+		while ((delivered.sum() < expected.sum())
+		    && (System.nanoTime() - drainEnd < 0L))
+		{
+			sleepUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		done.set(System.nanoTime());
+
+		String results = results(roomSizes);
+
+		/*
+		 * Disconnection and servers shutdown
+		 */
+		for (HeadlessClient bot : bots)
+		{
+			bot.close();
+		}
+		for (ChatServer server : servers)
+		{
+			server.setListening(false);
+		}
+		for (Thread serverThread : serverThreads)
+		{
+			try
+			{
+				serverThread.join(DRAIN_TIMEOUT);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Formats results
+	 * @param roomSizes number of clients in each room
+	 * @return results as a JSON object (latencies in microseconds)
+	 */
+	private String results(int[] roomSizes)
+	{
+		long nbSent = sent.sum();
+		long nbExpected = expected.sum();
+		long nbDelivered = delivered.sum();
+		double seconds = duration;
+		int minRoom = Integer.MAX_VALUE;
+		int maxRoom = 0;
+		for (int size : roomSizes)
+		{
+			minRoom = Math.min(minRoom, size);
+			maxRoom = Math.max(maxRoom, size);
+		}
+
+		StringBuilder json = new StringBuilder("{");
+		field(json, "server", (host == null ? "embedded" : host + ":" + port));
+		field(json, "clients", clients);
+		field(json, "rooms", rooms);
+		field(json, "room_size_min", minRoom);
+		field(json, "room_size_max", maxRoom);
+		field(json, "senders", senders);
+		field(json, "rate_per_sender", rate);
+		field(json, "warmup_s", warmup);
+		field(json, "duration_s", duration);
+		field(json, "sent", nbSent);
+		field(json, "expected", nbExpected);
+		field(json, "delivered", nbDelivered);
+		field(json, "lost", Math.max(0L, nbExpected - nbDelivered));
+		field(json, "send_failures", failures.sum());
+		field(json, "closed_connections", closed.sum());
+		field(json, "sent_per_s", nbSent / seconds);
+		field(json, "delivered_per_s", nbDelivered / seconds);
+		field(json, "latency_mean_us", latencies.getMean() / 1000.0);
+		field(json, "latency_min_us", latencies.getMin() / 1000.0);
+		field(json, "latency_p50_us", latencies.getValueAtPercentile(50.0) / 1000.0);
+		field(json, "latency_p90_us", latencies.getValueAtPercentile(90.0) / 1000.0);
+		field(json, "latency_p99_us", latencies.getValueAtPercentile(99.0) / 1000.0);
+		field(json, "latency_p999_us", latencies.getValueAtPercentile(99.9) / 1000.0);
+		field(json, "latency_max_us", latencies.getMax() / 1000.0);
+		json.setCharAt(json.length() - 1, '}');
+		return json.toString();
+	}
+
+	/**
+	 * Appends a JSON field
+	 * @param json the JSON object being built
+	 * @param name the field name
+	 * @param value the field value (a String, an integer or a double)
+	 */
+	private static void field(StringBuilder json, String name, Object value)
+	{
+		json.append('"').append(name).append("\":");
+		if (value instanceof String)
+		{
+			json.append('"').append(value).append('"');
+		}
+		else if (value instanceof Double)
+		{
+			json.append(String.format(Locale.ROOT, "%.1f", (Double) value));
+		}
+		else
+		{
+			json.append(value);
+		}
+		json.append(',');
+	}
+
+	/**
+	 * Sleeps until a time
+	 * @param time the System.nanoTime to sleep until
+	 */
+	private static void sleepUntil(long time)
+	{
+		long remaining;
+		while ((remaining = time - System.nanoTime()) > 0L)
+		{
+			try
+			{
+				TimeUnit.NANOSECONDS.sleep(remaining);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Main program
+	 * @param args program's arguments (see {@link ChatLoadGenerator})
+	 */
+	public static void main(String[] args)
+	{
+		ChatLoadGenerator generator = new ChatLoadGenerator(args);
+
+		/*
+		 * Client handlers of embedded servers print every received line on
+		 * the standard output which is reserved to results
+		 */
+		PrintStream results = System.out;
+		if (generator.host == null)
+		{
+			System.setOut(new PrintStream(new OutputStream()
+			{
+				@Override
+				public void write(int b)
+				{
+					// discarded
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len)
+				{
+					// discarded
+				}
+			}));
+		}
+
+		String json = generator.run();
+		results.println(json);
+		results.flush();
+
+		if (generator.output != null)
+		{
+			try (PrintWriter out =
+			    new PrintWriter(new FileWriter(generator.output, true)))
+			{
+				out.println(json);
+			}
+			catch (IOException e)
+			{
+				System.err.println("ChatLoadGenerator: unable to write to "
+				    + generator.output + ": " + e.getLocalizedMessage());
+				System.exit(Failure.OTHER.toInteger());
+			}
+		}
+
+		System.exit(0);
+	}
+}
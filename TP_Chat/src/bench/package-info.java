@@ -0,0 +1,7 @@
+/**
+ * Package containing performance measurement tools running chat servers and
+ * clients under load (as opposed to the JMH micro-benchmarks of the
+ * benchmarks source directory)
+ * @author davidroussel
+ */
+package bench;
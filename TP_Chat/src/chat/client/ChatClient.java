@@ -8,7 +8,6 @@ import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.logging.Logger;
 import chat.UserOutputType;
-import org.w3c.dom.ls.LSException;
 
 import chat.Failure;
 import logger.LoggerFactory;
@@ -21,6 +20,8 @@ import models.Message;
  * 	<li>A {@link UserHandler} to handle messages from user</li>
  * 	<li>A {@link ServerHandler} to handle messages from server</li>
  * </ul>
+ * Messages from server are either written to an output stream to the user
+ * (as text or objects) or delivered directly to a {@link MessageListener}.
  * @author davidroussel
  */
 public class ChatClient implements Runnable
@@ -74,12 +75,20 @@ public class ChatClient implements Runnable
 	private UserHandler userHandler = null;
 
 	/**
-	 * Common run status between {@link #serverHandler} and
+	 * Run state shared between {@link #serverHandler} and
 	 * {@link #userHandler}.
 	 * Since both handlers are {@link Runnable} and threaded, when one of these
-	 * terminates its run loop, the other should also terminates
+	 * terminates its run loop, the other should also terminates: stopping the
+	 * lifecycle closes the {@link #clientSocket} (and the user input) so the
+	 * other handler does not stay blocked reading
 	 */
-	private Boolean commonRun;
+	private ClientLifecycle lifecycle;
+
+	/**
+	 * Maximum time to wait (in ms) for a handler blocked on a stream which
+	 * can not be closed (such as System.in) after the other handler ended
+	 */
+	private static final long JOIN_TIMEOUT = 100;
 
 	/**
 	 * Client readiness status: true when socket and streams have been
@@ -102,8 +111,9 @@ public class ChatClient implements Runnable
 	 * @param out output stream to user
 	 * @param outType kind of data expected by the user (either text or
 	 * {@link Message} objects)
-	 * @param commonRun common run shared by another runnable or null if we
-	 * should create our own common run between our handlers
+	 * @param lifecycle run state shared with other threads (such as a GUI
+	 * frame's thread) or null if we should create our own run state between
+	 * our handlers
 	 * @param parentLogger parent logger
 	 */
 	public ChatClient(String host,
@@ -112,8 +122,64 @@ public class ChatClient implements Runnable
 	                  InputStream in,
 	                  OutputStream out,
 	                  UserOutputType outType,
-	                  Boolean commonRun,
+	                  ClientLifecycle lifecycle,
+	                  Logger parentLogger)
+	{
+		this(host, port, name, in, out, outType, null, lifecycle, parentLogger);
+	}
+
+	/**
+	 * Chat client constructor delivering {@link Message}s received from server
+	 * directly to a listener (in-process GUI for instance)
+	 * @param host the server name or IP address
+	 * @param port the port used to communicate with server
+	 * @param name user name to register on server (server only accept users
+	 * once)
+	 * @param in input stream from user
+	 * @param listener the listener to deliver messages from server to
+	 * @param lifecycle run state shared with other threads (such as a GUI
+	 * frame's thread) or null if we should create our own run state between
+	 * our handlers
+	 * @param parentLogger parent logger
+	 */
+	public ChatClient(String host,
+	                  int port,
+	                  String name,
+	                  InputStream in,
+	                  MessageListener listener,
+	                  ClientLifecycle lifecycle,
 	                  Logger parentLogger)
+	{
+		this(host, port, name, in, null, UserOutputType.OBJECT, listener,
+		     lifecycle, parentLogger);
+	}
+
+	/**
+	 * Chat client common constructor
+	 * @param host the server name or IP address
+	 * @param port the port used to communicate with server
+	 * @param name user name to register on server (server only accept users
+	 * once)
+	 * @param in input stream from user
+	 * @param out output stream to user (used only when listener is null)
+	 * @param outType kind of data expected by the user (either text or
+	 * {@link Message} objects)
+	 * @param listener the listener to deliver messages from server to or null
+	 * if messages should be written to out
+	 * @param lifecycle run state shared with other threads (such as a GUI
+	 * frame's thread) or null if we should create our own run state between
+	 * our handlers
+	 * @param parentLogger parent logger
+	 */
+	private ChatClient(String host,
+	                   int port,
+	                   String name,
+	                   InputStream in,
+	                   OutputStream out,
+	                   UserOutputType outType,
+	                   MessageListener listener,
+	                   ClientLifecycle lifecycle,
+	                   Logger parentLogger)
 	{
 		userName = name;
 		ready = false;
@@ -207,30 +273,61 @@ public class ChatClient implements Runnable
 		userIn = in;
 		userOut = out;
 
-		if (commonRun == null)
+		if (lifecycle == null)
 		{
-			this.commonRun = new Boolean(true);
+			this.lifecycle = new ClientLifecycle(logger);
 		}
 		else
 		{
-			this.commonRun = commonRun;
+			this.lifecycle = lifecycle;
+		}
+		/*
+		 * Closing socket unblocks the server handler and closing user input
+		 * unblocks the user handler (except System.in which can not be
+		 * interrupted and should not be closed)
+		 */
+		this.lifecycle.register(clientSocket);
+		if (userIn != System.in)
+		{
+			this.lifecycle.register(userIn);
 		}
 
 		userHandler = new UserHandler(userIn,
 		                              serverOut,
-		                              this.commonRun,
+		                              this.lifecycle,
 		                              logger);
 
-		serverHandler = new ServerHandler(userName,
-		                                  serverIn,
-		                                  userOut,
-		                                  outType,
-		                                  this.commonRun,
-		                                  logger);
+		if (listener != null)
+		{
+			serverHandler = new ServerHandler(userName,
+			                                  serverIn,
+			                                  listener,
+			                                  this.lifecycle,
+			                                  logger);
+		}
+		else
+		{
+			serverHandler = new ServerHandler(userName,
+			                                  serverIn,
+			                                  userOut,
+			                                  outType,
+			                                  this.lifecycle,
+			                                  logger);
+		}
 
 		ready = true;
 	}
 
+	/**
+	 * Lifecycle accessor
+	 * @return the run state shared by this client's threads (which can be
+	 * used to stop this client)
+	 */
+	public ClientLifecycle getLifecycle()
+	{
+		return lifecycle;
+	}
+
 	/**
 	 * Ready status accessor
 	 * @return the ready status
@@ -250,13 +347,19 @@ public class ChatClient implements Runnable
 	{
 		Thread[] threads = new Thread[2];
 
-		threads[0] = new Thread(userHandler);
+		threads[0] = new Thread(userHandler, "UserHandler[" + userName + "]");
 
-		threads[1] = new Thread(serverHandler);
+		threads[1] = new Thread(serverHandler, "ServerHandler[" + userName + "]");
 
-		// threads launch
+		/*
+		 * threads launch: handlers threads are daemons so that a thread
+		 * blocked on a stream which can not be closed does not prevent
+		 * the process from ending
+		 */
 		for (int i = 0; i < threads.length; i++)
 		{
+			threads[i].setDaemon(true);
+			lifecycle.register(threads[i]);
 			threads[i].start();
 		}
 
@@ -265,11 +368,25 @@ public class ChatClient implements Runnable
 		{
 			try
 			{
-				threads[i].join();
+				/*
+				 * Wait until one of the handlers stops the lifecycle, then
+				 * give a short delay to each thread to terminate
+				 */
+				while (lifecycle.isRunning() && threads[i].isAlive())
+				{
+					threads[i].join(JOIN_TIMEOUT);
+				}
+				threads[i].join(JOIN_TIMEOUT);
+				if (threads[i].isAlive())
+				{
+					logger.info("ChatClient: " + threads[i].getName()
+					    + " still blocked: abandoned");
+				}
 			}
 			catch (InterruptedException e)
 			{
 				logger.warning("Join thread " + i + " interrupted");
+				lifecycle.stop();
 			}
 		}
 
@@ -0,0 +1,197 @@
+package chat.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import logger.LoggerFactory;
+
+/**
+ * Run state shared by all the threads of a client (such as the
+ * {@link UserHandler}, the {@link ServerHandler} and the GUI frame's thread).
+ * When any of these threads ends its run loop it calls {@link #stop()} which
+ * <ul>
+ * <li>atomically changes the run state so all threads see it</li>
+ * <li>closes all registered resources (socket, pipes, ...) so threads blocked
+ * reading these resources wake up immediately</li>
+ * <li>interrupts all registered threads (such as threads waiting on a
+ * queue)</li>
+ * </ul>
+ * Stopping happens only once, whatever the number of threads calling
+ * {@link #stop()}.
+ * @author davidroussel
+ */
+public class ClientLifecycle
+{
+	/**
+	 * Run state
+	 */
+	private final AtomicBoolean running;
+
+	/**
+	 * Latch released when stopped
+	 */
+	private final CountDownLatch stopped;
+
+	/**
+	 * Resources to close when stopping
+	 */
+	private final List<Closeable> resources;
+
+	/**
+	 * Threads to interrupt when stopping
+	 */
+	private final List<Thread> threads;
+
+	/**
+	 * Logger used to display debug or info messages
+	 */
+	private Logger logger;
+
+	/**
+	 * Constructor
+	 * @param parentLogger parent logger (may be null)
+	 */
+	public ClientLifecycle(Logger parentLogger)
+	{
+		logger = LoggerFactory.getParentLogger(getClass(),
+		                                       parentLogger,
+		                                       (parentLogger == null ?
+		                                        Level.INFO :
+		                                        parentLogger.getLevel()));
+		running = new AtomicBoolean(true);
+		stopped = new CountDownLatch(1);
+		resources = new CopyOnWriteArrayList<Closeable>();
+		threads = new CopyOnWriteArrayList<Thread>();
+	}
+
+	/**
+	 * Run state accessor
+	 * @return true until {@link #stop()} has been called
+	 */
+	public boolean isRunning()
+	{
+		return running.get();
+	}
+
+	/**
+	 * Registers a resource to close when stopping (or closes it immediately
+	 * if already stopped)
+	 * @param resource the resource to close when stopping
+	 */
+	public void register(Closeable resource)
+	{
+		if (resource != null)
+		{
+			resources.add(resource);
+			if (!isRunning() && resources.remove(resource))
+			{
+				close(resource);
+			}
+		}
+	}
+
+	/**
+	 * Registers a thread to interrupt when stopping (or interrupts it
+	 * immediately if already stopped)
+	 * @param thread the thread to interrupt when stopping
+	 */
+	public void register(Thread thread)
+	{
+		if (thread != null)
+		{
+			threads.add(thread);
+			if (!isRunning() && threads.remove(thread))
+			{
+				thread.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Unregisters a thread (when it does not need to be interrupted anymore)
+	 * @param thread the thread to unregister
+	 */
+	public void unregister(Thread thread)
+	{
+		threads.remove(thread);
+	}
+
+	/**
+	 * Stops the client: changes the run state, closes all registered
+	 * resources and interrupts all registered threads (except the calling
+	 * thread). Only the first call has an effect.
+	 * @return true if this call stopped the client, false if it was already
+	 * stopped
+	 */
+	public boolean stop()
+	{
+		if (!running.compareAndSet(true, false))
+		{
+			return false;
+		}
+
+		/*
+		 * Resources and threads are removed before being closed or
+		 * interrupted so that a resource registered concurrently is closed
+		 * either here or in register but never twice
+		 */
+		logger.info("ClientLifecycle: stopping ... ");
+		for (Closeable resource : resources)
+		{
+			if (resources.remove(resource))
+			{
+				close(resource);
+			}
+		}
+
+		Thread current = Thread.currentThread();
+		for (Thread thread : threads)
+		{
+			if (threads.remove(thread) && (thread != current))
+			{
+				thread.interrupt();
+			}
+		}
+
+		stopped.countDown();
+		return true;
+	}
+
+	/**
+	 * Waits until the client is stopped
+	 * @param timeout the maximum time to wait
+	 * @param unit the time unit of timeout
+	 * @return true if the client is stopped, false if timeout elapsed before
+	 * @throws InterruptedException if the current thread is interrupted while
+	 * waiting
+	 */
+	public boolean await(long timeout, TimeUnit unit)
+	    throws InterruptedException
+	{
+		return stopped.await(timeout, unit);
+	}
+
+	/**
+	 * Closes a resource and logs any failure
+	 * @param resource the resource to close
+	 */
+	private void close(Closeable resource)
+	{
+		try
+		{
+			resource.close();
+		}
+		catch (IOException e)
+		{
+			logger.warning("ClientLifecycle: closing resource failed: "
+			    + e.getLocalizedMessage());
+		}
+	}
+}
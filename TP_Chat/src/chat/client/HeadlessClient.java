@@ -0,0 +1,587 @@
+package chat.client;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.PrintWriter;
+import java.io.StreamCorruptedException;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import chat.Vocabulary;
+import logger.LoggerFactory;
+import models.Message;
+
+/**
+ * Headless chat client API (for bots, load generators or integration checks)
+ * <ul>
+ * <li>{@link #connect(String, int, String, MessageListener, Logger)} connects
+ * to a server with a user name (and throws an {@link IOException} instead of
+ * exiting when connection fails)</li>
+ * <li>{@link Message}s received from server are delivered as they are read
+ * to a {@link MessageListener} (such as a {@link MessageQueue} to consume
+ * them as a stream) without any user stream or re-serialization</li>
+ * <li>{@link #post(String)} sends a message and returns a future completed
+ * with the message broadcasted back by the server, {@link #kick(String)}
+ * returns a future completed with the server's answer and {@link #bye()} a
+ * future completed when the server has closed the connection</li>
+ * </ul>
+ * Contrary to {@link ChatClient} there is no user input: all methods can be
+ * called from any thread and messages from server are read by a single
+ * thread (a new daemon thread or a task of a provided {@link Executor}).
+ * Futures are completed from this reading thread, so dependent actions
+ * should return quickly or be run asynchronously.
+ * A posted message is recognized when the server broadcasts back a message
+ * from this user with the same content. Messages replayed after
+ * {@link #catchUp()} are only matched if they are dated after the post (see
+ * {@link #catchUp()}).
+ * @author davidroussel
+ */
+public class HeadlessClient implements Closeable
+{
+	/**
+	 * A message posted to the server waiting for its broadcast
+	 */
+	private static final class PendingPost
+	{
+		/**
+		 * Content of the posted message
+		 */
+		private final String content;
+
+		/**
+		 * Future completed with the message broadcasted by the server
+		 */
+		private final CompletableFuture<Message> future;
+
+		/**
+		 * Number of catch-up requests sent before this message
+		 */
+		private final long catchUps;
+
+		/**
+		 * Time (System.currentTimeMillis) at which this message was sent
+		 */
+		private final long sentTime;
+
+		/**
+		 * Constructor
+		 * @param content the content of the posted message
+		 * @param catchUps the number of catch-up requests sent before this
+		 * message
+		 */
+		private PendingPost(String content, long catchUps)
+		{
+			this.content = content;
+			this.catchUps = catchUps;
+			future = new CompletableFuture<Message>();
+			sentTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * User name on server
+	 */
+	private final String userName;
+
+	/**
+	 * Socket to communicate with server
+	 */
+	private final Socket socket;
+
+	/**
+	 * Print writer to send lines (messages or commands) to server.
+	 * Also used as the lock to send lines and register pending futures in
+	 * the same order.
+	 */
+	private final PrintWriter serverOutPW;
+
+	/**
+	 * Object input stream to read {@link Message}s from server
+	 */
+	private final ObjectInputStream serverInOS;
+
+	/**
+	 * Listener receiving all messages from server
+	 */
+	private final MessageListener listener;
+
+	/**
+	 * Run state: stopping it closes the {@link #socket}
+	 */
+	private final ClientLifecycle lifecycle;
+
+	/**
+	 * Posted messages waiting for their broadcast (in posting order since the
+	 * server broadcasts each client's messages in the order they are sent)
+	 */
+	private final Queue<PendingPost> pendingPosts;
+
+	/**
+	 * Kick requests waiting for the server's answer (in sending order)
+	 */
+	private final Queue<CompletableFuture<Message>> pendingKicks;
+
+	/**
+	 * Number of catch-up requests sent (guarded by the {@link #serverOutPW}
+	 * lock)
+	 */
+	private long catchUpsSent;
+
+	/**
+	 * Number of catch-up requests whose replay is known to be over (only
+	 * accessed by the reading thread): the server processes each client's
+	 * lines in order, so the replay of a catch-up is over once a message
+	 * posted after it has been broadcasted back
+	 */
+	private long catchUpsReplayed;
+
+	/**
+	 * Future completed when the connection is closed
+	 */
+	private final CompletableFuture<Void> closed;
+
+	/**
+	 * Logger used to display debug or info messages
+	 */
+	private Logger logger;
+
+	/**
+	 * Connects a new client to a server and starts reading messages in a new
+	 * daemon thread
+	 * @param host the server name or IP address
+	 * @param port the port used to communicate with server
+	 * @param name user name to register on server (server only accept users
+	 * once)
+	 * @param listener the listener to deliver messages from server to (or
+	 * null if messages are only used through futures)
+	 * @param parentLogger parent logger (may be null)
+	 * @return a new connected client
+	 * @throws IOException if the connection fails or if the server denied
+	 * the name
+	 */
+	public static HeadlessClient connect(String host,
+	                                     int port,
+	                                     String name,
+	                                     MessageListener listener,
+	                                     Logger parentLogger)
+		throws IOException
+	{
+		HeadlessClient client =
+		    new HeadlessClient(host, port, name, listener, parentLogger);
+		Thread reader = new Thread(client::readLoop,
+		                           "HeadlessClient[" + name + "]");
+		reader.setDaemon(true);
+		reader.start();
+		return client;
+	}
+
+	/**
+	 * Connects a new client to a server and starts reading messages in a
+	 * task of an executor (so that many clients can share a pool of threads
+	 * sized for them)
+	 * @param host the server name or IP address
+	 * @param port the port used to communicate with server
+	 * @param name user name to register on server (server only accept users
+	 * once)
+	 * @param listener the listener to deliver messages from server to (or
+	 * null if messages are only used through futures)
+	 * @param readers executor running the (blocking) reading task until the
+	 * connection is closed
+	 * @param parentLogger parent logger (may be null)
+	 * @return a new connected client
+	 * @throws IOException if the connection fails or if the server denied
+	 * the name
+	 */
+	public static HeadlessClient connect(String host,
+	                                     int port,
+	                                     String name,
+	                                     MessageListener listener,
+	                                     Executor readers,
+	                                     Logger parentLogger)
+		throws IOException
+	{
+		HeadlessClient client =
+		    new HeadlessClient(host, port, name, listener, parentLogger);
+		try
+		{
+			readers.execute(client::readLoop);
+		}
+		catch (RuntimeException e)
+		{
+			client.close();
+			throw e;
+		}
+		return client;
+	}
+
+	/**
+	 * Constructor: connects to server, sends user name and waits for the
+	 * server's object stream
+	 * @param host the server name or IP address
+	 * @param port the port used to communicate with server
+	 * @param name user name to register on server
+	 * @param listener the listener to deliver messages from server to (or
+	 * null)
+	 * @param parentLogger parent logger (may be null)
+	 * @throws IOException if the connection fails or if the server denied
+	 * the name
+	 */
+	private HeadlessClient(String host,
+	                       int port,
+	                       String name,
+	                       MessageListener listener,
+	                       Logger parentLogger)
+		throws IOException
+	{
+		logger = LoggerFactory.getParentLogger(getClass(),
+		                                       parentLogger,
+		                                       (parentLogger == null ?
+		                                        Level.INFO :
+		                                        parentLogger.getLevel()));
+		if ((name == null) || name.isEmpty())
+		{
+			throw new IllegalArgumentException("HeadlessClient: empty name");
+		}
+		userName = name;
+		this.listener = listener;
+		pendingPosts = new ConcurrentLinkedQueue<PendingPost>();
+		pendingKicks = new ConcurrentLinkedQueue<CompletableFuture<Message>>();
+		catchUpsSent = 0L;
+		catchUpsReplayed = 0L;
+		closed = new CompletableFuture<Void>();
+		lifecycle = new ClientLifecycle(logger);
+
+		socket = new Socket(host, port);
+		lifecycle.register(socket);
+		try
+		{
+			socket.setTcpNoDelay(true);
+			serverOutPW = new PrintWriter(socket.getOutputStream(), true);
+			serverOutPW.println(userName);
+			if (serverOutPW.checkError())
+			{
+				throw new IOException("HeadlessClient: unable to send name "
+				    + userName);
+			}
+
+			/*
+			 * The server answers with an object stream when it accepts our
+			 * name or with text when this name is already used
+			 */
+			try
+			{
+				serverInOS = new ObjectInputStream(socket.getInputStream());
+			}
+			catch (StreamCorruptedException | EOFException e)
+			{
+				throw new IOException("HeadlessClient: name " + userName
+				    + " denied by server", e);
+			}
+		}
+		catch (IOException e)
+		{
+			lifecycle.stop();
+			throw e;
+		}
+		logger.info("HeadlessClient: " + userName + " connected to " + host
+		    + ":" + port);
+	}
+
+	/**
+	 * User name accessor
+	 * @return the user name on server
+	 */
+	public String getName()
+	{
+		return userName;
+	}
+
+	/**
+	 * Connection status
+	 * @return true until the connection is closed
+	 */
+	public boolean isConnected()
+	{
+		return lifecycle.isRunning();
+	}
+
+	/**
+	 * Future completed (normally) when the connection is closed (by the
+	 * server or by {@link #close()})
+	 * @return the closing future
+	 */
+	public CompletableFuture<Void> closedFuture()
+	{
+		return closed;
+	}
+
+	/**
+	 * Posts a message
+	 * @param content the content of the message (which should not be a
+	 * command)
+	 * @return a future completed with the message broadcasted back by the
+	 * server (which contains the server's date) or completed exceptionally
+	 * if the message could not be sent or the connection is closed before
+	 * @throws IllegalArgumentException if content is null, empty, contains
+	 * a line separator or starts with a command of the {@link Vocabulary}
+	 */
+	public CompletableFuture<Message> post(String content)
+	{
+		checkLine(content);
+		for (String command : Vocabulary.commands)
+		{
+			if (content.toLowerCase().startsWith(command))
+			{
+				throw new IllegalArgumentException("HeadlessClient::post: "
+				    + "content starts with command " + command);
+			}
+		}
+
+		PendingPost pending;
+		synchronized (serverOutPW)
+		{
+			pending = new PendingPost(content, catchUpsSent);
+			pendingPosts.add(pending);
+			if (!writeLine(content))
+			{
+				pendingPosts.remove(pending);
+				pending.future.completeExceptionally(
+				    new IOException("HeadlessClient::post: send failed"));
+			}
+		}
+		return pending.future;
+	}
+
+	/**
+	 * Asks the server to send back all recorded messages (which will be
+	 * delivered to the listener).
+	 * Recorded messages of this user may have the same content as a message
+	 * posted after this request. Until the replay is known to be over (when
+	 * such a post has been broadcasted back), a message from this user
+	 * therefore only completes a post if it is dated no earlier than the post
+	 * was sent. Since messages are dated by the server, posts sent during
+	 * this period may never complete if the server's clock is behind this
+	 * client's clock.
+	 * @return a future completed when the request has been sent (the server
+	 * does not indicate the end of recorded messages)
+	 */
+	public CompletableFuture<Void> catchUp()
+	{
+		boolean sent;
+		synchronized (serverOutPW)
+		{
+			sent = writeLine(Vocabulary.catchUpCmd);
+			if (sent)
+			{
+				catchUpsSent++;
+			}
+		}
+		if (sent)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		return sendFailed(Vocabulary.catchUpCmd);
+	}
+
+	/**
+	 * Asks the server to kick a user (only granted to the first connected
+	 * user)
+	 * @param name the name of the user to kick
+	 * @return a future completed with the server's answer (whose content
+	 * indicates if the request has been granted or denied)
+	 * @throws IllegalArgumentException if name is null, empty or contains a
+	 * line separator
+	 */
+	public CompletableFuture<Message> kick(String name)
+	{
+		checkLine(name);
+		CompletableFuture<Message> future = new CompletableFuture<Message>();
+		synchronized (serverOutPW)
+		{
+			pendingKicks.add(future);
+			if (!writeLine(Vocabulary.kickCmd + " " + name))
+			{
+				pendingKicks.remove(future);
+				future.completeExceptionally(
+				    new IOException("HeadlessClient::kick: send failed"));
+			}
+		}
+		return future;
+	}
+
+	/**
+	 * Logs out from server
+	 * @return a future completed when the server has closed the connection
+	 */
+	public CompletableFuture<Void> bye()
+	{
+		sendCommand(Vocabulary.byeCmd);
+		return closed;
+	}
+
+	/**
+	 * Closes the connection immediately (without logging out) and completes
+	 * all pending futures exceptionally
+	 */
+	@Override
+	public void close()
+	{
+		if (lifecycle.stop())
+		{
+			logger.info("HeadlessClient: " + userName + " closed");
+		}
+	}
+
+	/**
+	 * Sends a command
+	 * @param command the command line to send
+	 * @return a future completed when the command has been sent
+	 */
+	private CompletableFuture<Void> sendCommand(String command)
+	{
+		boolean sent;
+		synchronized (serverOutPW)
+		{
+			sent = writeLine(command);
+		}
+		if (sent)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		return sendFailed(command);
+	}
+
+	/**
+	 * Future of a command which could not be sent
+	 * @param command the command line
+	 * @return a new future completed exceptionally
+	 */
+	private static CompletableFuture<Void> sendFailed(String command)
+	{
+		CompletableFuture<Void> future = new CompletableFuture<Void>();
+		future.completeExceptionally(new IOException("HeadlessClient: "
+		    + command + " send failed"));
+		return future;
+	}
+
+	/**
+	 * Writes a line to the server (should be called while holding the lock
+	 * on {@link #serverOutPW})
+	 * @param line the line to write
+	 * @return true if the line has been written without error
+	 */
+	private boolean writeLine(String line)
+	{
+		if (!lifecycle.isRunning())
+		{
+			return false;
+		}
+		serverOutPW.println(line);
+		return !serverOutPW.checkError();
+	}
+
+	/**
+	 * Checks that a string can be sent as a single line
+	 * @param line the string to check
+	 * @throws IllegalArgumentException if line is null, empty or contains a
+	 * line separator
+	 */
+	private static void checkLine(String line)
+	{
+		if ((line == null) || line.isEmpty() ||
+		    (line.indexOf('\n') >= 0) || (line.indexOf('\r') >= 0))
+		{
+			throw new IllegalArgumentException("HeadlessClient: invalid line");
+		}
+	}
+
+	/**
+	 * Reading loop: reads messages from server until the connection is
+	 * closed, completes matching pending futures and delivers messages to
+	 * the {@link #listener}
+	 */
+	private void readLoop()
+	{
+		String kickAnswerEnd = " by " + userName;
+		try
+		{
+			while (lifecycle.isRunning())
+			{
+				Message message = (Message) serverInOS.readObject();
+				if (message == null)
+				{
+					break;
+				}
+
+				if (userName.equals(message.getAuthor()))
+				{
+					PendingPost pending = pendingPosts.peek();
+					if ((pending != null) &&
+					    pending.content.equals(message.getContent()) &&
+					    ((pending.catchUps <= catchUpsReplayed) ||
+					     (message.getTimestamp() >= pending.sentTime)))
+					{
+						pendingPosts.poll();
+						catchUpsReplayed = Math.max(catchUpsReplayed,
+						                            pending.catchUps);
+						pending.future.complete(message);
+					}
+				}
+				else if (!message.hasAuthor() &&
+				         message.getContent().startsWith(Vocabulary.kickCmd) &&
+				         message.getContent().endsWith(kickAnswerEnd))
+				{
+					CompletableFuture<Message> kick = pendingKicks.poll();
+					if (kick != null)
+					{
+						kick.complete(message);
+					}
+				}
+
+				if (listener != null)
+				{
+					listener.messageReceived(message);
+				}
+			}
+		}
+		catch (EOFException e)
+		{
+			logger.info("HeadlessClient: " + userName
+			    + " connection closed by server");
+		}
+		catch (IOException | ClassNotFoundException | ClassCastException e)
+		{
+			if (lifecycle.isRunning())
+			{
+				logger.warning("HeadlessClient: " + userName + " read failed: "
+				    + e.getLocalizedMessage());
+			}
+		}
+
+		lifecycle.stop();
+
+		IOException closedException =
+		    new IOException("HeadlessClient: connection closed");
+		for (PendingPost pending; (pending = pendingPosts.poll()) != null;)
+		{
+			pending.future.completeExceptionally(closedException);
+		}
+		for (CompletableFuture<Message> kick; (kick = pendingKicks.poll()) != null;)
+		{
+			kick.completeExceptionally(closedException);
+		}
+
+		if (listener != null)
+		{
+			listener.connectionClosed();
+		}
+		closed.complete(null);
+	}
+}
@@ -0,0 +1,27 @@
+package chat.client;
+
+import models.Message;
+
+/**
+ * Listener receiving {@link Message}s from the {@link ServerHandler} directly,
+ * without any re-serialization through an output stream.
+ * Used by in-process user interfaces (such as GUI clients) which need the
+ * {@link Message} objects sent by the server rather than their text.
+ * @author davidroussel
+ */
+public interface MessageListener
+{
+	/**
+	 * Method called each time a new message is received from server.
+	 * This method is called from the {@link ServerHandler}'s thread, so
+	 * implementations should return quickly.
+	 * @param message the message received from server
+	 */
+	public void messageReceived(Message message);
+
+	/**
+	 * Method called once when no more messages will be received from server
+	 * (connection closed or error)
+	 */
+	public void connectionClosed();
+}
@@ -0,0 +1,127 @@
+package chat.client;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import models.Message;
+
+/**
+ * {@link MessageListener} storing received messages into a blocking queue
+ * so another thread (such as a GUI reader thread) can consume them with
+ * {@link #take()}.
+ * This replaces the piped streams between the {@link ServerHandler} and the
+ * GUI: messages are handed over as objects and are never serialized again.
+ * @author davidroussel
+ */
+public class MessageQueue implements MessageListener
+{
+	/**
+	 * Special message put into the {@link #queue} when connection is closed
+	 * in order to wake up any thread waiting in {@link #take()}
+	 */
+	private static final Message END = new Message("");
+
+	/**
+	 * The queue containing received messages
+	 */
+	private final BlockingQueue<Message> queue;
+
+	/**
+	 * Closed state: true when {@link #connectionClosed()} has been called
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor
+	 */
+	public MessageQueue()
+	{
+		queue = new LinkedBlockingQueue<Message>();
+		closed = false;
+	}
+
+	/**
+	 * Puts the message at the end of the queue
+	 * @param message the message received from server
+	 */
+	@Override
+	public void messageReceived(Message message)
+	{
+		if ((message != null) && !closed)
+		{
+			queue.offer(message);
+		}
+	}
+
+	/**
+	 * Closes the queue: messages already in the queue can still be taken
+	 * but {@link #take()} returns null afterwards
+	 */
+	@Override
+	public void connectionClosed()
+	{
+		if (!closed)
+		{
+			closed = true;
+			queue.offer(END);
+		}
+	}
+
+	/**
+	 * Closed state accessor
+	 * @return true if no more messages will be put into this queue
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
+	/**
+	 * Retrieve and remove the next message, waiting if necessary until a
+	 * message becomes available
+	 * @return the next message or null if the queue has been closed and all
+	 * remaining messages have been taken
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Message take() throws InterruptedException
+	{
+		Message message = queue.take();
+		if (message == END)
+		{
+			// Leave the end marker for any other consumer
+			queue.offer(END);
+			return null;
+		}
+		return message;
+	}
+
+	/**
+	 * Remove all available messages (without waiting) and adds them to the
+	 * provided collection
+	 * @param messages the collection to transfer messages into
+	 * @return the number of messages transferred
+	 */
+	public int drainTo(Collection<Message> messages)
+	{
+		int count = 0;
+		for (Message m = queue.peek(); (m != null) && (m != END); m = queue.peek())
+		{
+			messages.add(queue.poll());
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Remove all pending messages from the queue
+	 */
+	public void clear()
+	{
+		queue.clear();
+		if (closed)
+		{
+			queue.offer(END);
+		}
+	}
+}
@@ -22,6 +22,8 @@ import models.Message;
  * client
  * which allow to extract message components such as author, dateand
  * content)</li>
+ * <li>{@link Message} objects delivered directly to a {@link MessageListener}
+ * (on in-process GUI clients) without being serialized again</li>
  * </ul>
  * @author davidroussel
  */
@@ -50,9 +52,15 @@ class ServerHandler implements Runnable
 	private ObjectOutputStream userOutOS;
 
 	/**
-	 * Common run between {@link ServerHandler} and {@link UserHandler}
+	 * Listener receiving messages directly (when using in-process delivery).
+	 * When non null neither {@link #userOutPW} nor {@link #userOutOS} are used
 	 */
-	private Boolean commonRun;
+	private MessageListener userListener;
+
+	/**
+	 * Run state shared between {@link ServerHandler} and {@link UserHandler}
+	 */
+	private ClientLifecycle lifecycle;
 
 	/**
 	 * Logger used to display debug or info messages
@@ -65,15 +73,55 @@ class ServerHandler implements Runnable
 	 * @param in input stream from server
 	 * @param out output stream to user
 	 * @param outType output type (text or {@link Message} objects)
-	 * @param commonRun common run between this and {@link UserHandler}
+	 * @param lifecycle run state shared with {@link UserHandler}
 	 * @param parentLogger parent logger
 	 */
 	public ServerHandler(String name,
 	                     InputStream in,
 	                     OutputStream out,
 	                     UserOutputType outType,
-	                     Boolean commonRun,
+	                     ClientLifecycle lifecycle,
+	                     Logger parentLogger)
+	{
+		this(name, in, out, outType, null, lifecycle, parentLogger);
+	}
+
+	/**
+	 * server handler constructor with direct messages delivery to a listener
+	 * @param name our user name on server
+	 * @param in input stream from server
+	 * @param listener the listener to deliver {@link Message}s to
+	 * @param lifecycle run state shared with {@link UserHandler}
+	 * @param parentLogger parent logger
+	 */
+	public ServerHandler(String name,
+	                     InputStream in,
+	                     MessageListener listener,
+	                     ClientLifecycle lifecycle,
 	                     Logger parentLogger)
+	{
+		this(name, in, null, UserOutputType.OBJECT, listener, lifecycle,
+		     parentLogger);
+	}
+
+	/**
+	 * server handler common constructor
+	 * @param name our user name on server
+	 * @param in input stream from server
+	 * @param out output stream to user (used only if listener is null)
+	 * @param outType output type (text or {@link Message} objects)
+	 * @param listener the listener to deliver {@link Message}s to or null if
+	 * messages should be written to out
+	 * @param lifecycle run state shared with {@link UserHandler}
+	 * @param parentLogger parent logger
+	 */
+	private ServerHandler(String name,
+	                      InputStream in,
+	                      OutputStream out,
+	                      UserOutputType outType,
+	                      MessageListener listener,
+	                      ClientLifecycle lifecycle,
+	                      Logger parentLogger)
 	{
 		logger = LoggerFactory.getParentLogger(getClass(),
 		                                       parentLogger,
@@ -105,10 +153,18 @@ class ServerHandler implements Runnable
 		}
 
 		/*
-		 * check for non null output stream and Object output stream
+		 * check for non null listener or output stream and Object output stream
 		 * instantiation on the output stream
 		 */
-		if (out != null)
+		userListener = listener;
+		userOutType = outType;
+		if (listener != null)
+		{
+			logger.info("ServerHandler: using direct user output ... ");
+			userOutPW = null;
+			userOutOS = null;
+		}
+		else if (out != null)
 		{
 			logger.info("ServerHandler: creating user output ... ");
 			/*
@@ -118,7 +174,6 @@ class ServerHandler implements Runnable
 			 * If an exception occurs exit with
 			 * Failure.USER_OUTPUT_STREAM status
 			 */
-			userOutType = outType;
 			switch (userOutType)
 			{
 				case OBJECT:
@@ -144,13 +199,13 @@ class ServerHandler implements Runnable
 			System.exit(Failure.USER_OUTPUT_STREAM.toInteger());
 		}
 
-		if (commonRun != null)
+		if (lifecycle != null)
 		{
-			this.commonRun = commonRun;
+			this.lifecycle = lifecycle;
 		}
 		else
 		{
-			logger.severe("ServerHandler: null common run " + Failure.OTHER);
+			logger.severe("ServerHandler: null lifecycle " + Failure.OTHER);
 			System.exit(Failure.OTHER.toInteger());
 		}
 	}
@@ -169,11 +224,10 @@ class ServerHandler implements Runnable
 		 * If an exception occurs, logs a warning and break the loop
 		 * - Then writes the message to user output in either text or
 		 * object format
-		 * Any error or exception breaks the loop then the common run is set to
-		 * false (in a synchronized block to ensure atomicity) which causes the
-		 * UserHandler to terminate as well
+		 * Any error or exception breaks the loop then the lifecycle is
+		 * stopped which causes the UserHandler to terminate as well
 		 */
-		while (commonRun.booleanValue())
+		while (lifecycle.isRunning())
 		{
 			/*
 			 * TODO read (Message) object from serverInOS and use
@@ -187,7 +241,10 @@ class ServerHandler implements Runnable
 			} catch (ClassNotFoundException e) {
 				logger.warning("ServerHandler : ClassNotFoundExceptio in run() when reading objects");
 			} catch (IOException e) {
-				logger.warning("ServerHandler : IOException in run() when reading objects");
+				if (lifecycle.isRunning())
+				{
+					logger.warning("ServerHandler : IOException in run() when reading objects");
+				}
 			}
 			if ((message != null))
 			{
@@ -199,6 +256,12 @@ class ServerHandler implements Runnable
 				 * if an error occurs set error = true;
 				 */
 				boolean error = false;
+				if (userListener != null)
+				{
+					// Message object is handed over as is: no need to write it
+					userListener.messageReceived(message);
+					continue;
+				}
 				switch (userOutType)
 				{
 					case OBJECT:
@@ -228,19 +291,22 @@ class ServerHandler implements Runnable
 			}
 			else
 			{
-				logger.warning("ServerHandler: null input read");
+				if (lifecycle.isRunning())
+				{
+					logger.warning("ServerHandler: null input read");
+				}
 				break;
 			}
 		}
 
-		if (commonRun.booleanValue())
+		if (userListener != null)
 		{
-			logger.info("ServerHandler: changing run state at the end ... ");
+			userListener.connectionClosed();
+		}
 
-			synchronized (commonRun)
-			{
-				commonRun = Boolean.FALSE;
-			}
+		if (lifecycle.stop())
+		{
+			logger.info("ServerHandler: changed run state at the end ... ");
 		}
 	}
 
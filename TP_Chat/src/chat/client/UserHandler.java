@@ -28,10 +28,10 @@ class UserHandler implements Runnable
 	private PrintWriter serverOutPW;
 
 	/**
-	 * Common Run execution status between {@link UserHandler} and
+	 * Run state shared between {@link UserHandler} and
 	 * {@link ServerHandler}
 	 */
-	private Boolean commonRun;
+	private ClientLifecycle lifecycle;
 
 	/**
 	 * Logger used to display debug or info messages
@@ -42,13 +42,13 @@ class UserHandler implements Runnable
 	 * UserHandler constructor
 	 * @param in User input stream to read user inputs
 	 * @param out Server Output stream to write users inputs to server
-	 * @param commonRun Common Run execution status between {@link UserHandler} and
+	 * @param lifecycle run state shared between {@link UserHandler} and
 	 * {@link ServerHandler}
 	 * @param parentLogger the parent logger
 	 */
 	public UserHandler(InputStream in,
 	                   OutputStream out,
-	                   Boolean commonRun,
+	                   ClientLifecycle lifecycle,
 	                   Logger parentLogger)
 	{
 		logger = LoggerFactory.getParentLogger(getClass(), parentLogger,
@@ -98,13 +98,13 @@ class UserHandler implements Runnable
 			System.exit(Failure.CLIENT_OUTPUT_STREAM.toInteger());
 		}
 
-		if (commonRun != null)
+		if (lifecycle != null)
 		{
-			this.commonRun = commonRun;
+			this.lifecycle = lifecycle;
 		}
 		else
 		{
-			logger.severe("ServerHandler: null common run " + Failure.OTHER);
+			logger.severe("UserHandler: null lifecycle " + Failure.OTHER);
 			System.exit(Failure.OTHER.toInteger());
 		}
 	}
@@ -127,7 +127,7 @@ class UserHandler implements Runnable
 		 * 		- also check for special commannds such as byeCmd from
 		 * 		the Vocabulary
 		 */
-		while (commonRun.booleanValue())
+		while (lifecycle.isRunning())
 		{
 			/*
 			 * TODO Read a line from the user with the userInBR.
@@ -137,7 +137,10 @@ class UserHandler implements Runnable
 			try {
 				userInput = userInBR.readLine();
 			} catch (IOException e) {
-				logger.severe("UserHandler :exception in userInBR.readLine()");
+				if (lifecycle.isRunning())
+				{
+					logger.severe("UserHandler :exception in userInBR.readLine()");
+				}
 				break;
 			} 
 			if (userInput != null)
@@ -169,14 +172,13 @@ class UserHandler implements Runnable
 			}
 		}
 
-		if (commonRun.booleanValue())
+		/*
+		 * Stopping the lifecycle closes the socket so the ServerHandler
+		 * stops reading immediately
+		 */
+		if (lifecycle.stop())
 		{
-			logger.info("UserHandler: changing run state at the end ... ");
-
-			synchronized (commonRun)
-			{
-				commonRun = Boolean.FALSE;
-			}
+			logger.info("UserHandler: changed run state at the end ... ");
 		}
 	}
 
@@ -4,18 +4,34 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import chat.Failure;
 import logger.LoggerFactory;
 import models.Message;
+import models.MessageOrdering;
 
 /**
  * Chat server's class.
@@ -80,9 +96,33 @@ public class ChatServer implements Runnable
 
 	/**
 	 * Number of messages to keep on server (used when a client sends a
-	 * "catchup" request)
+	 * "catchup" request). Can be changed while running.
 	 */
-	private final int messagesHistory;
+	private volatile int messagesHistory;
+
+	/**
+	 * Maximum number of messages per second each client can send (or 0 for
+	 * no limit). Can be changed while running.
+	 */
+	private volatile int rateLimit;
+
+	/**
+	 * Maximum time (in ms) a broadcast can wait for a client to read a
+	 * message before this client is disconnected as a slow consumer (or 0 to
+	 * never disconnect slow consumers). Can be changed while running.
+	 */
+	private volatile long slowConsumerTimeout;
+
+	/**
+	 * Period (in ms) of slow consumers checks
+	 */
+	private static final long SLOW_CONSUMER_CHECK = 100;
+
+	/**
+	 * Registered clients by name, which can be traversed without locking
+	 * {@link #clients} (which is locked during broadcasts)
+	 */
+	private final Map<String, InputOutputClient> clientsByName;
 
 	/**
 	 * Default number of messages to keep on server
@@ -95,6 +135,17 @@ public class ChatServer implements Runnable
 	 */
 	private Deque<Message> allMessages;
 
+	/**
+	 * Metrics of this server (updated by the server and its
+	 * {@link ClientHandler}s)
+	 */
+	private final ServerMetrics metrics;
+
+	/**
+	 * Names of the MBeans registered while running
+	 */
+	private final List<ObjectName> mbeanNames;
+
 	/**
 	 * Chat server constructor.
 	 * Initialize the {@link ServerSocket}
@@ -134,6 +185,23 @@ public class ChatServer implements Runnable
 
 		messagesHistory = history;
 		allMessages = new LinkedList<Message>();
+		rateLimit = 0;
+		slowConsumerTimeout = 0L;
+		clientsByName = new ConcurrentHashMap<String, InputOutputClient>();
+		mbeanNames = new ArrayList<ObjectName>();
+
+		metrics = new ServerMetrics();
+		LongAdder connections = metrics.counter(ServerMetrics.CONNECTIONS);
+		LongAdder disconnections =
+		    metrics.counter(ServerMetrics.DISCONNECTIONS);
+		metrics.gauge(ServerMetrics.CLIENTS,
+		              () -> connections.sum() - disconnections.sum());
+		metrics.gauge(ServerMetrics.HISTORY, () -> {
+			synchronized (allMessages)
+			{
+				return allMessages.size();
+			}
+		});
 	}
 
 	/**
@@ -174,6 +242,177 @@ public class ChatServer implements Runnable
 		return quitOnLastClient;
 	}
 
+	/**
+	 * Metrics accessor
+	 * @return the metrics of this server
+	 */
+	public ServerMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Listening port accessor
+	 * @return the port this server listens to
+	 */
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Connected clients names
+	 * @return a new sorted array of connected clients names
+	 */
+	public String[] getClientNames()
+	{
+		String[] names = clientsByName.keySet().toArray(new String[0]);
+		Arrays.sort(names);
+		return names;
+	}
+
+	/**
+	 * History capacity accessor
+	 * @return the number of messages kept on server
+	 */
+	public int getHistoryCapacity()
+	{
+		return messagesHistory;
+	}
+
+	/**
+	 * History capacity setter: oldest messages are discarded if the history
+	 * contains more messages than the new capacity
+	 * @param capacity the new number of messages to keep on server
+	 * @throws IllegalArgumentException if capacity is negative
+	 */
+	public void setHistoryCapacity(int capacity)
+	{
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException("negative history capacity");
+		}
+		synchronized (allMessages)
+		{
+			messagesHistory = capacity;
+			while (allMessages.size() > capacity)
+			{
+				allMessages.remove();
+			}
+		}
+		logger.info("ChatServer: history capacity set to " + capacity);
+	}
+
+	/**
+	 * Rate limit accessor
+	 * @return the maximum number of messages per second each client can send
+	 * (or 0 for no limit)
+	 */
+	public int getRateLimit()
+	{
+		return rateLimit;
+	}
+
+	/**
+	 * Rate limit setter. Messages of clients exceeding this rate are not
+	 * dropped but read later (so these clients are slowed down).
+	 * @param messagesPerSecond the maximum number of messages per second each
+	 * client can send (or 0 for no limit)
+	 * @throws IllegalArgumentException if messagesPerSecond is negative
+	 */
+	public void setRateLimit(int messagesPerSecond)
+	{
+		if (messagesPerSecond < 0)
+		{
+			throw new IllegalArgumentException("negative rate limit");
+		}
+		rateLimit = messagesPerSecond;
+		logger.info("ChatServer: rate limit set to " + messagesPerSecond);
+	}
+
+	/**
+	 * Slow consumer timeout accessor
+	 * @return the maximum time (in ms) a broadcast can wait for a client
+	 * before this client is disconnected (or 0 if slow consumers are never
+	 * disconnected)
+	 */
+	public long getSlowConsumerTimeout()
+	{
+		return slowConsumerTimeout;
+	}
+
+	/**
+	 * Slow consumer timeout setter
+	 * @param millis the maximum time (in ms) a broadcast can wait for a
+	 * client before this client is disconnected (or 0 to never disconnect
+	 * slow consumers)
+	 * @throws IllegalArgumentException if millis is negative
+	 */
+	public void setSlowConsumerTimeout(long millis)
+	{
+		if (millis < 0L)
+		{
+			throw new IllegalArgumentException("negative slow consumer timeout");
+		}
+		slowConsumerTimeout = millis;
+		logger.info("ChatServer: slow consumer timeout set to " + millis
+		    + " ms");
+	}
+
+	/**
+	 * Disconnects clients blocking a broadcast for more than
+	 * {@link #slowConsumerTimeout}: since broadcasts are synchronous, a
+	 * client which does not read its messages blocks all other clients once
+	 * its socket buffers are full. Closing the socket of such a client
+	 * unblocks the broadcast which fails to write to it. Called periodically
+	 * by a watchdog thread while the server runs, without holding the
+	 * {@link #clients} lock (held by the blocked broadcast).
+	 */
+	private void disconnectSlowConsumers()
+	{
+		long timeout = slowConsumerTimeout;
+		if (timeout <= 0L)
+		{
+			return;
+		}
+		long now = System.nanoTime();
+		for (InputOutputClient client : clientsByName.values())
+		{
+			if (client.isReady() &&
+			    (client.getWriteStall(now) > TimeUnit.MILLISECONDS.toNanos(timeout)))
+			{
+				logger.warning("ChatServer: disconnecting slow consumer "
+				    + client.getName());
+				metrics.counter(ServerMetrics.SLOW_CONSUMERS).increment();
+				client.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Unregisters a client which logged out or has been disconnected
+	 * (called by its {@link ClientHandler} when it terminates)
+	 * @param client the client to unregister
+	 */
+	protected void clientLeft(InputClient client)
+	{
+		clientsByName.remove(client.getName(), client);
+		/*
+		 * A new client with the same name may have registered its own gauge
+		 * since: only remove this client's gauge
+		 */
+		if (client instanceof InputOutputClient)
+		{
+			LongSupplier gauge = ((InputOutputClient) client).getBacklogGauge();
+			if (gauge != null)
+			{
+				metrics.removeGauge(ServerMetrics.BACKLOG_PREFIX
+				    + client.getName(), gauge);
+			}
+		}
+		metrics.counter(ServerMetrics.DISCONNECTIONS).increment();
+	}
+
 	/**
 	 * listening state setter
 	 * @param value new value of the listenig state
@@ -196,7 +435,7 @@ public class ChatServer implements Runnable
 			synchronized (allMessages)
 			{
 				allMessages.add(m);
-				if (allMessages.size() > messagesHistory)
+				while (allMessages.size() > messagesHistory)
 				{
 					allMessages.remove();
 				}
@@ -209,17 +448,42 @@ public class ChatServer implements Runnable
 	/**
 	 * Factory method to get an iterator to the list of messages kept on the
 	 * server
-	 * @return an iterator to the list of messages kept on the server (might be
-	 * invalidated if a client's thread add a new message during traversal)
+	 * @return an iterator to a snapshot of the list of messages kept on the
+	 * server (so it can not be invalidated if a client's thread add a new
+	 * message during traversal)
 	 */
 	public Iterator<Message> messages()
 	{
 		synchronized (allMessages)
 		{
-			return allMessages.iterator();
+			return new ArrayList<Message>(allMessages).iterator();
 		}
 	}
 
+	/**
+	 * History query: messages kept on the server sorted according to an
+	 * ordering. Sorting is performed on a snapshot of the messages without
+	 * holding any lock and does not depend on the default ordering of the
+	 * {@link Message} class so concurrent queries can use different orderings.
+	 * @param ordering the ordering to use ({@link MessageOrdering#NONE} to
+	 * get messages in arrival order)
+	 * @return a new list containing messages kept on the server sorted
+	 * according to ordering
+	 */
+	public List<Message> messages(MessageOrdering ordering)
+	{
+		List<Message> snapshot;
+		synchronized (allMessages)
+		{
+			snapshot = new ArrayList<Message>(allMessages);
+		}
+		if (!ordering.isEmpty())
+		{
+			snapshot.sort(ordering);
+		}
+		return snapshot;
+	}
+
 	/**
 	 * Chat server run loop: Awaits connection from a client, when a client
 	 * connects a new {@link ClientHandler} is created and launched in a thread
@@ -234,7 +498,22 @@ public class ChatServer implements Runnable
 	public void run()
 	{
 		Vector<Thread> handlerThreads = new Vector<Thread>();
+		LongAdder connections = metrics.counter(ServerMetrics.CONNECTIONS);
+		LongAdder denied = metrics.counter(ServerMetrics.DENIED);
+		LongAdder accepted = metrics.counter(ServerMetrics.ACCEPTED);
+		LongAdder broadcast = metrics.counter(ServerMetrics.BROADCAST);
 		listening = true;
+		registerMBeans();
+		ScheduledExecutorService watchdog =
+		    Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+			    Thread t = new Thread(r, "Slow consumers watchdog");
+			    t.setDaemon(true);
+			    return t;
+		    });
+		watchdog.scheduleWithFixedDelay(this::disconnectSlowConsumers,
+		                                SLOW_CONSUMER_CHECK,
+		                                SLOW_CONSUMER_CHECK,
+		                                TimeUnit.MILLISECONDS);
 
 		while (listening)
 		{
@@ -317,8 +596,21 @@ public class ChatServer implements Runnable
 					// Adds this client to the list of clients
 					synchronized (clients)
 					{
+						/*
+						 * No broadcast is in progress while holding the
+						 * clients lock, so all messages accepted but not
+						 * broadcast yet will be written to this client
+						 */
+						newClient.setBaseline(broadcast.sum());
 						clients.add(newClient);
 					}
+					clientsByName.put(clientName, newClient);
+					connections.increment();
+					LongSupplier backlog =
+					    () -> newClient.getBacklog(accepted.sum());
+					newClient.setBacklogGauge(backlog);
+					metrics.gauge(ServerMetrics.BACKLOG_PREFIX + clientName,
+					              backlog);
 
 					// Create and launch a handler for this client
 					ClientHandler handler = new ClientHandler(this,
@@ -332,6 +624,7 @@ public class ChatServer implements Runnable
 				}
 				else // a client with this name already exists
 				{
+					denied.increment();
 					// sends denial message to client
 					try
 					{
@@ -372,6 +665,10 @@ public class ChatServer implements Runnable
 		}
 
 		logger.info("ChatServer::run: all client handlers terminated");
+		logger.info("ChatServer::run: metrics" + System.lineSeparator()
+		    + metrics.dump());
+		watchdog.shutdown();
+		unregisterMBeans();
 
 		handlerThreads.clear();
 		handlers.clear();
@@ -390,6 +687,56 @@ public class ChatServer implements Runnable
 
 	}
 
+	/**
+	 * Registers this server's MBeans in the platform MBean server (see
+	 * {@link ChatServerManagement} and {@link ServerMetricsDynamicMBean}).
+	 * Failures are logged since the server can run without them.
+	 */
+	private void registerMBeans()
+	{
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		int port = getPort();
+		try
+		{
+			ObjectName name = ChatServerManagement.objectName(
+			    ChatServerManagement.SERVER_TYPE, port);
+			mbeanServer.registerMBean(new ChatServerManagement(this), name);
+			mbeanNames.add(name);
+			name = ChatServerManagement.objectName(
+			    ChatServerManagement.METRICS_TYPE, port);
+			mbeanServer.registerMBean(new ServerMetricsDynamicMBean(metrics),
+			                          name);
+			mbeanNames.add(name);
+			logger.info("ChatServer: MBeans registered for port " + port);
+		}
+		catch (JMException e)
+		{
+			logger.warning("ChatServer: unable to register MBeans: "
+			    + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Unregisters the MBeans registered by {@link #registerMBeans()}
+	 */
+	private void unregisterMBeans()
+	{
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : mbeanNames)
+		{
+			try
+			{
+				mbeanServer.unregisterMBean(name);
+			}
+			catch (JMException e)
+			{
+				logger.warning("ChatServer: unable to unregister MBean "
+				    + name + ": " + e.getLocalizedMessage());
+			}
+		}
+		mbeanNames.clear();
+	}
+
 	/**
 	 * Cleanup method invoked by {@link ClientHandler}s when they
 	 * terminate which might change the {@link #listening} status if
@@ -0,0 +1,176 @@
+package chat.server;
+
+import java.util.Hashtable;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Standard MBean exposing a {@link ChatServer} and its {@link ServerMetrics}
+ * through JMX. Registered by the server while running under the name
+ * "chat.server:type=ChatServer,port=&lt;port&gt;" (with its metrics under
+ * "chat.server:type=ChatServerMetrics,port=&lt;port&gt;", see
+ * {@link ServerMetricsDynamicMBean}), so several servers can run in the same
+ * JVM.
+ * @author davidroussel
+ */
+public class ChatServerManagement implements ChatServerManagementMBean
+{
+	/**
+	 * Domain of the chat server MBeans names
+	 */
+	public static final String DOMAIN = "chat.server";
+
+	/**
+	 * Type of the {@link ChatServerManagement} MBean names
+	 */
+	public static final String SERVER_TYPE = "ChatServer";
+
+	/**
+	 * Type of the {@link ServerMetricsDynamicMBean} MBean names
+	 */
+	public static final String METRICS_TYPE = "ChatServerMetrics";
+
+	/**
+	 * The managed server
+	 */
+	private final ChatServer server;
+
+	/**
+	 * The managed server's metrics
+	 */
+	private final ServerMetrics metrics;
+
+	/**
+	 * Constructor
+	 * @param server the managed server
+	 */
+	public ChatServerManagement(ChatServer server)
+	{
+		this.server = server;
+		metrics = server.getMetrics();
+	}
+
+	/**
+	 * Name of a chat server MBean
+	 * @param type the MBean type ({@link #SERVER_TYPE} or
+	 * {@link #METRICS_TYPE})
+	 * @param port the server's port
+	 * @return the name of this MBean
+	 * @throws MalformedObjectNameException if type is not a valid name value
+	 */
+	public static ObjectName objectName(String type, int port)
+		throws MalformedObjectNameException
+	{
+		Hashtable<String, String> properties = new Hashtable<String, String>();
+		properties.put("type", type);
+		properties.put("port", String.valueOf(port));
+		return new ObjectName(DOMAIN, properties);
+	}
+
+	@Override
+	public int getPort()
+	{
+		return server.getPort();
+	}
+
+	@Override
+	public long getConnectedClients()
+	{
+		return metrics.get(ServerMetrics.CLIENTS);
+	}
+
+	@Override
+	public String[] getClientNames()
+	{
+		return server.getClientNames();
+	}
+
+	@Override
+	public long getHistorySize()
+	{
+		return metrics.get(ServerMetrics.HISTORY);
+	}
+
+	@Override
+	public int getHistoryCapacity()
+	{
+		return server.getHistoryCapacity();
+	}
+
+	@Override
+	public void setHistoryCapacity(int capacity)
+	{
+		server.setHistoryCapacity(capacity);
+	}
+
+	@Override
+	public int getRateLimit()
+	{
+		return server.getRateLimit();
+	}
+
+	@Override
+	public void setRateLimit(int messagesPerSecond)
+	{
+		server.setRateLimit(messagesPerSecond);
+	}
+
+	@Override
+	public long getSlowConsumerTimeout()
+	{
+		return server.getSlowConsumerTimeout();
+	}
+
+	@Override
+	public void setSlowConsumerTimeout(long millis)
+	{
+		server.setSlowConsumerTimeout(millis);
+	}
+
+	@Override
+	public long getMessagesReceived()
+	{
+		return metrics.get(ServerMetrics.RECEIVED);
+	}
+
+	@Override
+	public long getMessagesDelivered()
+	{
+		return metrics.get(ServerMetrics.DELIVERED);
+	}
+
+	@Override
+	public double getReceivedRate()
+	{
+		return rate(getMessagesReceived());
+	}
+
+	@Override
+	public double getDeliveredRate()
+	{
+		return rate(getMessagesDelivered());
+	}
+
+	@Override
+	public String dumpMetrics()
+	{
+		return metrics.dump();
+	}
+
+	@Override
+	public void resetLatencies()
+	{
+		metrics.reset();
+	}
+
+	/**
+	 * Mean rate of a counter since the metrics creation
+	 * @param count the counter's value
+	 * @return the mean number of events per second
+	 */
+	private double rate(long count)
+	{
+		return count * 1000.0 / Math.max(metrics.getUptime(), 1L);
+	}
+}
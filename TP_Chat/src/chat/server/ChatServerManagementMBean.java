@@ -0,0 +1,114 @@
+package chat.server;
+
+/**
+ * Management interface of a running {@link ChatServer} exposed through JMX
+ * (see {@link ChatServerManagement}): attributes can be read and tuned at
+ * runtime with jconsole, VisualVM or in process with the platform
+ * {@link javax.management.MBeanServer}.
+ * @author davidroussel
+ */
+public interface ChatServerManagementMBean
+{
+	/**
+	 * Listening port
+	 * @return the port the server listens to
+	 */
+	public int getPort();
+
+	/**
+	 * Number of connected clients
+	 * @return the number of connected clients
+	 */
+	public long getConnectedClients();
+
+	/**
+	 * Names of connected clients
+	 * @return the sorted names of connected clients
+	 */
+	public String[] getClientNames();
+
+	/**
+	 * Number of messages currently kept in history
+	 * @return the number of messages in history
+	 */
+	public long getHistorySize();
+
+	/**
+	 * Maximum number of messages kept in history
+	 * @return the history capacity
+	 */
+	public int getHistoryCapacity();
+
+	/**
+	 * Sets the maximum number of messages kept in history (oldest messages
+	 * are discarded if needed)
+	 * @param capacity the new history capacity
+	 * @throws IllegalArgumentException if capacity is negative
+	 */
+	public void setHistoryCapacity(int capacity);
+
+	/**
+	 * Maximum number of messages per second each client can send
+	 * @return the rate limit or 0 if there is no limit
+	 */
+	public int getRateLimit();
+
+	/**
+	 * Sets the maximum number of messages per second each client can send
+	 * @param messagesPerSecond the new rate limit or 0 for no limit
+	 * @throws IllegalArgumentException if messagesPerSecond is negative
+	 */
+	public void setRateLimit(int messagesPerSecond);
+
+	/**
+	 * Maximum time (in ms) a broadcast can wait for a client to read a
+	 * message before this client is disconnected
+	 * @return the slow consumer timeout or 0 if slow consumers are never
+	 * disconnected
+	 */
+	public long getSlowConsumerTimeout();
+
+	/**
+	 * Sets the maximum time (in ms) a broadcast can wait for a client to read
+	 * a message before this client is disconnected
+	 * @param millis the new slow consumer timeout or 0 to never disconnect
+	 * slow consumers
+	 * @throws IllegalArgumentException if millis is negative
+	 */
+	public void setSlowConsumerTimeout(long millis);
+
+	/**
+	 * Number of lines read from clients (messages and commands)
+	 * @return the number of received messages since the server started
+	 */
+	public long getMessagesReceived();
+
+	/**
+	 * Number of messages written to clients
+	 * @return the number of delivered messages since the server started
+	 */
+	public long getMessagesDelivered();
+
+	/**
+	 * Mean rate of lines read from clients since the server started
+	 * @return the number of received messages per second
+	 */
+	public double getReceivedRate();
+
+	/**
+	 * Mean rate of messages written to clients since the server started
+	 * @return the number of delivered messages per second
+	 */
+	public double getDeliveredRate();
+
+	/**
+	 * Human readable dump of all metrics (see {@link ServerMetrics#dump()})
+	 * @return a multi-line dump of all metrics
+	 */
+	public String dumpMetrics();
+
+	/**
+	 * Resets latencies histograms (see {@link ServerMetrics#reset()})
+	 */
+	public void resetLatencies();
+}
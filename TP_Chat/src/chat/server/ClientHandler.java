@@ -1,11 +1,14 @@
 package chat.server;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InvalidClassException;
 import java.io.NotSerializableException;
 import java.io.ObjectOutputStream;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 import chat.Vocabulary;
@@ -47,6 +50,57 @@ public class ClientHandler implements Runnable
 	 */
 	private static int nbThreads = 0;
 
+	/**
+	 * Parent's metrics
+	 */
+	private final ServerMetrics metrics;
+
+	/**
+	 * Counter of lines read from main client
+	 */
+	private final LongAdder received;
+
+	/**
+	 * Counter of commands read from main client
+	 */
+	private final LongAdder commands;
+
+	/**
+	 * Counter of messages accepted for broadcast
+	 */
+	private final LongAdder accepted;
+
+	/**
+	 * Counter of complete broadcasts
+	 */
+	private final LongAdder broadcast;
+
+	/**
+	 * Counter of messages written to clients
+	 */
+	private final LongAdder delivered;
+
+	/**
+	 * Latencies between reading a line and the end of its broadcast
+	 */
+	private final LatencyHistogram broadcastLatency;
+
+	/**
+	 * Latencies of writing a message to a client
+	 */
+	private final LatencyHistogram writeLatency;
+
+	/**
+	 * Counter of messages delayed by the parent's rate limit
+	 */
+	private final LongAdder throttled;
+
+	/**
+	 * Earliest time (System.nanoTime) at which the next regular message of
+	 * the main client can be processed according to the parent's rate limit
+	 */
+	private long nextMessageTime;
+
 	/**
 	 * Logger used to display info or debug messages
 	 */
@@ -71,7 +125,16 @@ public class ClientHandler implements Runnable
 		logger = LoggerFactory.getParentLogger(getClass(),
 		                                       parentLogger,
 		                                       parentLogger.getLevel());
-
+		metrics = parent.getMetrics();
+		received = metrics.counter(ServerMetrics.RECEIVED);
+		commands = metrics.counter(ServerMetrics.COMMANDS);
+		accepted = metrics.counter(ServerMetrics.ACCEPTED);
+		broadcast = metrics.counter(ServerMetrics.BROADCAST);
+		delivered = metrics.counter(ServerMetrics.DELIVERED);
+		broadcastLatency = metrics.histogram(ServerMetrics.BROADCAST_LATENCY);
+		writeLatency = metrics.histogram(ServerMetrics.WRITE_LATENCY);
+		throttled = metrics.counter(ServerMetrics.THROTTLED);
+		nextMessageTime = System.nanoTime();
 
 		synchronized (allClients)
 		{
@@ -149,6 +212,45 @@ public class ClientHandler implements Runnable
 		return nbThreads;
 	}
 
+	/**
+	 * Enforces the parent's rate limit (if any) on the main client's regular
+	 * messages: waits until the next message is allowed. Messages are not
+	 * dropped but the main client is read later, so a flooding client is
+	 * slowed down by TCP flow control instead of slowing down all other
+	 * clients.
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	private void throttle() throws InterruptedIOException
+	{
+		int rateLimit = parent.getRateLimit();
+		long now = System.nanoTime();
+		if (rateLimit <= 0)
+		{
+			nextMessageTime = now;
+			return;
+		}
+		long interval = TimeUnit.SECONDS.toNanos(1) / rateLimit;
+		long delay = nextMessageTime - now;
+		if (delay > 0)
+		{
+			throttled.increment();
+			try
+			{
+				TimeUnit.NANOSECONDS.sleep(delay);
+			}
+			catch (InterruptedException e)
+			{
+				throw new InterruptedIOException("ClientHandler["
+				    + mainClient.getName() + "]: interrupted while throttled");
+			}
+			nextMessageTime += interval;
+		}
+		else
+		{
+			nextMessageTime = now + interval;
+		}
+	}
+
 	/**
 	 * Client handler run loop: Read a new line from main client. Process the
 	 * line (for special commands such as "bye" or "kick") and eventually
@@ -172,6 +274,9 @@ public class ClientHandler implements Runnable
 			while (!loggedOut && !killed &&
 			       ((clientInput = mainClient.getIn().readLine()) != null))
 			{
+				long readTime = System.nanoTime();
+				received.increment();
+
 				// Display the line on the console
 				System.out.println(mainClient.getName() + " > " + clientInput);
 
@@ -198,6 +303,7 @@ public class ClientHandler implements Runnable
 
 				if (controlMessage)
 				{
+					commands.increment();
 					// Check if client wants to quit
 					if (clientInput.toLowerCase().equals(Vocabulary.byeCmd))
 					{
@@ -278,6 +384,9 @@ public class ClientHandler implements Runnable
 				else
 				{
 					// regular message
+					throttle();
+					// broadcast latency does not include throttling delay
+					readTime = System.nanoTime();
 					messageContent.append(clientInput);
 				}
 
@@ -302,6 +411,7 @@ public class ClientHandler implements Runnable
 					 * DONE Add this message to parent
 					 */
 					parent.addMessage(message);
+					accepted.increment();
 
 					/*
 					 * Message broadcast to all clients in an allClients
@@ -316,7 +426,29 @@ public class ClientHandler implements Runnable
 							{
 								// get client output stream and send message object
 								ObjectOutputStream out = c.getOut();
-								out.writeObject(message);
+								long writeStart = System.nanoTime();
+								c.writing();
+								try
+								{
+									out.writeObject(message);
+								}
+								catch (IOException e)
+								{
+									/*
+									 * Failing to write to a client should not
+									 * terminate the main client: disconnect
+									 * the failing client instead (its own
+									 * handler will terminate)
+									 */
+									logger.warning("ClientHandler["
+									    + mainClient.getName() + "]: write to "
+									    + c.getName() + " failed, disconnecting it");
+									c.disconnect();
+									continue;
+								}
+								writeLatency.record(System.nanoTime() - writeStart);
+								c.written();
+								delivered.increment();
 							}
 							else
 							{
@@ -325,7 +457,9 @@ public class ClientHandler implements Runnable
 										+ c.getName() + " not ready");
 							}
 						}
+						broadcast.increment();
 					}
+					broadcastLatency.record(System.nanoTime() - readTime);
 				}
 				else // catchup : resend all stored messages to main client
 				{
@@ -387,6 +521,8 @@ public class ClientHandler implements Runnable
 					"main client from clients");
 			}
 		}
+		parent.clientLeft(mainClient);
+
 		// cleanup current client
 		mainClient.cleanup();
 		synchronized (parent)
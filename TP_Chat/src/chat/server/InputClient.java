@@ -42,9 +42,10 @@ public class InputClient
 
 	/**
 	 * Client ready flag (true when {@link #clientSocket} and {@link #inBR}
-	 * are bith non null)
+	 * are bith non null). Volatile since it can be reset by another thread
+	 * (see {@link #disconnect()}).
 	 */
-	protected boolean ready;
+	protected volatile boolean ready;
 
 	/**
 	 * Indicates if this client is currently banned.
@@ -135,6 +136,28 @@ public class InputClient
 		this.banned = banned;
 	}
 
+	/**
+	 * Disconnects this client from another thread (e.g. when it does not
+	 * read its messages): closing the socket unblocks any thread reading
+	 * from or writing to this client, which fails with an
+	 * {@link IOException}. The {@link ClientHandler} of this client then
+	 * terminates and calls {@link #cleanup()}.
+	 */
+	public void disconnect()
+	{
+		ready = false;
+		logger.info("MainClient::disconnect: closing client socket ... ");
+		try
+		{
+			clientSocket.close();
+		}
+		catch (IOException e)
+		{
+			logger.severe("MainClient::disconnect: unable to close client socket");
+			logger.severe(e.getLocalizedMessage());
+		}
+	}
+
 	/**
 	 * Client's cleanup: Closes input stream an socket
 	 */
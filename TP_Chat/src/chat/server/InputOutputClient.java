@@ -2,6 +2,8 @@ package chat.server;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 
 import chat.Failure;
@@ -24,6 +26,34 @@ public class InputOutputClient extends InputClient
 	 */
 	private ObjectOutputStream outOS;
 
+	/**
+	 * Number of messages whose broadcast was complete when this client was
+	 * registered (see {@link ServerMetrics#BROADCAST})
+	 */
+	private volatile long baseline;
+
+	/**
+	 * Number of broadcast messages written to this client
+	 */
+	private final AtomicLong written;
+
+	/**
+	 * Indicates a message is being written to this client
+	 */
+	private volatile boolean writing;
+
+	/**
+	 * Time (System.nanoTime) at which the current write started
+	 */
+	private volatile long writeStart;
+
+	/**
+	 * Gauge of this client's backlog registered in the server's metrics (so
+	 * that only this gauge is removed when this client leaves, even if a new
+	 * client with the same name registered its own gauge since)
+	 */
+	private volatile LongSupplier backlogGauge;
+
 	/**
 	 * Constructor
 	 * @param socket client's socket
@@ -34,6 +64,8 @@ public class InputOutputClient extends InputClient
 	public InputOutputClient(Socket socket, String name, Logger parentLogger)
 	{
 		super(socket, name, parentLogger);
+		baseline = 0L;
+		written = new AtomicLong();
 		if (ready)
 		{
 			outOS = null;
@@ -70,6 +102,82 @@ public class InputOutputClient extends InputClient
 		return outOS;
 	}
 
+	/**
+	 * Sets the number of messages whose broadcast was complete when this
+	 * client was registered (should be called while no broadcast is in
+	 * progress, so that all messages accepted afterwards are written to this
+	 * client)
+	 * @param broadcast the number of complete broadcasts
+	 */
+	public void setBaseline(long broadcast)
+	{
+		baseline = broadcast;
+	}
+
+	/**
+	 * Notifies that a broadcast message is being written to this client
+	 * (which can block as long as this client does not read its messages)
+	 */
+	public void writing()
+	{
+		writeStart = System.nanoTime();
+		writing = true;
+	}
+
+	/**
+	 * Notifies that a broadcast message has been written to this client
+	 */
+	public void written()
+	{
+		writing = false;
+		written.incrementAndGet();
+	}
+
+	/**
+	 * Duration of the write in progress to this client
+	 * @param now the current time (System.nanoTime)
+	 * @return the time spent (in ns) writing the current message or 0 if no
+	 * message is being written to this client
+	 */
+	public long getWriteStall(long now)
+	{
+		return (writing ? Math.max(0L, now - writeStart) : 0L);
+	}
+
+	/**
+	 * Backlog of this client: number of messages accepted for broadcast since
+	 * this client was registered but not written to this client yet (because
+	 * they are waiting for the broadcast of other messages or because writing
+	 * to this client, or to a client before it, is slow)
+	 * @param accepted the number of messages accepted for broadcast by the
+	 * server (see {@link ServerMetrics#ACCEPTED})
+	 * @return the number of messages waiting to be written to this client
+	 */
+	public long getBacklog(long accepted)
+	{
+		return Math.max(0L, accepted - baseline - written.get());
+	}
+
+	/**
+	 * Backlog gauge accessor
+	 * @return the gauge of this client's backlog registered in the server's
+	 * metrics (or null if there is none)
+	 */
+	public LongSupplier getBacklogGauge()
+	{
+		return backlogGauge;
+	}
+
+	/**
+	 * Backlog gauge setter
+	 * @param gauge the gauge of this client's backlog registered in the
+	 * server's metrics
+	 */
+	public void setBacklogGauge(LongSupplier gauge)
+	{
+		backlogGauge = gauge;
+	}
+
 	/**
 	 * Client's cleanup: Closes output stream an calls
 	 * {@link InputClient#cleanup()}
@@ -0,0 +1,206 @@
+package chat.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with log-linear buckets (in the spirit of
+ * HdrHistogram): values below 256 have their own bucket, larger values are
+ * grouped in buckets whose width is 1/128th of their power of two, so any
+ * recorded value is reported with a relative error below 1% whatever its
+ * magnitude (from nanoseconds to hours) in a fixed array of 7296 counters.
+ * Recording is a few atomic increments, so many threads can record
+ * concurrently in the same histogram. Statistics read while values are being
+ * recorded are approximate.
+ * @author davidroussel
+ */
+public class LatencyHistogram
+{
+	/**
+	 * Number of bits of the sub-buckets index in each power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 7;
+
+	/**
+	 * Number of sub-buckets in each power of two
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Number of buckets needed for all positive long values
+	 */
+	private static final int BUCKETS =
+	    bucketIndex(Long.MAX_VALUE) + 1;
+
+	/**
+	 * Number of values recorded in each bucket
+	 */
+	private final AtomicLongArray counts;
+
+	/**
+	 * Number of recorded values
+	 */
+	private final LongAdder count;
+
+	/**
+	 * Sum of recorded values
+	 */
+	private final LongAdder sum;
+
+	/**
+	 * Minimum recorded value
+	 */
+	private final LongAccumulator min;
+
+	/**
+	 * Maximum recorded value
+	 */
+	private final LongAccumulator max;
+
+	/**
+	 * Constructor of an empty histogram
+	 */
+	public LatencyHistogram()
+	{
+		counts = new AtomicLongArray(BUCKETS);
+		count = new LongAdder();
+		sum = new LongAdder();
+		min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+		max = new LongAccumulator(Math::max, 0L);
+	}
+
+	/**
+	 * Records a value
+	 * @param value the value to record (negative values are recorded as 0)
+	 */
+	public void record(long value)
+	{
+		long v = Math.max(value, 0L);
+		counts.incrementAndGet(bucketIndex(v));
+		count.increment();
+		sum.add(v);
+		min.accumulate(v);
+		max.accumulate(v);
+	}
+
+	/**
+	 * Number of recorded values
+	 * @return the number of recorded values
+	 */
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * Minimum recorded value
+	 * @return the minimum recorded value or 0 if no value has been recorded
+	 */
+	public long getMin()
+	{
+		long value = min.get();
+		return (value == Long.MAX_VALUE ? 0L : value);
+	}
+
+	/**
+	 * Maximum recorded value
+	 * @return the maximum recorded value or 0 if no value has been recorded
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Mean of recorded values
+	 * @return the mean of recorded values or 0 if no value has been recorded
+	 */
+	public double getMean()
+	{
+		long n = count.sum();
+		return (n == 0L ? 0.0 : (double) sum.sum() / n);
+	}
+
+	/**
+	 * Value at a percentile
+	 * @param percentile the percentile (e.g. 50.0 for the median, 99.9 for
+	 * the 999th per mille)
+	 * @return the highest value equivalent (within the histogram precision)
+	 * to the value below which this percentage of recorded values fall, or 0
+	 * if no value has been recorded
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long total = 0L;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			total += counts.get(i);
+		}
+		if (total == 0L)
+		{
+			return 0L;
+		}
+
+		double ratio = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+		long rank = Math.max(1L, (long) Math.ceil(ratio * total));
+		long cumulated = 0L;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			cumulated += counts.get(i);
+			if (cumulated >= rank)
+			{
+				return Math.min(highestEquivalentValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Removes all recorded values (values recorded concurrently may be
+	 * partially kept)
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts.set(i, 0L);
+		}
+		count.reset();
+		sum.reset();
+		min.reset();
+		max.reset();
+	}
+
+	/**
+	 * Index of the bucket of a value
+	 * @param value the positive value
+	 * @return the index of the bucket where this value is recorded
+	 */
+	private static int bucketIndex(long value)
+	{
+		if (value < (SUB_BUCKETS << 1))
+		{
+			return (int) value;
+		}
+		// exponent such as value >>> exponent is in [SUB_BUCKETS, 2 * SUB_BUCKETS[
+		int exponent = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		return (exponent << SUB_BUCKET_BITS) + (int) (value >>> exponent);
+	}
+
+	/**
+	 * Highest value recorded in a bucket
+	 * @param index the index of the bucket
+	 * @return the highest value recorded in this bucket
+	 */
+	private static long highestEquivalentValue(int index)
+	{
+		if (index < (SUB_BUCKETS << 1))
+		{
+			return index;
+		}
+		int exponent = (index >>> SUB_BUCKET_BITS) - 1;
+		long mantissa = index - ((long) exponent << SUB_BUCKET_BITS);
+		return ((mantissa + 1L) << exponent) - 1L;
+	}
+}
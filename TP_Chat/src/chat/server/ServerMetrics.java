@@ -0,0 +1,362 @@
+package chat.server;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of a {@link ChatServer}'s metrics, cheap enough to stay on:
+ * <ul>
+ * <li>counters are {@link LongAdder}s (threads incrementing the same counter
+ * do not contend)</li>
+ * <li>latencies are recorded in lock free {@link LatencyHistogram}s (in
+ * nanoseconds)</li>
+ * <li>gauges are {@link LongSupplier}s only evaluated when metrics are read
+ * (such as the number of connected clients or the backlog of each
+ * client)</li>
+ * </ul>
+ * Metrics are created on first access by name, so threads updating a metric
+ * on each message should keep a reference to it rather than looking it up.
+ * Metrics can be read at any time with {@link #snapshot()} or
+ * {@link #dump()}, so gauges should never wait for a lock held during a
+ * broadcast (which can last as long as a client does not read its
+ * messages).
+ * @author davidroussel
+ */
+public class ServerMetrics
+{
+	/**
+	 * Counter of lines read from clients (messages and commands)
+	 */
+	public static final String RECEIVED = "messages.received";
+
+	/**
+	 * Counter of commands read from clients
+	 */
+	public static final String COMMANDS = "messages.commands";
+
+	/**
+	 * Counter of messages accepted for broadcast
+	 */
+	public static final String ACCEPTED = "messages.accepted";
+
+	/**
+	 * Counter of messages whose broadcast is complete
+	 */
+	public static final String BROADCAST = "messages.broadcast";
+
+	/**
+	 * Counter of messages written to clients (each broadcast message is
+	 * written to each client)
+	 */
+	public static final String DELIVERED = "messages.delivered";
+
+	/**
+	 * Counter of messages whose reading has been delayed to enforce the rate
+	 * limit of their client
+	 */
+	public static final String THROTTLED = "messages.throttled";
+
+	/**
+	 * Counter of accepted client connections
+	 */
+	public static final String CONNECTIONS = "clients.connections";
+
+	/**
+	 * Counter of client connections denied (name already used)
+	 */
+	public static final String DENIED = "clients.denied";
+
+	/**
+	 * Counter of client disconnections
+	 */
+	public static final String DISCONNECTIONS = "clients.disconnections";
+
+	/**
+	 * Counter of clients disconnected because they blocked a broadcast for
+	 * longer than the slow consumer timeout
+	 */
+	public static final String SLOW_CONSUMERS = "clients.slow";
+
+	/**
+	 * Gauge of connected clients (connections minus disconnections)
+	 */
+	public static final String CLIENTS = "clients.connected";
+
+	/**
+	 * Gauge of messages kept in history
+	 */
+	public static final String HISTORY = "history.size";
+
+	/**
+	 * Histogram of latencies between reading a message from a client and the
+	 * end of its broadcast to all clients
+	 */
+	public static final String BROADCAST_LATENCY = "broadcast.latency";
+
+	/**
+	 * Histogram of latencies of writing a message to a single client
+	 */
+	public static final String WRITE_LATENCY = "write.latency";
+
+	/**
+	 * Prefix of the backlog gauge of each client (followed by the client's
+	 * name)
+	 */
+	public static final String BACKLOG_PREFIX = "client.backlog.";
+
+	/**
+	 * Statistics of each histogram in {@link #snapshot()} (appended to the
+	 * histogram's name)
+	 */
+	private static final String[] STATISTICS =
+	    {"count", "mean", "min", "p50", "p90", "p99", "p999", "max"};
+
+	/**
+	 * Counters by name
+	 */
+	private final ConcurrentMap<String, LongAdder> counters;
+
+	/**
+	 * Histograms by name
+	 */
+	private final ConcurrentMap<String, LatencyHistogram> histograms;
+
+	/**
+	 * Gauges by name
+	 */
+	private final ConcurrentMap<String, LongSupplier> gauges;
+
+	/**
+	 * Creation time (System.nanoTime) used to compute rates
+	 */
+	private final long start;
+
+	/**
+	 * Constructor of an empty registry
+	 */
+	public ServerMetrics()
+	{
+		counters = new ConcurrentSkipListMap<String, LongAdder>();
+		histograms = new ConcurrentSkipListMap<String, LatencyHistogram>();
+		gauges = new ConcurrentSkipListMap<String, LongSupplier>();
+		start = System.nanoTime();
+	}
+
+	/**
+	 * Counter accessor (creates the counter if needed)
+	 * @param name the counter's name
+	 * @return the counter with this name
+	 */
+	public LongAdder counter(String name)
+	{
+		return counters.computeIfAbsent(name, (String n) -> new LongAdder());
+	}
+
+	/**
+	 * Histogram accessor (creates the histogram if needed)
+	 * @param name the histogram's name
+	 * @return the histogram with this name
+	 */
+	public LatencyHistogram histogram(String name)
+	{
+		return histograms.computeIfAbsent(name,
+		                                  (String n) -> new LatencyHistogram());
+	}
+
+	/**
+	 * Registers (or replaces) a gauge
+	 * @param name the gauge's name
+	 * @param gauge the supplier of the gauge's value
+	 */
+	public void gauge(String name, LongSupplier gauge)
+	{
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Unregisters a gauge if it is still registered with this supplier (it
+	 * may have been replaced by another gauge with the same name since)
+	 * @param name the gauge's name
+	 * @param gauge the supplier registered with this name
+	 * @return true if the gauge has been removed, false if there is no gauge
+	 * with this name and supplier
+	 */
+	public boolean removeGauge(String name, LongSupplier gauge)
+	{
+		return gauges.remove(name, gauge);
+	}
+
+	/**
+	 * Value of a counter or a gauge
+	 * @param name the name of the counter or gauge
+	 * @return the current value of this counter or gauge or 0 if there is no
+	 * such metric
+	 */
+	public long get(String name)
+	{
+		LongAdder counter = counters.get(name);
+		if (counter != null)
+		{
+			return counter.sum();
+		}
+		LongSupplier gauge = gauges.get(name);
+		return (gauge != null ? gauge.getAsLong() : 0L);
+	}
+
+	/**
+	 * Current value of a single metric, without building a whole
+	 * {@link #snapshot()}
+	 * @param name the name of a counter, a gauge or a histogram statistic
+	 * (such as "broadcast.latency.p99") as in {@link #snapshot()}
+	 * @return the current value of this metric or null if there is no such
+	 * metric
+	 */
+	public Long value(String name)
+	{
+		LongAdder counter = counters.get(name);
+		if (counter != null)
+		{
+			return counter.sum();
+		}
+		LongSupplier gauge = gauges.get(name);
+		if (gauge != null)
+		{
+			return gauge.getAsLong();
+		}
+		int dot = name.lastIndexOf('.');
+		if (dot > 0)
+		{
+			LatencyHistogram histogram = histograms.get(name.substring(0, dot));
+			if (histogram != null)
+			{
+				return statistic(histogram, name.substring(dot + 1));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Time since the creation of this registry
+	 * @return the uptime in ms
+	 */
+	public long getUptime()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * Current values of all metrics: counters and gauges by name, and for
+	 * each histogram its count, mean, min, p50, p90, p99, p999 and max (in
+	 * ns) named "histogram.statistic" (e.g. "broadcast.latency.p99")
+	 * @return a new map of metrics values sorted by name
+	 */
+	public SortedMap<String, Long> snapshot()
+	{
+		SortedMap<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet())
+		{
+			values.put(entry.getKey(), entry.getValue().sum());
+		}
+		for (Map.Entry<String, LongSupplier> entry : gauges.entrySet())
+		{
+			values.put(entry.getKey(), entry.getValue().getAsLong());
+		}
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+		{
+			for (String statistic : STATISTICS)
+			{
+				values.put(entry.getKey() + "." + statistic,
+				           statistic(entry.getValue(), statistic));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Statistic of a histogram
+	 * @param histogram the histogram
+	 * @param statistic one of {@link #STATISTICS}
+	 * @return the value of this statistic (in ns) or null if statistic is
+	 * unknown
+	 */
+	private static Long statistic(LatencyHistogram histogram, String statistic)
+	{
+		switch (statistic)
+		{
+			case "count":
+				return histogram.getCount();
+			case "mean":
+				return Math.round(histogram.getMean());
+			case "min":
+				return histogram.getMin();
+			case "p50":
+				return histogram.getValueAtPercentile(50.0);
+			case "p90":
+				return histogram.getValueAtPercentile(90.0);
+			case "p99":
+				return histogram.getValueAtPercentile(99.0);
+			case "p999":
+				return histogram.getValueAtPercentile(99.9);
+			case "max":
+				return histogram.getMax();
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Resets all histograms (counters are cumulative since gauges such as
+	 * clients backlogs are computed from them)
+	 */
+	public void reset()
+	{
+		for (LatencyHistogram histogram : histograms.values())
+		{
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Human readable dump of all metrics: counters with their mean rate since
+	 * creation, gauges, and histograms statistics (in us)
+	 * @return a multi-line dump of all metrics
+	 */
+	public String dump()
+	{
+		double seconds = Math.max(System.nanoTime() - start, 1L) / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "uptime %.1f s%n", seconds));
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet())
+		{
+			long value = entry.getValue().sum();
+			sb.append(String.format(Locale.ROOT, "%s %d (%.1f/s)%n",
+			                        entry.getKey(), value, value / seconds));
+		}
+		for (Map.Entry<String, LongSupplier> entry : gauges.entrySet())
+		{
+			sb.append(entry.getKey()).append(' ')
+			  .append(entry.getValue().getAsLong())
+			  .append(System.lineSeparator());
+		}
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+		{
+			LatencyHistogram h = entry.getValue();
+			sb.append(String.format(Locale.ROOT,
+			    "%s count %d mean %.1f min %.1f p50 %.1f p90 %.1f p99 %.1f "
+			    + "p999 %.1f max %.1f us%n",
+			    entry.getKey(), h.getCount(), h.getMean() / 1e3,
+			    h.getMin() / 1e3, h.getValueAtPercentile(50.0) / 1e3,
+			    h.getValueAtPercentile(90.0) / 1e3,
+			    h.getValueAtPercentile(99.0) / 1e3,
+			    h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3));
+		}
+		return sb.toString();
+	}
+}
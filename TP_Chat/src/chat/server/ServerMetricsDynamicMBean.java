@@ -0,0 +1,154 @@
+package chat.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Dynamic MBean exposing each metric of a {@link ServerMetrics} registry as a
+ * read only Long attribute named as in {@link ServerMetrics#snapshot()}
+ * (e.g. "messages.received" or "broadcast.latency.p99"). Attributes are
+ * read one by one with {@link ServerMetrics#value(String)} (monitoring
+ * consoles poll them one at a time) rather than from a whole snapshot.
+ * Since metrics (such as clients backlogs) appear and disappear while the
+ * server runs, the attributes list is rebuilt each time the {@link MBeanInfo}
+ * is requested.
+ * Operations:
+ * <ul>
+ * <li>"dump" : human readable dump of all metrics</li>
+ * <li>"reset" : resets latencies histograms</li>
+ * </ul>
+ * @author davidroussel
+ */
+public class ServerMetricsDynamicMBean implements DynamicMBean
+{
+	/**
+	 * Name of the dump operation
+	 */
+	public static final String DUMP = "dump";
+
+	/**
+	 * Name of the reset operation
+	 */
+	public static final String RESET = "reset";
+
+	/**
+	 * The exposed metrics
+	 */
+	private final ServerMetrics metrics;
+
+	/**
+	 * Constructor
+	 * @param metrics the metrics to expose
+	 */
+	public ServerMetricsDynamicMBean(ServerMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Object getAttribute(String attribute)
+		throws AttributeNotFoundException
+	{
+		Long value = metrics.value(attribute);
+		if (value == null)
+		{
+			throw new AttributeNotFoundException("No metric " + attribute);
+		}
+		return value;
+	}
+
+	/**
+	 * Metrics are read only
+	 * @throws AttributeNotFoundException always
+	 */
+	@Override
+	public void setAttribute(Attribute attribute)
+		throws AttributeNotFoundException
+	{
+		throw new AttributeNotFoundException("Metric " + attribute.getName()
+		    + " is read only");
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes)
+	{
+		AttributeList list = new AttributeList();
+		for (String name : attributes)
+		{
+			Long value = metrics.value(name);
+			if (value != null)
+			{
+				list.add(new Attribute(name, value));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Metrics are read only
+	 * @return an empty list since no attribute can be set
+	 */
+	@Override
+	public AttributeList setAttributes(AttributeList attributes)
+	{
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature)
+		throws ReflectionException
+	{
+		if ((params == null) || (params.length == 0))
+		{
+			if (DUMP.equals(actionName))
+			{
+				return metrics.dump();
+			}
+			if (RESET.equals(actionName))
+			{
+				metrics.reset();
+				return null;
+			}
+		}
+		throw new ReflectionException(new NoSuchMethodException(actionName),
+		                              "No operation " + actionName);
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo()
+	{
+		List<MBeanAttributeInfo> attributes =
+		    new ArrayList<MBeanAttributeInfo>();
+		for (Map.Entry<String, Long> entry : metrics.snapshot().entrySet())
+		{
+			attributes.add(new MBeanAttributeInfo(entry.getKey(),
+			                                      Long.class.getName(),
+			                                      "Metric " + entry.getKey(),
+			                                      true, false, false));
+		}
+		MBeanOperationInfo[] operations = new MBeanOperationInfo[] {
+			new MBeanOperationInfo(DUMP, "Human readable dump of all metrics",
+			                       new MBeanParameterInfo[0],
+			                       String.class.getName(),
+			                       MBeanOperationInfo.INFO),
+			new MBeanOperationInfo(RESET, "Resets latencies histograms",
+			                       new MBeanParameterInfo[0], "void",
+			                       MBeanOperationInfo.ACTION)
+		};
+		return new MBeanInfo(getClass().getName(),
+		                     "Metrics of a chat server",
+		                     attributes.toArray(new MBeanAttributeInfo[0]),
+		                     null, operations, null);
+	}
+}
@@ -0,0 +1,108 @@
+package examples;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.Message;
+
+/**
+ * Multi-threaded stress test of {@link Message} dates formatting.
+ * Several threads concurrently format messages whose dates are spread over
+ * a few seconds (so the formatted second cache of {@link Message} is
+ * constantly replaced) and check each formatted date against a reference
+ * formatter owned by each thread. Any corrupted date is printed and the
+ * program exits with a non zero status.
+ * Usage: TestDateFormatStress [threads [messages per thread]]
+ * @author davidroussel
+ */
+public class TestDateFormatStress
+{
+	/**
+	 * Main program
+	 * @param args optional number of threads and number of messages
+	 * formatted by each thread
+	 */
+	public static void main(String[] args)
+	{
+		final int nbThreads = (args.length > 0 ? Integer.parseInt(args[0]) :
+		    Runtime.getRuntime().availableProcessors() * 2);
+		final int nbMessages = (args.length > 1 ? Integer.parseInt(args[1]) :
+		    1000000);
+		final long start = System.currentTimeMillis();
+		final AtomicLong errors = new AtomicLong();
+		final CountDownLatch ready = new CountDownLatch(nbThreads);
+		Thread[] threads = new Thread[nbThreads];
+
+		for (int i = 0; i < nbThreads; i++)
+		{
+			final int seed = i;
+			threads[i] = new Thread(() -> {
+				// Reference formatter confined to this thread
+				SimpleDateFormat reference =
+				    new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+				Random rand = new Random(seed);
+				ready.countDown();
+				try
+				{
+					ready.await();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+
+				for (int n = 0; n < nbMessages; n++)
+				{
+					// Dates spread over 8 seconds (including negative offsets)
+					Date date = new Date(start + rand.nextInt(8000) - 4000);
+					Message message = new Message(date, "content", "author");
+					String expected = reference.format(date);
+					String prefix = "[" + expected + "] author > content";
+					if (!expected.equals(message.getFormattedDate()) ||
+						!prefix.equals(message.toString()))
+					{
+						if (errors.incrementAndGet() <= 10)
+						{
+							System.err.println("Corrupted date: expected "
+							    + expected + " but got "
+							    + message.getFormattedDate() + " / "
+							    + message);
+						}
+					}
+				}
+			}, "Formatter " + i);
+		}
+
+		long begin = System.nanoTime();
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		long elapsed = System.nanoTime() - begin;
+
+		long total = (long) nbThreads * nbMessages;
+		System.out.println(nbThreads + " threads formatted " + total
+		    + " messages in " + (elapsed / 1000000) + " ms ("
+		    + ((total * 1000000000L) / Math.max(elapsed, 1L))
+		    + " messages/s), " + errors.get() + " corrupted dates");
+
+		if (errors.get() > 0)
+		{
+			System.exit(1);
+		}
+	}
+}
@@ -56,24 +56,24 @@ public class TestMessageStream
 
 		// Whole message stream (sorted by default order: date)
 		System.out.println("Whole message stream sorted by date: ");
-		messages.stream().sorted().forEach(messagePrinter);
+		messages.stream().sorted(Message.comparator()).forEach(messagePrinter);
 
 		// Change message ordering
 		Message.removeOrder(MessageOrder.DATE);
 		Message.addOrder(MessageOrder.AUTHOR);
 
 		System.out.println("Whole message stream sorted by author: ");
-		messages.stream().sorted().forEach(messagePrinter);
+		messages.stream().sorted(Message.comparator()).forEach(messagePrinter);
 
 		// Add message content to sort criteria
 		Message.addOrder(MessageOrder.CONTENT);
 		System.out.println("Whole message stream sorted by author and content: ");
-		messages.stream().sorted().forEach(messagePrinter);
+		messages.stream().sorted(Message.comparator()).forEach(messagePrinter);
 
 		// Add message date to sort criteria
 		Message.addOrder(MessageOrder.DATE);
 		System.out.println("Whole message stream sorted by author, content and date: ");
-		messages.stream().sorted().forEach(messagePrinter);
+		messages.stream().sorted(Message.comparator()).forEach(messagePrinter);
 
 		// Predicate for messages author Zébulon
 		Predicate<Message> zebulonFilter = (Message m) ->
@@ -92,14 +92,14 @@ public class TestMessageStream
 		};
 
 		System.out.println("Filtered(Zébulon) stream sorted by author and content: ");
-		messages.stream().sorted().filter(zebulonFilter).forEach(messagePrinter);
+		messages.stream().sorted(Message.comparator()).filter(zebulonFilter).forEach(messagePrinter);
 		Message.removeOrder(MessageOrder.CONTENT);
 		Message.removeOrder(MessageOrder.AUTHOR);
 		Message.clearOrders();
 		Message.addOrder(MessageOrder.DATE);
 
 		System.out.println("Filtered(Zébulon) stream sorted by date: ");
-		messages.stream().filter(zebulonFilter).sorted().forEach(messagePrinter);
+		messages.stream().filter(zebulonFilter).sorted(Message.comparator()).forEach(messagePrinter);
 	}
 
 }
@@ -1,28 +1,41 @@
 package models;
 
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.BitSet;
 import java.util.function.Predicate;
 
 import javax.swing.ListModel;
 import javax.swing.ListSelectionModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 
 /**
  * Filter allowing to check if a {@link Message} comes from one of the authors
- * registered in this filter. Thus this class contains a set of unique names
- * corresponding to the authors registered in this filter.
+ * registered in this filter. Thus this class contains a set of unique
+ * authors corresponding to the authors registered in this filter.
+ * Authors are registered by their ids in the {@link AuthorTable} into a
+ * {@link BitSet} so testing a message only requires a single bit test.
  * This filter is created using a {@link ListModel} and a
  * {@link ListSelectionModel} allowing to populate the filter with currently
- * selected names
+ * selected names, and can then be updated incrementally with
+ * {@link #update(ListModel, ListSelectionModel, int, int)} when the
+ * selection changes.
+ * Since removed elements can not be retrieved from the list model
+ * afterwards, this filter should also listen to the list model: authors
+ * which are no longer in the list model are then removed from the authors
+ * set (see {@link #retain(ListModel)}).
  * @author davidroussel
  */
-public class AuthorListFilter implements Predicate<Message>//, ListDataListener
+public class AuthorListFilter implements Predicate<Message>, ListDataListener
 {
 	/**
-	 * Set of unique authors registered in this filter
+	 * Set of unique authors ids registered in this filter
 	 */
-	private Set<String> authors;
+	private BitSet authors;
+
+	/**
+	 * The table of authors ids
+	 */
+	private final AuthorTable table;
 
 	/**
 	 * Flag indicating if filtering is active or not
@@ -31,12 +44,13 @@ public class AuthorListFilter implements Predicate<Message>//, ListDataListener
 
 	/**
 	 * Default constructor
-	 * Builds an empty {@link #authors} name set and initialize
+	 * Builds an empty {@link #authors} set and initialize
 	 * {@link #filtering} state to false
 	 */
 	public AuthorListFilter()
 	{
-		authors = new TreeSet<String>();
+		table = AuthorTable.getInstance();
+		authors = new BitSet();
 		filtering = false;
 	}
 
@@ -52,18 +66,47 @@ public class AuthorListFilter implements Predicate<Message>//, ListDataListener
 	                        ListSelectionModel selectionModel)
 	{
 		this();
-		int minSelectionIndex = 0;
-		int maxSelectionIndex = 0;
-		
-		/*
-		 * TODO
-		 * 	- Add All selected elements of listModel (from selectionModel)
-		 * 	into authors
-		 */
-		minSelectionIndex = selectionModel.getMinSelectionIndex();
-		maxSelectionIndex = selectionModel.getMaxSelectionIndex();
-		for(int i = minSelectionIndex;i < maxSelectionIndex;i++)
-			authors.add(listModel.getElementAt(i));
+		if (!selectionModel.isSelectionEmpty())
+		{
+			update(listModel,
+			       selectionModel,
+			       selectionModel.getMinSelectionIndex(),
+			       selectionModel.getMaxSelectionIndex());
+		}
+	}
+
+	/**
+	 * Incremental update of the authors set from a selection change: each
+	 * element of the list model between firstIndex and lastIndex (included)
+	 * is added to the authors set if it is selected or removed from the
+	 * authors set otherwise. Elements outside this range are left unchanged.
+	 * @param listModel the list model containing the elements
+	 * @param selectionModel the list selection model containing the indices of
+	 * selected elements
+	 * @param firstIndex the first index of the changed range
+	 * @param lastIndex the last index of the changed range
+	 * @return true if the authors set has changed
+	 */
+	public boolean update(ListModel<String> listModel,
+	                      ListSelectionModel selectionModel,
+	                      int firstIndex,
+	                      int lastIndex)
+	{
+		boolean changed = false;
+		int last = Math.min(lastIndex, listModel.getSize() - 1);
+		for (int i = Math.max(firstIndex, 0); i <= last; i++)
+		{
+			String name = listModel.getElementAt(i);
+			if (selectionModel.isSelectedIndex(i))
+			{
+				changed |= add(name);
+			}
+			else
+			{
+				changed |= remove(name);
+			}
+		}
+		return changed;
 	}
 
 	/**
@@ -74,11 +117,13 @@ public class AuthorListFilter implements Predicate<Message>//, ListDataListener
 	 */
 	public boolean add(String author)
 	{
-		/*
-		 * TODO Add author to authors if it is not already in and
-		 * return true
-		 */
-		return (authors.add(author));
+		int id = table.id(author);
+		if ((id == AuthorTable.NO_AUTHOR) || authors.get(id))
+		{
+			return false;
+		}
+		authors.set(id);
+		return true;
 	}
 
 	/**
@@ -88,30 +133,105 @@ public class AuthorListFilter implements Predicate<Message>//, ListDataListener
 	 */
 	public boolean remove(String author)
 	{
-		/*
-		 * TODO remove author from authors if it was there and return true
-		 */
-		if(authors.contains(author))
+		int id = table.find(author);
+		if ((id == AuthorTable.NO_AUTHOR) || !authors.get(id))
 		{
-		authors.remove(author);
-		return true;
+			return false;
 		}
-		return false;
+		authors.clear(id);
+		return true;
 	}
 
 	/**
 	 * Clears all authors from the authors set
+	 * @return true if the authors set was not empty and has been cleared
 	 */
 	public boolean clear()
 	{
-		/*
-		 * TODO clear authors if it's not empty the return true
-		 */
-		if(authors.isEmpty())
+		if (authors.isEmpty())
+		{
 			return false;
-		
-        authors.clear();
-        return true;
+		}
+
+		authors.clear();
+		return true;
+	}
+
+	/**
+	 * Removes from the authors set all authors which are not elements of a
+	 * list model
+	 * @param listModel the list model containing the elements
+	 * @return true if the authors set has changed
+	 */
+	public boolean retain(ListModel<String> listModel)
+	{
+		BitSet present = new BitSet();
+		for (int i = 0; i < listModel.getSize(); i++)
+		{
+			int id = table.find(listModel.getElementAt(i));
+			if (id != AuthorTable.NO_AUTHOR)
+			{
+				present.set(id);
+			}
+		}
+		int before = authors.cardinality();
+		authors.and(present);
+		return authors.cardinality() != before;
+	}
+
+	/**
+	 * Elements added to the list model are not selected: nothing to do
+	 * @param e the list data event [not used]
+	 * @see javax.swing.event.ListDataListener#intervalAdded(ListDataEvent)
+	 */
+	@Override
+	public void intervalAdded(ListDataEvent e)
+	{
+		// Nothing
+	}
+
+	/**
+	 * Elements removed from the list model are removed from the authors set
+	 * @param e the list data event whose source is the list model
+	 * @see javax.swing.event.ListDataListener#intervalRemoved(ListDataEvent)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void intervalRemoved(ListDataEvent e)
+	{
+		retain((ListModel<String>) e.getSource());
+	}
+
+	/**
+	 * Changed elements of the list model might have replaced authors of the
+	 * authors set
+	 * @param e the list data event whose source is the list model
+	 * @see javax.swing.event.ListDataListener#contentsChanged(ListDataEvent)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void contentsChanged(ListDataEvent e)
+	{
+		retain((ListModel<String>) e.getSource());
+	}
+
+	/**
+	 * Checks if an author is registered in this filter
+	 * @param authorId the id of the author in the {@link AuthorTable}
+	 * @return true if this author is registered in this filter
+	 */
+	public boolean contains(int authorId)
+	{
+		return (authorId >= 0) && authors.get(authorId);
+	}
+
+	/**
+	 * Ids of the authors registered in this filter
+	 * @return a copy of the authors ids set
+	 */
+	public BitSet getAuthorIds()
+	{
+		return (BitSet) authors.clone();
 	}
 
 	/**
@@ -135,28 +255,13 @@ public class AuthorListFilter implements Predicate<Message>//, ListDataListener
 	/**
 	 * Predicate test on a specific message
 	 * @param m the message to test
-	 * @return true filtering is off. True if the message has an author
-	 * registered in this filter when filtering is on. False otherwise.
+	 * @return True if the message has an author registered in this filter
+	 * when filtering is on. False otherwise.
 	 */
 	@Override
 	public boolean test(Message m)
 	{
-		/*
-		 * TODO
-		 * if authors is not empty and filtering is on then
-		 * Check if message has author within the registerd authors and
-		 * if so return true
-		 * Otherwise return false
-		 */
-		if(!authors.isEmpty()&&isFiltering())
-		{
-			if(authors.contains(m.getAuthor()))
-				return true;
-			else {
-				return false;
-			}
-		}
-		return false;
+		return filtering && contains(m.getAuthorId());
 	}
 
 	/**
@@ -169,10 +274,11 @@ public class AuthorListFilter implements Predicate<Message>//, ListDataListener
 		StringBuilder sb = new StringBuilder();
 
 		sb.append("Filtering ");
-		for (Iterator<String> it = authors.iterator(); it.hasNext(); )
+		for (int id = authors.nextSetBit(0); id >= 0; )
 		{
-			sb.append(it.next());
-			if (it.hasNext())
+			sb.append(table.name(id));
+			id = authors.nextSetBit(id + 1);
+			if (id >= 0)
 			{
 				sb.append(", ");
 			}
@@ -0,0 +1,177 @@
+package models;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbol table of authors names.
+ * Each distinct author's name is registered once in this table and
+ * associated with a small integer id (0, 1, 2, ...) so that
+ * <ul>
+ * <li>all {@link Message}s (and models containing authors names such as
+ * {@link NameSetListModel} or {@link AuthorListFilter}) share the same
+ * instance of each name</li>
+ * <li>authors can be compared by comparing their ids</li>
+ * </ul>
+ * Ids are only valid in the current process and are never sent over the
+ * network. Names are never removed from the table, so they are only
+ * registered by the clients displaying messages (which see a small number
+ * of distinct authors): messages register their author when its id is first
+ * requested (see {@link Message#getAuthorId()}), so a server relaying
+ * messages from any number of clients never fills this table.
+ * Looking up a registered name is lock free, only registering a new name is
+ * synchronized.
+ * @author davidroussel
+ */
+public final class AuthorTable
+{
+	/**
+	 * Id of messages without author (server's messages)
+	 */
+	public static final int NO_AUTHOR = -1;
+
+	/**
+	 * Table shared by all messages of this process
+	 */
+	private static final AuthorTable instance = new AuthorTable();
+
+	/**
+	 * Ids of registered names
+	 */
+	private final ConcurrentHashMap<String, Integer> ids;
+
+	/**
+	 * Registered names indexed by their ids. This array is replaced (never
+	 * modified) when it needs to grow so readers never need to lock it.
+	 */
+	private volatile String[] names;
+
+	/**
+	 * Number of registered names
+	 */
+	private volatile int size;
+
+	/**
+	 * Private constructor (use {@link #getInstance()})
+	 */
+	private AuthorTable()
+	{
+		ids = new ConcurrentHashMap<String, Integer>();
+		names = new String[64];
+		size = 0;
+	}
+
+	/**
+	 * Shared table accessor
+	 * @return the table shared by all messages of this process
+	 */
+	public static AuthorTable getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Id of an author's name (registering this name if needed)
+	 * @param name the author's name
+	 * @return the id of this name or {@link #NO_AUTHOR} if name is null
+	 */
+	public int id(String name)
+	{
+		if (name == null)
+		{
+			return NO_AUTHOR;
+		}
+
+		Integer id = ids.get(name);
+		if (id != null)
+		{
+			return id.intValue();
+		}
+
+		return register(name);
+	}
+
+	/**
+	 * Id of an already registered author's name (never registers name)
+	 * @param name the author's name
+	 * @return the id of this name or {@link #NO_AUTHOR} if name is null or not
+	 * registered
+	 */
+	public int find(String name)
+	{
+		if (name == null)
+		{
+			return NO_AUTHOR;
+		}
+
+		Integer id = ids.get(name);
+		return (id != null ? id.intValue() : NO_AUTHOR);
+	}
+
+	/**
+	 * Author's name from its id
+	 * @param id the id of the name
+	 * @return the registered name or null if id is {@link #NO_AUTHOR}
+	 * @throws IndexOutOfBoundsException if id has never been returned by
+	 * {@link #id(String)}
+	 */
+	public String name(int id)
+	{
+		if (id == NO_AUTHOR)
+		{
+			return null;
+		}
+		if ((id < 0) || (id >= size))
+		{
+			throw new IndexOutOfBoundsException("AuthorTable::name: " + id);
+		}
+		return names[id];
+	}
+
+	/**
+	 * Shared instance of an author's name (registering this name if needed)
+	 * @param name the author's name
+	 * @return the registered instance equal to name or null if name is null
+	 */
+	public String canonical(String name)
+	{
+		return name(id(name));
+	}
+
+	/**
+	 * Number of registered names
+	 * @return the number of registered names (which is also the next id to be
+	 * registered)
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Registers a new name
+	 * @param name the name to register
+	 * @return the id of the name (which might have been registered by another
+	 * thread in the meantime)
+	 */
+	private synchronized int register(String name)
+	{
+		Integer id = ids.get(name);
+		if (id != null)
+		{
+			return id.intValue();
+		}
+
+		int newId = size;
+		String[] table = names;
+		if (newId == table.length)
+		{
+			table = Arrays.copyOf(table, table.length * 2);
+		}
+		table[newId] = name;
+		names = table;
+		size = newId + 1;
+		ids.put(name, Integer.valueOf(newId));
+		return newId;
+	}
+}
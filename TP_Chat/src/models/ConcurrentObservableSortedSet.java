@@ -0,0 +1,60 @@
+package models;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * An {@link ObservableSortedSet} backed by a {@link ConcurrentSkipListSet}.
+ * Contrary to {@link ObservableSortedSet} readers never lock:
+ * {@link #contains(Object)}, {@link #iterator()} and the
+ * {@link #subSet(Object, Object)}, {@link #headSet(Object)} and
+ * {@link #tailSet(Object)} (unmodifiable) views can be used concurrently
+ * with changes and iterators are weakly consistent (they never throw
+ * {@link java.util.ConcurrentModificationException} and may or may not
+ * reflect changes performed during the traversal).
+ * Changes are still performed under a lock and their notifications are
+ * delivered one at a time in the order the changes were performed (see
+ * {@link ObservableSortedSet}), so the indices of successive changes are
+ * consistent even with concurrent writers.
+ * Beware that {@link #size()} is not a constant time operation on such a set.
+ * @author davidroussel
+ */
+public class ConcurrentObservableSortedSet<E> extends ObservableSortedSet<E>
+{
+	/**
+	 * Default Constructor
+	 */
+	public ConcurrentObservableSortedSet()
+	{
+		super(new ConcurrentSkipListSet<E>(), true);
+	}
+
+	/**
+	 * Constructor from collection
+	 * @param c the collection to copy
+	 */
+	public ConcurrentObservableSortedSet(Collection<? extends E> c)
+	{
+		super(new ConcurrentSkipListSet<E>(c), true);
+	}
+
+	/**
+	 * Constructor from comparator
+	 * @param comparator the comparator to use for partial ordering
+	 */
+	public ConcurrentObservableSortedSet(Comparator<? super E> comparator)
+	{
+		super(new ConcurrentSkipListSet<E>(comparator), true);
+	}
+
+	/**
+	 * Copy constructor from {@link SortedSet}
+	 * @param s the sorted set to copy
+	 */
+	public ConcurrentObservableSortedSet(SortedSet<E> s)
+	{
+		super(new ConcurrentSkipListSet<E>(s), true);
+	}
+}
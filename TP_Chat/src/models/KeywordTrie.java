@@ -0,0 +1,251 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prefix tree (trie) of keywords used for auto-completion (such as users
+ * names and commands).
+ * Keywords are searched case insensitively but are returned as they have
+ * been added. Each node stores its children sorted by character, so
+ * completions are found in alphabetical order (of lower case keywords) by
+ * walking down the prefix and then collecting at most k keywords below it:
+ * the cost of a lookup depends on the length of the prefix and on k, not on
+ * the number of keywords.
+ * Keywords are added incrementally and never need to be resorted.
+ * This class is not thread safe and should be confined to a single thread
+ * (such as the Event Dispatch Thread in GUI clients).
+ * @author davidroussel
+ */
+public class KeywordTrie
+{
+	/**
+	 * Trie node
+	 */
+	private static final class Node
+	{
+		/**
+		 * Characters of the children (sorted), only the first
+		 * {@link #size} are valid
+		 */
+		private char[] chars = new char[0];
+
+		/**
+		 * Children nodes (in the same order as {@link #chars})
+		 */
+		private Node[] children = new Node[0];
+
+		/**
+		 * Number of children
+		 */
+		private int size = 0;
+
+		/**
+		 * Keyword ending at this node (or null if no keyword ends here)
+		 */
+		private String keyword = null;
+
+		/**
+		 * Child node for a character
+		 * @param c the character
+		 * @return the child node for c or null if there is no such child
+		 */
+		private Node child(char c)
+		{
+			int index = Arrays.binarySearch(chars, 0, size, c);
+			return (index >= 0 ? children[index] : null);
+		}
+
+		/**
+		 * Child node for a character (created if needed)
+		 * @param c the character
+		 * @return the child node for c
+		 */
+		private Node getOrCreate(char c)
+		{
+			int index = Arrays.binarySearch(chars, 0, size, c);
+			if (index >= 0)
+			{
+				return children[index];
+			}
+
+			index = -(index + 1);
+			if (size == chars.length)
+			{
+				int capacity = Math.max(2, size * 2);
+				chars = Arrays.copyOf(chars, capacity);
+				children = Arrays.copyOf(children, capacity);
+			}
+			System.arraycopy(chars, index, chars, index + 1, size - index);
+			System.arraycopy(children, index, children, index + 1, size - index);
+			Node child = new Node();
+			chars[index] = c;
+			children[index] = child;
+			size++;
+			return child;
+		}
+	}
+
+	/**
+	 * Root node (empty prefix)
+	 */
+	private final Node root;
+
+	/**
+	 * Number of keywords in this trie
+	 */
+	private int size;
+
+	/**
+	 * Default constructor: empty trie
+	 */
+	public KeywordTrie()
+	{
+		root = new Node();
+		size = 0;
+	}
+
+	/**
+	 * Number of keywords
+	 * @return the number of keywords in this trie
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds a keyword (iff non null, non empty and not already present
+	 * regardless of case)
+	 * @param keyword the keyword to add
+	 * @return true if the keyword has been added
+	 */
+	public boolean add(String keyword)
+	{
+		if ((keyword == null) || keyword.isEmpty())
+		{
+			return false;
+		}
+
+		Node node = root;
+		String key = normalize(keyword);
+		for (int i = 0; i < key.length(); i++)
+		{
+			node = node.getOrCreate(key.charAt(i));
+		}
+
+		if (node.keyword != null)
+		{
+			return false;
+		}
+		node.keyword = keyword;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Checks if a keyword is present (regardless of case)
+	 * @param keyword the keyword to search
+	 * @return true if this keyword is present in this trie
+	 */
+	public boolean contains(String keyword)
+	{
+		if (keyword == null)
+		{
+			return false;
+		}
+		Node node = find(normalize(keyword));
+		return (node != null) && (node.keyword != null);
+	}
+
+	/**
+	 * Completions of a prefix
+	 * @param prefix the prefix to complete (regardless of case)
+	 * @param k the maximum number of completions
+	 * @return a new list containing at most k keywords starting with prefix
+	 * (in alphabetical order of lower case keywords)
+	 */
+	public List<String> complete(String prefix, int k)
+	{
+		List<String> result = new ArrayList<String>(Math.min(Math.max(k, 0), 16));
+		if ((prefix != null) && (k > 0))
+		{
+			Node node = find(normalize(prefix));
+			if (node != null)
+			{
+				collect(node, k, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * First completion of a prefix
+	 * @param prefix the prefix to complete (regardless of case)
+	 * @return the first keyword (in alphabetical order of lower case keywords)
+	 * starting with prefix or null if there is no such keyword
+	 */
+	public String first(String prefix)
+	{
+		List<String> completions = complete(prefix, 1);
+		return (completions.isEmpty() ? null : completions.get(0));
+	}
+
+	/**
+	 * Removes all keywords
+	 */
+	public void clear()
+	{
+		root.chars = new char[0];
+		root.children = new Node[0];
+		root.size = 0;
+		root.keyword = null;
+		size = 0;
+	}
+
+	/**
+	 * Node corresponding to a (normalized) prefix
+	 * @param key the normalized prefix
+	 * @return the node of this prefix or null if no keyword starts with this
+	 * prefix
+	 */
+	private Node find(String key)
+	{
+		Node node = root;
+		for (int i = 0; (i < key.length()) && (node != null); i++)
+		{
+			node = node.child(key.charAt(i));
+		}
+		return node;
+	}
+
+	/**
+	 * Collects keywords below a node in alphabetical order
+	 * @param node the node to start from
+	 * @param k the maximum number of keywords in result
+	 * @param result the list to fill
+	 */
+	private static void collect(Node node, int k, List<String> result)
+	{
+		if (node.keyword != null)
+		{
+			result.add(node.keyword);
+		}
+		for (int i = 0; (i < node.size) && (result.size() < k); i++)
+		{
+			collect(node.children[i], k, result);
+		}
+	}
+
+	/**
+	 * Normalized form of a keyword or prefix used as key in this trie
+	 * @param keyword the keyword to normalize
+	 * @return the lower case keyword
+	 */
+	private static String normalize(String keyword)
+	{
+		return keyword.toLowerCase(Locale.ROOT);
+	}
+}
@@ -1,12 +1,21 @@
 package models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Vector;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Class containinf a message sent by the server.
@@ -16,12 +25,15 @@ import java.util.Vector;
  * <li>message's content</li>
  * <li>and eventual message's author</li>
  * </ul>
+ * Messages are immutable (and can therefore be shared between threads and
+ * used as keys in hash based collections).
  * Messages are comparables so they can be compared with
  * {@link #compareTo(Message)}
  * method and also sorted in a collection.
- * Sorting criteria can be changed dynamically with
+ * Default sorting criteria can be changed dynamically with
  * {@link #addOrder(MessageOrder)} and {@link #removeOrder(MessageOrder)}
- * methods
+ * methods. Views which need their own criteria should use their own
+ * {@link MessageOrdering} rather than the default criteria.
  * @author davidroussel
  */
 public class Message implements Serializable, Comparable<Message>
@@ -71,16 +83,76 @@ public class Message implements Serializable, Comparable<Message>
 	}
 
 	/**
-	 * Comparison critera set (initialized to empty).
-	 * This collection should contain only one and only one instnce of each
-	 * possible {@link MessageOrder} in any possible order.
+	 * Default comparison criteria (initialized to empty) used by
+	 * {@link #compareTo(Message)}.
+	 * This ordering is immutable and contains only one and only one instance of
+	 * each possible {@link MessageOrder} in any possible order: changing
+	 * criteria replaces the whole ordering so comparisons never need to lock
+	 * anything. Views which need their own criteria should rather use their
+	 * own {@link MessageOrdering}.
 	 */
-	protected static Vector<MessageOrder> orders = new Vector<MessageOrder>();
+	private static volatile MessageOrdering ordering = MessageOrdering.NONE;
 
 	/**
-	 * Message receiving date
+	 * Comparator of authors names (null names first)
 	 */
-	private Date date;
+	private static final Comparator<String> AUTHOR_NAME_ORDER =
+		Comparator.nullsFirst(Comparator.naturalOrder());
+
+	/**
+	 * Comparator of authors: a message with a non null author is considered
+	 * bigger than a message without author. Messages sharing the same
+	 * (registered) instance of their author's name are equal without
+	 * comparing names.
+	 */
+	private static final Comparator<Message> AUTHOR_ORDER =
+		(Message m1, Message m2) -> (m1.author == m2.author ? 0 :
+			AUTHOR_NAME_ORDER.compare(m1.author, m2.author));
+
+	/**
+	 * Value of {@link #authorId} until the author's name is registered in
+	 * the {@link AuthorTable}
+	 */
+	private static final int UNREGISTERED = Integer.MIN_VALUE;
+
+	/**
+	 * Comparator of dates
+	 */
+	private static final Comparator<Message> DATE_ORDER =
+		(Message m1, Message m2) -> Long.compare(m1.timestamp, m2.timestamp);
+
+	/**
+	 * Comparator of contents (which are never null)
+	 */
+	private static final Comparator<Message> CONTENT_ORDER =
+		(Message m1, Message m2) -> m1.content.compareTo(m2.content);
+
+	/**
+	 * Comparator considering all messages as equal (used when there is no
+	 * ordering)
+	 */
+	private static final Comparator<Message> NO_ORDER =
+		(Message m1, Message m2) -> 0;
+
+	/**
+	 * Serialized fields: messages are still serialized as a {@link Date},
+	 * a content and an author so that clients and servers using former
+	 * versions of this class can still exchange messages with this version.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields =
+	{
+		new ObjectStreamField("date", Date.class),
+		new ObjectStreamField("content", String.class),
+		new ObjectStreamField("author", String.class)
+	};
+
+	/**
+	 * Message receiving date in milliseconds since epoch.
+	 * Fields of a message are never modified once the message is
+	 * constructed (or deserialized): messages are immutable and can be shared
+	 * between threads.
+	 */
+	private long timestamp;
 
 	/**
 	 * Message content
@@ -90,15 +162,76 @@ public class Message implements Serializable, Comparable<Message>
 	/**
 	 * Message author (optional)
 	 * A Server message does not need to have an author, but all users messages
-	 * should have an author
+	 * should have an author.
+	 * This becomes the instance of the author's name registered in the
+	 * {@link AuthorTable} once the author's id has been requested.
 	 */
 	private String author;
 
 	/**
-	 * Date format to use to print message date
+	 * Author's id in the {@link AuthorTable}, {@link AuthorTable#NO_AUTHOR}
+	 * for messages without author or {@link #UNREGISTERED} until the id is
+	 * first requested (see {@link #getAuthorId()})
+	 */
+	private transient int authorId;
+
+	/**
+	 * Cached hash value (0 until {@link #hashCode()} is first computed)
+	 */
+	private transient int hash;
+
+	/**
+	 * Date format to use to print message date (immutable and thread safe
+	 * contrary to {@link java.text.SimpleDateFormat})
 	 */
-	protected static SimpleDateFormat dateFormat =
-	    new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+	protected static final DateTimeFormatter dateFormat =
+	    DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss")
+	                     .withZone(ZoneId.systemDefault());
+
+	/**
+	 * Formatted date of the last formatted second.
+	 * Messages are mostly formatted in date order, so most messages
+	 * formatted during the same second reuse this (immutable) formatted
+	 * date instead of formatting it again.
+	 */
+	private static volatile FormattedSecond lastSecond =
+	    new FormattedSecond(Long.MIN_VALUE, "");
+
+	/**
+	 * Immutable pair of a second (since epoch) and its formatted strings.
+	 * Since this pair is immutable and replaced as a whole, threads
+	 * formatting concurrently can never read a date belonging to another
+	 * second.
+	 */
+	private static final class FormattedSecond
+	{
+		/**
+		 * Number of seconds since epoch
+		 */
+		private final long second;
+
+		/**
+		 * Formatted date: "yyyy/MM/dd HH:mm:ss"
+		 */
+		private final String date;
+
+		/**
+		 * Formatted message prefix: "[yyyy/MM/dd HH:mm:ss] "
+		 */
+		private final String prefix;
+
+		/**
+		 * Constructor
+		 * @param second number of seconds since epoch
+		 * @param date formatted date of this second
+		 */
+		private FormattedSecond(long second, String date)
+		{
+			this.second = second;
+			this.date = date;
+			prefix = "[" + date + "] ";
+		}
+	}
 
 	/**
 	 * Constructor
@@ -118,11 +251,37 @@ public class Message implements Serializable, Comparable<Message>
 		 */
 		
 		// date should never be null
-  		this.date = date != null ? date:new Date();
-  		// content should never be null
- 		this.content = content != null ? content:"";
- 	    this.author = author;
+		this(date != null ? date.getTime() : System.currentTimeMillis(),
+		     content,
+		     author);
+	}
 
+	/**
+	 * Constructor from a timestamp
+	 * @param timestamp message receiving date in milliseconds since epoch
+	 * @param content message content
+	 * @param author message author (may be null on server's messages)
+	 */
+	public Message(long timestamp, String content, String author)
+	{
+		this.timestamp = timestamp;
+		// content should never be null
+		this.content = content != null ? content : "";
+		setAuthor(author);
+	}
+
+	/**
+	 * Constructor from an instant
+	 * @param instant message receiving instant (current time is used if null)
+	 * @param content message content
+	 * @param author message author (may be null on server's messages)
+	 */
+	public Message(Instant instant, String content, String author)
+	{
+		this(instant != null ? instant.toEpochMilli() :
+		         System.currentTimeMillis(),
+		     content,
+		     author);
 	}
 
 	/**
@@ -139,19 +298,17 @@ public class Message implements Serializable, Comparable<Message>
 	 * Constructor with no date (current date is then used as message's date)
 	 * @param content message content
 	 * @param author message authoe (may be null on server's messages)
-	 * @see Calendar#getInstance()
-	 * @see Calendar#getTime()
+	 * @see System#currentTimeMillis()
 	 */
 	public Message(String content, String author)
 	{
-		this(null, content, author);
+		this(System.currentTimeMillis(), content, author);
 	}
 
 	/**
 	 * Constructor with only content. (author is null and date will be set to current date)
 	 * @param content message content
-	 * @see Calendar#getInstance()
-	 * @see Calendar#getTime()
+	 * @see System#currentTimeMillis()
 	 */
 	public Message(String content)
 	{
@@ -160,11 +317,29 @@ public class Message implements Serializable, Comparable<Message>
 
 	/**
 	 * Message date accessor
-	 * @return the receiving date of the message
+	 * @return a new date containing the receiving date of the message
 	 */
 	public Date getDate()
 	{
-		return date;
+		return new Date(timestamp);
+	}
+
+	/**
+	 * Message timestamp accessor
+	 * @return the receiving date of the message in milliseconds since epoch
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Message instant accessor
+	 * @return the receiving instant of the message
+	 */
+	public Instant getInstant()
+	{
+		return Instant.ofEpochMilli(timestamp);
 	}
 
 	/**
@@ -173,7 +348,35 @@ public class Message implements Serializable, Comparable<Message>
 	 */
 	public String getFormattedDate()
 	{
-		return dateFormat.format(date);
+		return formattedSecond(timestamp).date;
+	}
+
+	/**
+	 * Formatted date prefix accessor
+	 * @return the "[yyyy/MM/dd HH:mm:ss] " prefix of {@link #toString()}
+	 */
+	public String getDatePrefix()
+	{
+		return formattedSecond(timestamp).prefix;
+	}
+
+	/**
+	 * Formatted date of a second (from cache iff it is the last formatted
+	 * second)
+	 * @param millis the date to format in milliseconds since epoch
+	 * @return the formatted date of the second containing millis
+	 */
+	private static FormattedSecond formattedSecond(long millis)
+	{
+		long second = Math.floorDiv(millis, 1000L);
+		FormattedSecond formatted = lastSecond;
+		if (formatted.second != second)
+		{
+			formatted = new FormattedSecond(second,
+			    dateFormat.format(Instant.ofEpochSecond(second)));
+			lastSecond = formatted;
+		}
+		return formatted;
 	}
 
 	/**
@@ -194,6 +397,43 @@ public class Message implements Serializable, Comparable<Message>
 		return author;
 	}
 
+	/**
+	 * Message author's id accessor.
+	 * The author's name is registered in the {@link AuthorTable} when its id
+	 * is first requested (by the models of the clients displaying messages),
+	 * so processes which only relay messages, such as the server, never
+	 * register the names of their clients. The registered instance of the
+	 * name then replaces this message's author (registering the same name in
+	 * concurrent threads gives the same id and instance, so this lazy
+	 * initialization needs no lock).
+	 * @return the id of the author in the {@link AuthorTable} or
+	 * {@link AuthorTable#NO_AUTHOR} if there is no author
+	 */
+	public int getAuthorId()
+	{
+		int id = authorId;
+		if (id == UNREGISTERED)
+		{
+			AuthorTable table = AuthorTable.getInstance();
+			id = table.id(author);
+			author = table.name(id);
+			authorId = id;
+		}
+		return id;
+	}
+
+	/**
+	 * Sets {@link #author} (without registering it in the
+	 * {@link AuthorTable}) and resets {@link #authorId} (only used during
+	 * construction or deserialization)
+	 * @param name the author's name (may be null)
+	 */
+	private void setAuthor(String name)
+	{
+		author = name;
+		authorId = (name == null ? AuthorTable.NO_AUTHOR : UNREGISTERED);
+	}
+
 	/**
 	 * Indicates if a message has an author
 	 * @return true if the messag has an author, false otherwise
@@ -205,9 +445,9 @@ public class Message implements Serializable, Comparable<Message>
 
 	/**
 	 * Date formatter accessor
-	 * @return the formatted used to format date
+	 * @return the (thread safe) formatter used to format date
 	 */
-	public static SimpleDateFormat getDateFormat()
+	public static DateTimeFormatter getDateFormat()
 	{
 		return dateFormat;
 	}
@@ -215,19 +455,26 @@ public class Message implements Serializable, Comparable<Message>
 	/**
 	 * Message hashcode.
 	 * Can be used in {@link HashSet} for instance.
+	 * The hash value is computed once and then cached since messages are
+	 * immutable.
 	 * @return a hash value based on date, author and content hashcodes.
 	 */
 	@Override
 	public int hashCode()
 	{
-		final int prime = 31;
-		int hash = date.hashCode();
-		hash = (prime * hash) + content.hashCode();
-		if (author != null)
+		int h = hash;
+		if (h == 0)
 		{
-			hash = (prime * hash) + author.hashCode();
+			final int prime = 31;
+			h = Long.hashCode(timestamp);
+			h = (prime * h) + content.hashCode();
+			if (author != null)
+			{
+				h = (prime * h) + author.hashCode();
+			}
+			hash = h;
 		}
-		return hash;
+		return h;
 	}
 
 	/**
@@ -253,25 +500,52 @@ public class Message implements Serializable, Comparable<Message>
 		{
 			Message m = (Message) obj;
 
-			if (date.equals(m.date))
+			if ((timestamp == m.timestamp) &&
+				((hash == 0) || (m.hash == 0) || (hash == m.hash)))
 			{
-				if (content.equals(m.content))
-				{
-					if (author != null)
-					{
-						return author.equals(m.author);
-					}
-					else
-					{
-						return m.author == null;
-					}
-				}
+				return Objects.equals(author, m.author) &&
+				       content.equals(m.content);
 			}
 		}
 
 		return false;
 	}
 
+	/**
+	 * Serialization: writes this message as a {@link Date}, a content and an
+	 * author (see {@link #serialPersistentFields})
+	 * @param out the stream to write to
+	 * @throws IOException if writing to the stream fails
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("date", new Date(timestamp));
+		fields.put("content", content);
+		fields.put("author", author);
+		out.writeFields();
+	}
+
+	/**
+	 * Deserialization: reads a {@link Date}, a content and an author (see
+	 * {@link #serialPersistentFields})
+	 * @param in the stream to read from
+	 * @throws IOException if reading from the stream fails
+	 * @throws ClassNotFoundException if the class of a serialized field can
+	 * not be found
+	 */
+	private void readObject(ObjectInputStream in)
+	    throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = in.readFields();
+		Date date = (Date) fields.get("date", null);
+		String readContent = (String) fields.get("content", null);
+		String readAuthor = (String) fields.get("author", null);
+		timestamp = (date != null ? date.getTime() : System.currentTimeMillis());
+		content = (readContent != null ? readContent : "");
+		setAuthor(readAuthor);
+	}
+
 	/**
 	 * Message string representation
 	 * @return a new string formatted as:
@@ -280,10 +554,11 @@ public class Message implements Serializable, Comparable<Message>
 	@Override
 	public String toString()
 	{
-		StringBuffer sb = new StringBuffer("[");
+		String prefix = formattedSecond(timestamp).prefix;
+		StringBuilder sb = new StringBuilder(prefix.length()
+		    + (author != null ? author.length() + 3 : 0) + content.length());
 
-		sb.append(dateFormat.format(date));
-		sb.append("] ");
+		sb.append(prefix);
 		if (author != null)
 		{
 			sb.append(author);
@@ -300,27 +575,15 @@ public class Message implements Serializable, Comparable<Message>
 	 */
 	public static String toStringOrder()
 	{
-		StringBuilder sb = new StringBuilder();
-		sb.append("{");
-		for (Iterator<MessageOrder> it = orders.iterator(); it.hasNext(); )
-		{
-			sb.append(it.next().toString());
-			if (it.hasNext())
-			{
-				sb.append(", ");
-			}
-		}
-		sb.append("}");
-
-		return sb.toString();
+		return ordering.toString();
 	}
 
 	/**
 	 * 3 Way comparison with other message using compare criteria stored in
-	 * {@link #orders}
+	 * {@link #ordering}
 	 * @param m the message to compare to
 	 * @return -1 if the current message is considered smaller as message m
-	 * according to current order criteria stored in {@link #orders}, 0 if
+	 * according to current order criteria stored in {@link #ordering}, 0 if
 	 * current message is considered equal and +1 if current message is
 	 * considered bigger
 	 */
@@ -328,155 +591,129 @@ public class Message implements Serializable, Comparable<Message>
 	public int compareTo(Message m)
 	{
 		// Default order is no order : all messages are equal
-		int compare = 0;
+		return Integer.signum(ordering.compare(this, m));
+	}
 
-		if (!orders.isEmpty())
+	/**
+	 * Factory method compiling a list of criteria into a single comparator.
+	 * Contrary to {@link #compareTo(Message)} the resulting comparator does
+	 * not depend on {@link #ordering} and can be used concurrently with any
+	 * change to the criteria set into this class.
+	 * @param criteria the criteria to use in this order (duplicated criteria
+	 * are ignored)
+	 * @return a comparator comparing messages according to the criteria (or
+	 * considering all messages as equal if there is no criteria)
+	 */
+	public static Comparator<Message> comparator(Collection<MessageOrder> criteria)
+	{
+		Comparator<Message> comparator = null;
+		for (MessageOrder criterium : new LinkedHashSet<MessageOrder>(criteria))
 		{
-			for (Iterator<MessageOrder> it = orders.iterator(); it.hasNext();)
-			{
-				MessageOrder criterium = it.next();
-				switch (criterium)
-				{
-					case AUTHOR:
-						/*
-						 * TODO Compare authors (which are already Comparable)
-						 * but we need to consider the null autor case
-						 * A message with an non null author
-						 * will be considered as bigger than
-						 * a message without author
-						 * e.g. this.author > m.author then compare = 1
-						 */
-						if(this.getAuthor() == null)
-						{
-							if(m.getAuthor() != null)
-                                compare = -1;
-							else
-                                compare = 0;
-						}
-						else if(this.getAuthor() != null)
-							{
-								if(m.getAuthor() == null)
-                                    compare = 1;
-								else {
-									int com = this.getAuthor().compareTo(m.getAuthor());
-									if ( com > 0) compare = 1;
-									else if (com < 0) compare = -1;
-									else if(com == 0) compare = 0;
-								}
-							
-							}
-						 
-						
-						break;
-					case DATE:
-						/*
-						 * TODO Compare Dates (which are already Comparable)
-						 */
-						int com2 = this.getDate().compareTo(m.getDate());
-						if(com2 == 0) compare = 0;
-						else if(com2 > 0) compare = 1;
-						else compare = -1;
-							
-						break;
-					case CONTENT:
-						/*
-						 * TODO Content
-						 */
-						if(this.getContent() == null)
-						{
-							if(m.getContent() != null) compare = -1;
-							else compare = 0;
-						}
-						else if(this.getContent() != null)
-							{
-								if(m.getContent() == null) compare = 1;
-								else {
-									int com3 = this.getContent().compareTo(m.getContent());
-									if ( com3 > 0) compare = 1;
-									else if (com3 < 0) compare = -1;
-									else if(com3 == 0) compare = 0;
-								}
-							
-							}
-						break;
-					default:
-						break;
-				}
-				/*
-				 * If current citerium is enough to differentiate messages then
-				 * break
-				 */
-				if (compare != 0)
-				{
-					break;
-				}
-			}
-			/*
-			 * Compare loop ended without returning, all critera
-			 * compared to 0 which means messages are equal
-			 */
+			Comparator<Message> next = comparator(criterium);
+			comparator = (comparator == null ? next : comparator.thenComparing(next));
 		}
 
-		return compare;
+		return (comparator == null ? NO_ORDER : comparator);
 	}
 
 	/**
-	 * Add order criterium to criteria in {@link #orders} iff not already
+	 * Factory method providing current criteria in {@link #ordering} as a
+	 * single comparator
+	 * @return a comparator comparing messages according to current criteria
+	 * @see #comparator(Collection)
+	 */
+	public static Comparator<Message> comparator()
+	{
+		return ordering;
+	}
+
+	/**
+	 * Comparator for a single criterium
+	 * @param criterium the criterium to compare
+	 * @return the comparator corresponding to this criterium
+	 */
+	private static Comparator<Message> comparator(MessageOrder criterium)
+	{
+		switch (criterium)
+		{
+			case AUTHOR:
+				return AUTHOR_ORDER;
+			case DATE:
+				return DATE_ORDER;
+			case CONTENT:
+				return CONTENT_ORDER;
+		}
+		throw new AssertionError("Message: unknown order: " + criterium);
+	}
+
+	/**
+	 * Current default ordering accessor
+	 * @return the current (immutable) ordering used by
+	 * {@link #compareTo(Message)}
+	 */
+	public static MessageOrdering getOrdering()
+	{
+		return ordering;
+	}
+
+	/**
+	 * Add order criterium to criteria in {@link #ordering} iff not already
 	 * present
 	 * @param o the criterium to add
 	 * @return true if such criterium was not already present and has been added
-	 * to {@link #orders}, false otherwise
+	 * to {@link #ordering}, false otherwise
 	 */
-	public static boolean addOrder(MessageOrder o)
+	public static synchronized boolean addOrder(MessageOrder o)
 	{
-		/*
-		 * TODO Add o the orders if it was not already in and return true
-		 */
-		if(!orders.contains(o))
+		MessageOrdering newOrdering = ordering.with(o);
+		if (newOrdering != ordering)
 		{
-			orders.add(o);
+			ordering = newOrdering;
 			return true;
 		}
 		return false;
 	}
 
 	/**
-	 * Remove order criterium from criteria in {@link #orders}
+	 * Remove order criterium from criteria in {@link #ordering}
 	 * @param o the criterium to remove
 	 * @return true if the criterium has been removed from criteria,
 	 * false otherwise
 	 */
-	public static boolean removeOrder(MessageOrder o)
+	public static synchronized boolean removeOrder(MessageOrder o)
 	{
-		/*
-		 * TODO Remove o from the orders if it was in and retur true
-		 */
-		if(orders.contains(o))
+		MessageOrdering newOrdering = ordering.without(o);
+		if (newOrdering != ordering)
 		{
-			orders.remove(o);
+			ordering = newOrdering;
 			return true;
 		}
-		
 		return false;
 	}
 
 	/**
-	 * Current number of criteria in {@link #orders}
-	 * @return le number of criteria in {@link #orders}
+	 * Current criteria in {@link #ordering}
+	 * @return a copy of the current criteria list
+	 */
+	public static List<MessageOrder> getOrders()
+	{
+		return new ArrayList<MessageOrder>(ordering.getCriteria());
+	}
+
+	/**
+	 * Current number of criteria in {@link #ordering}
+	 * @return le number of criteria in {@link #ordering}
 	 */
 	public static int orderSize()
 	{
-		return orders.size();
+		return ordering.size();
 	}
 
 	/**
-	 * Clear all criteria in {@link #orders}
+	 * Clear all criteria in {@link #ordering}
 	 */
-	public static void clearOrders()
+	public static synchronized void clearOrders()
 	{
-		/*
-		 * TODO Clear orders
-		 */
-		orders.clear();
+		ordering = MessageOrdering.NONE;
 	}
 }
@@ -0,0 +1,192 @@
+package models;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import javax.swing.AbstractListModel;
+import javax.swing.JList;
+
+/**
+ * ListModel presenting the sorted view of a {@link MessageStore} to a
+ * {@link JList} so that messages can be displayed in a virtualized list: the
+ * list only lays out and paints the visible rows, whatever the number of
+ * messages, and no rendered text is retained (rows are rendered on demand
+ * from the messages by the list's cell renderer).
+ * <ul>
+ * <li>Without filter the rows are the messages of the store's view
+ * ({@link MessageStore#getSorted(int)}), so nothing is copied</li>
+ * <li>With a filter (a set of author ids) the rows are the positions of the
+ * messages of the filtered authors in view order, obtained by merging their
+ * posting lists ({@link MessageStore#positions(BitSet)}), so messages are
+ * only accessed when their row is painted (which matters when older
+ * messages of the store have been spilled to a file)</li>
+ * </ul>
+ * The store is not observable, so the owner of this model should call
+ * {@link #insert(Message, int)} when a message has been added to the store
+ * (which only adds its row) and {@link #refresh()} when the store has been
+ * otherwise modified (ordering changed, store cleared).
+ * Like {@link MessageStore} this class is not thread safe and should be
+ * confined to the Event Dispatch Thread.
+ * @author davidroussel
+ */
+public class MessageListModel extends AbstractListModel<Message>
+{
+	/**
+	 * Serial ID (because {@link AbstractListModel} is serializable)
+	 */
+	private static final long serialVersionUID = 3283420858131563262L;
+
+	/**
+	 * The store containing the messages to present
+	 */
+	private final MessageStore store;
+
+	/**
+	 * Ids of the authors whose messages are presented (or null if all
+	 * messages are presented)
+	 */
+	private BitSet filter;
+
+	/**
+	 * Positions in the store of the messages presented when {@link #filter}
+	 * is set (in view order). Only the first {@link #size} are valid.
+	 */
+	private int[] rows;
+
+	/**
+	 * Number of rows already notified to listeners
+	 */
+	private int size;
+
+	/**
+	 * Constructor
+	 * @param store the store containing the messages to present
+	 * @throws NullPointerException if store is null
+	 */
+	public MessageListModel(MessageStore store)
+	{
+		if (store == null)
+		{
+			throw new NullPointerException("MessageListModel: null store");
+		}
+		this.store = store;
+		filter = null;
+		rows = new int[0];
+		size = store.size();
+	}
+
+	/**
+	 * Filter accessor
+	 * @return a copy of the ids of the authors whose messages are presented
+	 * or null if all messages are presented
+	 */
+	public BitSet getFilter()
+	{
+		return (filter == null ? null : (BitSet) filter.clone());
+	}
+
+	/**
+	 * Sets the authors whose messages are presented and refreshes the rows
+	 * @param authorIds the ids of the authors in the {@link AuthorTable} or
+	 * null to present all messages
+	 */
+	public void setFilter(BitSet authorIds)
+	{
+		filter = (authorIds == null ? null : (BitSet) authorIds.clone());
+		refresh();
+	}
+
+	/**
+	 * Notifies the addition of a message at some index of the store's view:
+	 * inserts a row iff this message passes the {@link #filter}. The message
+	 * should be the last message added to the store.
+	 * @param message the message which has just been added to the store
+	 * @param index the index of this message in the store's view (as
+	 * returned by {@link MessageStore#add(Message)})
+	 * @return true if a new row has been inserted
+	 */
+	public boolean insert(Message message, int index)
+	{
+		int row = index;
+		if (filter != null)
+		{
+			int authorId = message.getAuthorId();
+			if ((authorId < 0) || !filter.get(authorId))
+			{
+				return false;
+			}
+			row = store.filteredIndex(index, filter);
+			if (size == rows.length)
+			{
+				rows = Arrays.copyOf(rows, Math.max(16, size * 2));
+			}
+			System.arraycopy(rows, row, rows, row + 1, size - row);
+			rows[row] = store.size() - 1;
+		}
+
+		size++;
+		fireIntervalAdded(this, row, row);
+		return true;
+	}
+
+	/**
+	 * Rebuilds all rows from the store (according to its current view and
+	 * {@link #filter}) and notifies listeners
+	 */
+	public void refresh()
+	{
+		int oldSize = size;
+		if (filter != null)
+		{
+			rows = store.positions(filter);
+			size = rows.length;
+		}
+		else
+		{
+			rows = new int[0];
+			size = store.size();
+		}
+
+		if (oldSize > 0)
+		{
+			fireIntervalRemoved(this, 0, oldSize - 1);
+		}
+		if (size > 0)
+		{
+			fireIntervalAdded(this, 0, size - 1);
+		}
+	}
+
+	/**
+	 * Number of rows
+	 * @return the number of presented messages
+	 * @see javax.swing.ListModel#getSize()
+	 */
+	@Override
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Accessor to ith row
+	 * @param index the index of the row
+	 * @return the message presented at this index or null if there is no
+	 * such row
+	 * @see javax.swing.ListModel#getElementAt(int)
+	 */
+	@Override
+	public Message getElementAt(int index)
+	{
+		if ((index < 0) || (index >= size))
+		{
+			return null;
+		}
+		// the store may have been cleared before this model is refreshed
+		if (filter != null)
+		{
+			return (rows[index] < store.size() ? store.get(rows[index]) : null);
+		}
+		return (index < store.size() ? store.getSorted(index) : null);
+	}
+}
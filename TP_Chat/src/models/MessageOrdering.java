@@ -0,0 +1,229 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import models.Message.MessageOrder;
+
+/**
+ * Immutable ordering of {@link Message}s made of a list of unique
+ * {@link MessageOrder} criteria.
+ * Each view displaying messages (or each history query) can use its own
+ * ordering: criteria are compiled once into a comparator when the ordering
+ * is created so comparing messages requires neither locks nor shared state.
+ * Orderings are modified by creating new orderings with
+ * {@link #with(MessageOrder)} and {@link #without(MessageOrder)}.
+ * @author davidroussel
+ */
+public final class MessageOrdering implements Comparator<Message>
+{
+	/**
+	 * Ordering without any criterium: all messages are considered equal
+	 */
+	public static final MessageOrdering NONE =
+		new MessageOrdering(Collections.<MessageOrder>emptyList());
+
+	/**
+	 * Unique criteria of this ordering (unmodifiable)
+	 */
+	private final List<MessageOrder> criteria;
+
+	/**
+	 * Comparator compiled from {@link #criteria}
+	 */
+	private final Comparator<Message> comparator;
+
+	/**
+	 * Private constructor (use factory methods)
+	 * @param criteria the criteria to use (duplicated criteria are ignored)
+	 */
+	private MessageOrdering(Collection<MessageOrder> criteria)
+	{
+		this.criteria = Collections.unmodifiableList(
+			new ArrayList<MessageOrder>(new LinkedHashSet<MessageOrder>(criteria)));
+		/*
+		 * Message class is not required by the empty ordering (which is
+		 * the default ordering of the Message class itself)
+		 */
+		if (this.criteria.isEmpty())
+		{
+			comparator = (Message m1, Message m2) -> 0;
+		}
+		else
+		{
+			comparator = Message.comparator(this.criteria);
+		}
+	}
+
+	/**
+	 * Factory method from criteria
+	 * @param criteria the criteria to use in this order (duplicated criteria
+	 * are ignored)
+	 * @return an ordering using these criteria
+	 */
+	public static MessageOrdering of(MessageOrder... criteria)
+	{
+		List<MessageOrder> list = new ArrayList<MessageOrder>(criteria.length);
+		Collections.addAll(list, criteria);
+		return of(list);
+	}
+
+	/**
+	 * Factory method from criteria collection
+	 * @param criteria the criteria to use in this order (duplicated criteria
+	 * are ignored)
+	 * @return an ordering using these criteria
+	 */
+	public static MessageOrdering of(Collection<MessageOrder> criteria)
+	{
+		if (criteria.isEmpty())
+		{
+			return NONE;
+		}
+		return new MessageOrdering(criteria);
+	}
+
+	/**
+	 * Ordering with an additional criterium
+	 * @param criterium the criterium to add at the end of current criteria
+	 * @return a new ordering with this criterium added or this ordering if it
+	 * already contains this criterium
+	 */
+	public MessageOrdering with(MessageOrder criterium)
+	{
+		if (criteria.contains(criterium))
+		{
+			return this;
+		}
+		List<MessageOrder> list = new ArrayList<MessageOrder>(criteria);
+		list.add(criterium);
+		return new MessageOrdering(list);
+	}
+
+	/**
+	 * Ordering without a criterium
+	 * @param criterium the criterium to remove
+	 * @return a new ordering without this criterium or this ordering if it
+	 * does not contains this criterium
+	 */
+	public MessageOrdering without(MessageOrder criterium)
+	{
+		if (!criteria.contains(criterium))
+		{
+			return this;
+		}
+		List<MessageOrder> list = new ArrayList<MessageOrder>(criteria);
+		list.remove(criterium);
+		return of(list);
+	}
+
+	/**
+	 * Criteria accessor
+	 * @return the unmodifiable list of criteria of this ordering
+	 */
+	public List<MessageOrder> getCriteria()
+	{
+		return criteria;
+	}
+
+	/**
+	 * Checks if this ordering contains a criterium
+	 * @param criterium the criterium to search
+	 * @return true if this ordering contains this criterium
+	 */
+	public boolean contains(MessageOrder criterium)
+	{
+		return criteria.contains(criterium);
+	}
+
+	/**
+	 * Number of criteria
+	 * @return the number of criteria in this ordering
+	 */
+	public int size()
+	{
+		return criteria.size();
+	}
+
+	/**
+	 * Checks if this ordering has no criteria
+	 * @return true if this ordering has no criteria and considers all
+	 * messages as equal
+	 */
+	public boolean isEmpty()
+	{
+		return criteria.isEmpty();
+	}
+
+	/**
+	 * Compares two messages according to this ordering's criteria
+	 * @param m1 the first message to compare
+	 * @param m2 the second message to compare
+	 * @return a negative integer, zero, or a positive integer as m1 is less
+	 * than, equal to, or greater than m2
+	 */
+	@Override
+	public int compare(Message m1, Message m2)
+	{
+		return comparator.compare(m1, m2);
+	}
+
+	/**
+	 * Hash code based on criteria
+	 * @return a hash value of the criteria list
+	 */
+	@Override
+	public int hashCode()
+	{
+		return criteria.hashCode();
+	}
+
+	/**
+	 * Comparison with another object
+	 * @param obj the other object
+	 * @return true if the other object is also an ordering with the same
+	 * criteria in the same order
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (obj == this)
+		{
+			return true;
+		}
+
+		if (obj instanceof MessageOrdering)
+		{
+			return criteria.equals(((MessageOrdering) obj).criteria);
+		}
+
+		return false;
+	}
+
+	/**
+	 * String representation of criteria
+	 * @return a new string representing criteria such as "{Author, Date}"
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		for (Iterator<MessageOrder> it = criteria.iterator(); it.hasNext(); )
+		{
+			sb.append(it.next().toString());
+			if (it.hasNext())
+			{
+				sb.append(", ");
+			}
+		}
+		sb.append("}");
+
+		return sb.toString();
+	}
+}
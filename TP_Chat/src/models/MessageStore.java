@@ -0,0 +1,632 @@
+package models;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Store containing all messages received by a client.
+ * Messages are kept in their arrival order and the store also maintains a
+ * sorted view of these messages according to its own {@link MessageOrdering}.
+ * <ul>
+ * <li>The sorted view is an order statistic tree of the positions of the
+ * messages in arrival order (see {@link PositionTree}), so a new message is
+ * inserted at its place, and a message is found by its index in the view,
+ * in O(log n)</li>
+ * <li>The sorted view is rebuilt only when the ordering changes through
+ * {@link #setOrdering(MessageOrdering)}. The ordering belongs to the store
+ * and does not depend on the default criteria of the {@link Message} class,
+ * so several stores (or views) can use different orderings.</li>
+ * <li>The store also maintains for each author a posting list (another
+ * order statistic tree) of the positions of this author's messages in view
+ * order, so the messages of k selected authors can be traversed in view
+ * order by merging k posting lists (see {@link #stream(BitSet)}) instead of
+ * filtering all messages</li>
+ * <li>Messages can either be all kept in memory or only the most recent ones
+ * when the store is created with a window size: older messages are then
+ * spilled to a file and paged back when needed (see
+ * {@link SpillingMessageList}). Only the positions of the messages in the
+ * view and posting lists are kept in memory for all messages.</li>
+ * </ul>
+ * Messages considered equal by the ordering are kept in their arrival order.
+ * This class is not thread safe and should be confined to a single thread
+ * (such as the Event Dispatch Thread in GUI clients).
+ * @author davidroussel
+ */
+public class MessageStore implements Iterable<Message>, Closeable
+{
+	/**
+	 * Default initial capacity of the store
+	 */
+	private static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * All messages in arrival order (either all in memory or in a
+	 * {@link SpillingMessageList})
+	 */
+	private final List<Message> messages;
+
+	/**
+	 * Ordering used to sort the view ({@link MessageOrdering#NONE} means no
+	 * ordering)
+	 */
+	private MessageOrdering ordering;
+
+	/**
+	 * Positions (in {@link #messages}) of messages sorted according to
+	 * {@link #ordering} (then by position): a single tree rooted at
+	 * {@link #viewRoot}. Positions are in arrival order when
+	 * {@link #ordering} is empty.
+	 */
+	private final PositionTree view;
+
+	/**
+	 * Root of the {@link #view} tree
+	 */
+	private int viewRoot;
+
+	/**
+	 * Authors ids of messages indexed by positions (in {@link #messages}) so
+	 * that posting lists can be rebuilt without accessing the messages
+	 */
+	private int[] authors;
+
+	/**
+	 * Posting lists: a tree for each author containing the positions (in
+	 * {@link #messages}) of all messages from this author in view order.
+	 * Messages without author are not indexed.
+	 */
+	private final PositionTree postings;
+
+	/**
+	 * Roots of the {@link #postings} trees indexed by authors ids in the
+	 * {@link AuthorTable}
+	 */
+	private int[] postingRoots;
+
+	/**
+	 * Default constructor: no ordering
+	 */
+	public MessageStore()
+	{
+		this(new ArrayList<Message>(DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * Constructor of a store keeping at most window messages in memory:
+	 * older messages are spilled to a file. No ordering.
+	 * @param window the maximum number of messages in memory (at least
+	 * {@link SpillingMessageList#PAGE_SIZE})
+	 * @param spillFile the file used to spill older messages (its content is
+	 * erased)
+	 * @throws IllegalArgumentException if window is too small
+	 * @throws IOException if the spill file can not be opened
+	 * @see SpillingMessageList
+	 */
+	public MessageStore(int window, File spillFile) throws IOException
+	{
+		this(new SpillingMessageList(window, spillFile));
+	}
+
+	/**
+	 * Constructor from an empty list used to store messages in arrival order
+	 * @param messages the list used to store messages
+	 */
+	private MessageStore(List<Message> messages)
+	{
+		this.messages = messages;
+		ordering = MessageOrdering.NONE;
+		view = new PositionTree(DEFAULT_CAPACITY);
+		viewRoot = PositionTree.NIL;
+		authors = new int[DEFAULT_CAPACITY];
+		postings = new PositionTree(DEFAULT_CAPACITY);
+		postingRoots = new int[0];
+	}
+
+	/**
+	 * Number of messages in the store
+	 * @return the number of messages in the store
+	 */
+	public int size()
+	{
+		return messages.size();
+	}
+
+	/**
+	 * Checks if the store is empty
+	 * @return true if there is no messages in the store
+	 */
+	public boolean isEmpty()
+	{
+		return messages.isEmpty();
+	}
+
+	/**
+	 * Checks if the view is sorted
+	 * @return true if there is a current ordering
+	 */
+	public boolean isSorted()
+	{
+		return !ordering.isEmpty();
+	}
+
+	/**
+	 * Current ordering accessor
+	 * @return the current (immutable) ordering of the view
+	 */
+	public MessageOrdering getOrdering()
+	{
+		return ordering;
+	}
+
+	/**
+	 * Changes the ordering of the view. The view is resorted iff the new
+	 * ordering differs from the current one.
+	 * @param newOrdering the new ordering
+	 * @return true if the ordering has changed and the view has been resorted
+	 * @throws NullPointerException if newOrdering is null
+	 */
+	public boolean setOrdering(MessageOrdering newOrdering)
+	{
+		if (newOrdering == null)
+		{
+			throw new NullPointerException("MessageStore::setOrdering: null ordering");
+		}
+		if (newOrdering.equals(ordering))
+		{
+			return false;
+		}
+
+		ordering = newOrdering;
+		int[] positions;
+		if (isSorted())
+		{
+			positions = sortView();
+		}
+		else
+		{
+			// Back to arrival order
+			positions = new int[messages.size()];
+			for (int i = 0; i < positions.length; i++)
+			{
+				positions[i] = i;
+			}
+		}
+		viewRoot = view.build(positions, 0, positions.length);
+		rebuildPostings(positions);
+		return true;
+	}
+
+	/**
+	 * Adds a new message to the store
+	 * @param message the message to add
+	 * @return the index of the new message in the view (which is also its
+	 * arrival index when the view is not sorted)
+	 * @throws NullPointerException if message is null
+	 */
+	public int add(Message message)
+	{
+		if (message == null)
+		{
+			throw new NullPointerException("MessageStore::add: null message");
+		}
+
+		int position = messages.size();
+		messages.add(message);
+		ensureCapacity(messages.size());
+		int authorId = message.getAuthorId();
+		authors[position] = authorId;
+
+		viewRoot = view.insert(viewRoot, position,
+		                       placement(view, viewRoot, message));
+
+		if (authorId != AuthorTable.NO_AUTHOR)
+		{
+			if (authorId >= postingRoots.length)
+			{
+				int length = Math.max(authorId + 1, postingRoots.length * 2);
+				int oldLength = postingRoots.length;
+				postingRoots = Arrays.copyOf(postingRoots, length);
+				Arrays.fill(postingRoots, oldLength, length, PositionTree.NIL);
+			}
+			int root = postingRoots[authorId];
+			postingRoots[authorId] =
+			    postings.insert(root, position, placement(postings, root, message));
+		}
+		return view.rank(position);
+	}
+
+	/**
+	 * Number of messages from a set of authors
+	 * @param authorIds the ids of the authors in the {@link AuthorTable}
+	 * @return the number of messages from these authors
+	 */
+	public int count(BitSet authorIds)
+	{
+		int count = 0;
+		for (int id = authorIds.nextSetBit(0);
+		     (id >= 0) && (id < postingRoots.length);
+		     id = authorIds.nextSetBit(id + 1))
+		{
+			count += postings.size(postingRoots[id]);
+		}
+		return count;
+	}
+
+	/**
+	 * Index of a message in the view filtered by a set of authors
+	 * @param index the index of the message in the view
+	 * @param authorIds the ids of the authors in the {@link AuthorTable}
+	 * @return the number of messages from these authors before the index-th
+	 * message of the view (which is its index in the filtered view when its
+	 * author is one of these authors)
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	public int filteredIndex(int index, BitSet authorIds)
+	{
+		if ((index < 0) || (index >= messages.size()))
+		{
+			throw new IndexOutOfBoundsException("MessageStore::filteredIndex: "
+			    + index);
+		}
+
+		/*
+		 * Posting lists are searched with the ranks of their messages in the
+		 * view, so messages (which might have been spilled) are not accessed
+		 */
+		int count = 0;
+		for (int id = authorIds.nextSetBit(0);
+		     (id >= 0) && (id < postingRoots.length);
+		     id = authorIds.nextSetBit(id + 1))
+		{
+			count += postings.countBefore(postingRoots[id],
+			    (int node) -> Integer.compare(index, view.rank(node)));
+		}
+		return count;
+	}
+
+	/**
+	 * Message access by arrival index
+	 * @param position the arrival index of the message
+	 * @return the message at this position
+	 * @throws IndexOutOfBoundsException if position is out of range
+	 */
+	public Message get(int position)
+	{
+		return messages.get(position);
+	}
+
+	/**
+	 * Message access by view index
+	 * @param index the index of the message in the view
+	 * @return the index-th message of the view
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	public Message getSorted(int index)
+	{
+		if ((index < 0) || (index >= messages.size()))
+		{
+			throw new IndexOutOfBoundsException("MessageStore::getSorted: "
+			    + index);
+		}
+		return messages.get(view.select(viewRoot, index));
+	}
+
+	/**
+	 * Removes all messages from the store (ordering is kept)
+	 */
+	public void clear()
+	{
+		messages.clear();
+		viewRoot = PositionTree.NIL;
+		Arrays.fill(postingRoots, PositionTree.NIL);
+	}
+
+	/**
+	 * Releases the resources used by the store (such as the spill file of a
+	 * store with a window). The store should not be used afterwards.
+	 * @throws IOException if the resources can not be released
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (messages instanceof Closeable)
+		{
+			((Closeable) messages).close();
+		}
+	}
+
+	/**
+	 * Iterator on the view (sorted messages)
+	 * @return an iterator on the messages in view order
+	 */
+	@Override
+	public Iterator<Message> iterator()
+	{
+		return new Iterator<Message>()
+		{
+			private int position = view.first(viewRoot);
+
+			@Override
+			public boolean hasNext()
+			{
+				return position != PositionTree.NIL;
+			}
+
+			@Override
+			public Message next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				Message message = messages.get(position);
+				position = view.next(position);
+				return message;
+			}
+		};
+	}
+
+	/**
+	 * Stream of messages in view order
+	 * @return a sequential stream of messages in view order
+	 */
+	public Stream<Message> stream()
+	{
+		return StreamSupport.stream(
+			Spliterators.spliterator(iterator(),
+			                         messages.size(),
+			                         Spliterator.ORDERED | Spliterator.NONNULL),
+			false);
+	}
+
+	/**
+	 * Stream of messages from a set of authors in view order.
+	 * Posting lists of the selected authors are merged so the cost of the
+	 * traversal depends on the number of resulting messages (and on the
+	 * number of selected authors) instead of the total number of messages.
+	 * @param authorIds the ids of the authors in the {@link AuthorTable}
+	 * @return a sequential stream of messages from these authors in view
+	 * order
+	 */
+	public Stream<Message> stream(BitSet authorIds)
+	{
+		return StreamSupport.stream(
+			Spliterators.spliterator(iterator(authorIds),
+			                         count(authorIds),
+			                         Spliterator.ORDERED | Spliterator.NONNULL),
+			false);
+	}
+
+	/**
+	 * Iterator on messages from a set of authors in view order (k-way merge
+	 * of posting lists)
+	 * @param authorIds the ids of the authors in the {@link AuthorTable}
+	 * @return an iterator on the messages from these authors in view order
+	 */
+	public Iterator<Message> iterator(BitSet authorIds)
+	{
+		final PrimitiveIterator.OfInt positions = positionIterator(authorIds);
+		return new Iterator<Message>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				return positions.hasNext();
+			}
+
+			@Override
+			public Message next()
+			{
+				return messages.get(positions.nextInt());
+			}
+		};
+	}
+
+	/**
+	 * Positions of messages from a set of authors in view order (k-way
+	 * merge of posting lists). Contrary to {@link #iterator(BitSet)} messages
+	 * are not accessed, so this is the way to index the filtered view of a
+	 * store whose older messages have been spilled.
+	 * @param authorIds the ids of the authors in the {@link AuthorTable}
+	 * @return a new array of the positions (see {@link #get(int)}) of the
+	 * messages from these authors in view order
+	 */
+	public int[] positions(BitSet authorIds)
+	{
+		int[] result = new int[count(authorIds)];
+		PrimitiveIterator.OfInt it = positionIterator(authorIds);
+		for (int i = 0; it.hasNext(); i++)
+		{
+			result[i] = it.nextInt();
+		}
+		return result;
+	}
+
+	/**
+	 * Iterator on positions of messages from a set of authors in view order
+	 * @param authorIds the ids of the authors in the {@link AuthorTable}
+	 * @return an iterator on the positions of the messages from these
+	 * authors in view order
+	 */
+	private PrimitiveIterator.OfInt positionIterator(BitSet authorIds)
+	{
+		/*
+		 * Cursors on non empty posting lists: cursor[0] is the next position
+		 * in a posting list and cursor[1] its rank in the view (computed once
+		 * per position), so positions are compared as in the view without
+		 * accessing the messages
+		 */
+		final PriorityQueue<int[]> cursors = new PriorityQueue<int[]>(
+			Math.max(1, authorIds.cardinality()),
+			(int[] c1, int[] c2) -> Integer.compare(c1[1], c2[1]));
+		for (int id = authorIds.nextSetBit(0);
+		     (id >= 0) && (id < postingRoots.length);
+		     id = authorIds.nextSetBit(id + 1))
+		{
+			int first = postings.first(postingRoots[id]);
+			if (first != PositionTree.NIL)
+			{
+				cursors.add(new int[] {first, view.rank(first)});
+			}
+		}
+
+		return new PrimitiveIterator.OfInt()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				return !cursors.isEmpty();
+			}
+
+			@Override
+			public int nextInt()
+			{
+				int[] cursor = cursors.poll();
+				if (cursor == null)
+				{
+					throw new NoSuchElementException();
+				}
+				int position = cursor[0];
+				int next = postings.next(position);
+				if (next != PositionTree.NIL)
+				{
+					cursor[0] = next;
+					cursor[1] = view.rank(next);
+					cursors.add(cursor);
+				}
+				return position;
+			}
+		};
+	}
+
+	/**
+	 * Comparison of a new message with the messages of a tree, used to
+	 * insert the new message (the last one of {@link #messages}) in this tree
+	 * @param tree the forest containing the tree
+	 * @param root the root of the tree
+	 * @param message the new message
+	 * @return a function comparing the new message with the message at a
+	 * node's position: negative if the new message is before it in the view,
+	 * positive otherwise (the new message is after all messages considered
+	 * equal by the ordering since its position is the last one)
+	 */
+	private IntUnaryOperator placement(PositionTree tree,
+	                                   int root,
+	                                   Message message)
+	{
+		/*
+		 * Most messages (such as messages sorted by date) are added at the
+		 * end of the view: the new message is then only compared with the
+		 * last message of the tree
+		 */
+		if (!isSorted() || (root == PositionTree.NIL) ||
+		    (ordering.compare(message, messages.get(tree.last(root))) >= 0))
+		{
+			return (int node) -> 1;
+		}
+		return (int node) ->
+		    (ordering.compare(message, messages.get(node)) < 0 ? -1 : 1);
+	}
+
+	/**
+	 * Rebuild all posting lists from the view (which gives positions of each
+	 * author in view order)
+	 * @param positions the positions of all messages in view order
+	 */
+	private void rebuildPostings(int[] positions)
+	{
+		// Positions of each author's messages in view order, grouped by author
+		int[] starts = new int[postingRoots.length + 1];
+		for (int position : positions)
+		{
+			int authorId = authors[position];
+			if (authorId != AuthorTable.NO_AUTHOR)
+			{
+				starts[authorId + 1]++;
+			}
+		}
+		for (int id = 0; id < postingRoots.length; id++)
+		{
+			starts[id + 1] += starts[id];
+		}
+		int[] grouped = new int[starts[postingRoots.length]];
+		int[] ends = Arrays.copyOf(starts, postingRoots.length);
+		for (int position : positions)
+		{
+			int authorId = authors[position];
+			if (authorId != AuthorTable.NO_AUTHOR)
+			{
+				grouped[ends[authorId]++] = position;
+			}
+		}
+
+		for (int id = 0; id < postingRoots.length; id++)
+		{
+			postingRoots[id] = postings.build(grouped, starts[id], starts[id + 1]);
+		}
+	}
+
+	/**
+	 * Sorts all messages according to {@link #ordering} (stable sort)
+	 * @return a new array of the positions of all messages in view order
+	 */
+	private int[] sortView()
+	{
+		int size = messages.size();
+		if (messages instanceof SpillingMessageList)
+		{
+			/*
+			 * Spilled messages are sorted by runs merged from temporary
+			 * files instead of being accessed randomly
+			 */
+			return ((SpillingMessageList) messages).sortedPositions(ordering);
+		}
+
+		Integer[] positions = new Integer[size];
+		for (int i = 0; i < size; i++)
+		{
+			positions[i] = i;
+		}
+
+		Arrays.sort(positions,
+		            (Integer p1, Integer p2) -> ordering.compare(messages.get(p1),
+		                                                         messages.get(p2)));
+
+		int[] sorted = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			sorted[i] = positions[i];
+		}
+		return sorted;
+	}
+
+	/**
+	 * Ensures {@link #view}, {@link #postings} and {@link #authors} can
+	 * contain at least minCapacity positions
+	 * @param minCapacity the minimum capacity
+	 */
+	private void ensureCapacity(int minCapacity)
+	{
+		if (minCapacity > authors.length)
+		{
+			int capacity = Math.max(minCapacity, authors.length * 2);
+			view.ensureCapacity(capacity);
+			postings.ensureCapacity(capacity);
+			authors = Arrays.copyOf(authors, capacity);
+		}
+	}
+}
@@ -1,26 +1,35 @@
 package models;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.swing.AbstractListModel;
 import javax.swing.JList;
 import javax.swing.ListModel;
 
 /**
- * Special ListModel containig only unique names.
+ * Special ListModel containig only unique names sorted in natural order.
+ * Names are kept in a sorted array list so that
+ * <ul>
+ * <li>accessing a name by index ({@link #getElementAt(int)}) is O(1), which
+ * matters when a {@link JList} paints its visible cells</li>
+ * <li>searching, inserting or removing a name uses a binary search</li>
+ * </ul>
  * names list acces must be atomic in order to be thread safe (1st thread
  * to gain atomic access to the list, blocks other threads access to this list).
- * So all access to {@link #nameSet} are performed in synchronized blocks
+ * So all access to {@link #names} are performed in synchronized blocks
  * {@code
- * synchronized(nameSet)
+ * synchronized(names)
  * {
  * 	...
  * }
  * }
- * Adding or removing elements from the {@link #nameSet} also triggers
- * a fireContentsChanged on all elements of the list (which might have
- * been resorted) which allow the {@link ListModel} to notify any
- * associated widget (such as a {@link JList}).
+ * Adding or removing elements from the {@link #names} also triggers
+ * a fireIntervalAdded or fireIntervalRemoved on the exact index of the
+ * element which allow the {@link ListModel} to notify any associated widget
+ * (such as a {@link JList}).
  * @see {@link javax.swing.AbstractListModel}
  */
 public class NameSetListModel extends AbstractListModel<String>
@@ -31,26 +40,29 @@ public class NameSetListModel extends AbstractListModel<String>
 	private static final long serialVersionUID = -4064595795097980179L;
 
 	/**
-	 * Observable unique names set (eventually sorted)
-	 * @see ObservableSortedSet
+	 * Unique names sorted in natural order
 	 */
-	private ObservableSortedSet<String> nameSet = null;
+	private final ArrayList<String> names;
 
 	/**
 	 * Constructor
 	 */
 	public NameSetListModel()
 	{
-		nameSet = new ObservableSortedSet<String>();
+		names = new ArrayList<String>();
 	}
 
 	/**
-	 * Name set accessor
-	 * @return the internal observable name set
+	 * Names accessor
+	 * @return a new list containing a snapshot of the sorted names (taken
+	 * atomically, so it can be traversed without any lock)
 	 */
-	public ObservableSortedSet<String> getSet()
+	public List<String> getNames()
 	{
-		return nameSet;
+		synchronized(names)
+		{
+			return new ArrayList<String>(names);
+		}
 	}
 
 	/**
@@ -58,32 +70,28 @@ public class NameSetListModel extends AbstractListModel<String>
 	 * @param value the name to add
 	 * @return true the name to add was non null, non empty, not already present
 	 * in the name set and has been added to the name set
-	 * @warning don't forget to trigger a
-	 * {@link #fireContentsChanged(Object, int, int)} when a name has
-	 * been successfully added in order for the widgets to be notified
-	 * of any change
 	 */
 	public boolean add(String value)
 	{
-		if (value != null && value != "" && !nameSet.contains(value)) {
-			synchronized(nameSet) {
-				boolean added = nameSet.add(value);
-				if (added) {
-					fireContentsChanged(this, 0, nameSet.size()-1);
-					return true;
-				}
+		if ((value == null) || value.isEmpty())
+		{
+			return false;
+		}
+
+		int index;
+		synchronized(names)
+		{
+			index = Collections.binarySearch(names, value);
+			if (index >= 0)
+			{
 				return false;
 			}
+			index = -(index + 1);
+			names.add(index, value);
 		}
-		/*
-		 * TODO Add a new name to nameSet (iff non null and non empty)
-		 * Caution :
-		 * 	- nameSet should be modified in a synchronized(namSet){...}
-		 * 	block
-		 * 	- is nameSet is actually modified observers should be
-		 * 	notified with fireContentsChanged(this, 0, nameSet.size()-1)
-		 */
-		return false;
+
+		fireIntervalAdded(this, index, index);
+		return true;
 	}
 
 	/**
@@ -93,15 +101,27 @@ public class NameSetListModel extends AbstractListModel<String>
 	 */
 	public boolean contains(String value)
 	{
-		synchronized(nameSet) {
-			return nameSet.contains(value);
+		return indexOf(value) >= 0;
+	}
+
+	/**
+	 * Index of a specific name
+	 * @param value the name to search for
+	 * @return the index of this name or -1 if the name set does not contain
+	 * this name
+	 */
+	public int indexOf(String value)
+	{
+		if (value == null)
+		{
+			return -1;
+		}
+
+		synchronized(names)
+		{
+			int index = Collections.binarySearch(names, value);
+			return (index >= 0 ? index : -1);
 		}
-		/*
-		 * TODO return true if value is part of nameSet
-		 * Caution :
-		 * 	- nameSet should be accessed in a synchronized(namSet){...}
-		 * 	block
-		 */
 	}
 
 	/**
@@ -109,57 +129,66 @@ public class NameSetListModel extends AbstractListModel<String>
 	 * @param index the index of the name to remove from name set
 	 * @return true if element at index has been successfully removed, false
 	 * otherwise
-	 * @warning don't forget to trigger a
-	 * {@link #fireContentsChanged(Object, int, int)} when a name has
-	 * been successfully removed in order for the widgets to be notified
-	 * of any change.
 	 */
 	public boolean remove(int index)
 	{
-		if (index < nameSet.size() && index >= 0) {
-			synchronized(nameSet) {
-				Object[] l = nameSet.toArray();
-				boolean removed = nameSet.remove(l[index]);
-				if (removed) {
-					fireContentsChanged(this, 0, nameSet.size()-1);
-					return true;
-				}
+		synchronized(names)
+		{
+			if ((index < 0) || (index >= names.size()))
+			{
+				return false;
+			}
+			names.remove(index);
+		}
+
+		fireIntervalRemoved(this, index, index);
+		return true;
+	}
+
+	/**
+	 * Remove a specific name from the name set
+	 * @param value the name to remove
+	 * @return true if the name has been successfully removed, false
+	 * otherwise
+	 */
+	public boolean remove(String value)
+	{
+		if (value == null)
+		{
+			return false;
+		}
+
+		int index;
+		synchronized(names)
+		{
+			index = Collections.binarySearch(names, value);
+			if (index < 0)
+			{
 				return false;
 			}
+			names.remove(index);
 		}
-		/*
-		 * TODO Remove the element at index "index" of nameSet
-		 * Caution :
-		 * 	- nameSet should be modified in a synchronized(namSet){...}
-		 * 	block
-		 * 	- is nameSet is actually modified observers should be
-		 * 	notified with fireContentsChanged(this, 0, nameSet.size()-1)
-		 */
-		return false;
+
+		fireIntervalRemoved(this, index, index);
+		return true;
 	}
 
 	/**
 	 * Clears names et content
-	 * @warning don't forget to trigger a
-	 * {@link #fireContentsChanged(Object, int, int)} when the name set content
-	 * changes in order for the widgets to be notified of any change.
 	 */
 	public void clear()
 	{
-		synchronized(nameSet) {
-			nameSet.clear();
-			if (nameSet.size() == 0) {
-				fireContentsChanged(this, 0, nameSet.size()-1);
-			}
+		int size;
+		synchronized(names)
+		{
+			size = names.size();
+			names.clear();
+		}
+
+		if (size > 0)
+		{
+			fireIntervalRemoved(this, 0, size - 1);
 		}
-		/*
-		 * TODO clear nameSet
-		 * Caution :
-		 * 	- nameSet should be modified in a synchronized(namSet){...}
-		 * 	block
-		 * 	- is nameSet is actually modified observers should be
-		 * 	notified with fireContentsChanged(this, 0, nameSet.size()-1)
-		 */
 	}
 
 	/**
@@ -170,8 +199,10 @@ public class NameSetListModel extends AbstractListModel<String>
 	@Override
 	public int getSize()
 	{
-		return nameSet.size();
-		// TODO Replace with implementation ...
+		synchronized(names)
+		{
+			return names.size();
+		}
 	}
 
 	/**
@@ -184,18 +215,14 @@ public class NameSetListModel extends AbstractListModel<String>
 	@Override
 	public String getElementAt(int index)
 	{
-		if (index < nameSet.size() && index >= 0) {
-			synchronized(nameSet) {
-				Object[] l = nameSet.toArray();
-				return (String) l[index];
+		synchronized(names)
+		{
+			if ((index < 0) || (index >= names.size()))
+			{
+				return null;
 			}
+			return names.get(index);
 		}
-		/*
-		 * Get nameSet at index "index"
-		 * Caution :
-		 * 	- nameSet should be accessed in a synchronized(namSet){...}
-		 */
-		return null;
 	}
 
 	/**
@@ -206,12 +233,15 @@ public class NameSetListModel extends AbstractListModel<String>
 	public String toString()
 	{
 		StringBuilder sb = new StringBuilder();
-		for (Iterator<String> it = nameSet.iterator(); it.hasNext();)
+		synchronized(names)
 		{
-			sb.append(it.next());
-			if (it.hasNext())
+			for (Iterator<String> it = names.iterator(); it.hasNext();)
 			{
-				sb.append(", ");
+				sb.append(it.next());
+				if (it.hasNext())
+				{
+					sb.append(", ");
+				}
 			}
 		}
 		return sb.toString();
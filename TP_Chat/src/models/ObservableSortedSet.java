@@ -1,32 +1,202 @@
 package models;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Observable;
+import java.util.Observer;
+import java.util.Queue;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * A {@link SortedSet} that can be {@link Observable}.
  * Each operation of {@link SortedSet} is reimplemented with an eventual
  * nofication of observers when an operation changes the set content.
+ * Observers are notified with an unmodifiable {@link List} of
+ * {@link Change}s describing each added or removed element, so observers can
+ * update themselves without rereading the whole set. Computing the index of
+ * an element in the set is linear, so changes only carry indices when an
+ * observer has requested them with {@link #addObserver(Observer, boolean)}.
+ * Changes performed between {@link #beginBatch()} and {@link #endBatch()}
+ * (and changes performed by bulk operations such as
+ * {@link #addAll(Collection)}) are coalesced into a single notification.
+ * Notifications are delivered outside of the set's lock (so observers can
+ * read the set) but in the order changes have been performed: when several
+ * threads change the set concurrently, their notifications are queued and
+ * delivered one at a time by one of these threads.
+ * This set is backed by a synchronized {@link TreeSet}: its
+ * {@link #iterator()} traverses a snapshot of the set taken atomically, so
+ * it never throws {@link java.util.ConcurrentModificationException}.
+ * The {@link #subSet(Object, Object)}, {@link #headSet(Object)} and
+ * {@link #tailSet(Object)} views are unmodifiable since changes through them
+ * would not be notified.
+ * See {@link ConcurrentObservableSortedSet} for a variant whose readers never
+ * lock.
  * @author davidroussel
  */
 public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 {
+	/**
+	 * A single change of the set content
+	 * @param <E> the type of elements of the set
+	 */
+	public static final class Change<E>
+	{
+		/**
+		 * Kinds of changes
+		 */
+		public enum Type
+		{
+			/**
+			 * An element has been added
+			 */
+			ADDED,
+			/**
+			 * An element has been removed
+			 */
+			REMOVED,
+			/**
+			 * All elements have been removed
+			 */
+			CLEARED
+		}
+
+		/**
+		 * Kind of change
+		 */
+		private final Type type;
+
+		/**
+		 * Added or removed element (null when set is cleared)
+		 */
+		private final E element;
+
+		/**
+		 * Index of the added element after insertion or index of the removed
+		 * element before removal (-1 when set is cleared or when no observer
+		 * requested indices)
+		 */
+		private final int index;
+
+		/**
+		 * Constructor
+		 * @param type the kind of change
+		 * @param element the added or removed element
+		 * @param index the index of the added or removed element
+		 */
+		private Change(Type type, E element, int index)
+		{
+			this.type = type;
+			this.element = element;
+			this.index = index;
+		}
+
+		/**
+		 * Kind of change accessor
+		 * @return the kind of change
+		 */
+		public Type getType()
+		{
+			return type;
+		}
+
+		/**
+		 * Element accessor
+		 * @return the added or removed element or null if set has been
+		 * cleared
+		 */
+		public E getElement()
+		{
+			return element;
+		}
+
+		/**
+		 * Index accessor
+		 * @return the index of the added element after insertion, the index of
+		 * the removed element before removal or -1 if set has been cleared or
+		 * if no observer requested indices (see
+		 * {@link ObservableSortedSet#addObserver(Observer, boolean)})
+		 */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * String representation of this change
+		 * @return a string such as "ADDED Zébulon at 3"
+		 */
+		@Override
+		public String toString()
+		{
+			if (type == Type.CLEARED)
+			{
+				return type.toString();
+			}
+			return type + " " + element + " at " + index;
+		}
+	}
+
 	/**
 	 * The internal sorted set
 	 */
-	private SortedSet<E> set;
+	private final SortedSet<E> set;
+
+	/**
+	 * Lock used by all changes to {@link #set} (and by reads of
+	 * {@link #set} requiring a consistent state)
+	 */
+	private final Object lock;
+
+	/**
+	 * Indicates {@link #set} is a concurrent set which can be read and
+	 * traversed without locking
+	 */
+	private final boolean concurrent;
+
+	/**
+	 * Batches nesting level: notifications are delayed while this level is
+	 * positive
+	 */
+	private int batchLevel = 0;
+
+	/**
+	 * Changes not yet notified to observers
+	 */
+	private List<Change<E>> pending = new ArrayList<Change<E>>();
+
+	/**
+	 * Notifications (lists of changes) recorded but not yet delivered to
+	 * observers, in recording order (guarded by {@link #lock})
+	 */
+	private final Queue<List<Change<E>>> notifications =
+	    new ArrayDeque<List<Change<E>>>();
+
+	/**
+	 * Indicates a thread is delivering {@link #notifications} (guarded by
+	 * {@link #lock})
+	 */
+	private boolean notifying = false;
+
+	/**
+	 * Observers requiring the index of each change
+	 */
+	private final Set<Observer> indexedObservers =
+	    new CopyOnWriteArraySet<Observer>();
 
 	/**
 	 * Default Constructor
 	 */
 	public ObservableSortedSet()
 	{
-		set = Collections.synchronizedSortedSet(new TreeSet<E>());
+		this(Collections.synchronizedSortedSet(new TreeSet<E>()), false);
 	}
 
 	/**
@@ -35,7 +205,7 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	 */
 	public ObservableSortedSet(Collection<? extends E> c)
 	{
-		set = Collections.synchronizedSortedSet(new TreeSet<E>(c));
+		this(Collections.synchronizedSortedSet(new TreeSet<E>(c)), false);
 	}
 
 	/**
@@ -44,7 +214,8 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	 */
 	public ObservableSortedSet(Comparator<? super E> comparator)
 	{
-		set = Collections.synchronizedSortedSet(new TreeSet<E>(comparator));
+		this(Collections.synchronizedSortedSet(new TreeSet<E>(comparator)),
+		     false);
 	}
 
 	/**
@@ -53,7 +224,22 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	 */
 	public ObservableSortedSet(SortedSet<E> s)
 	{
-		set = Collections.synchronizedSortedSet(new TreeSet<E>(s));
+		this(Collections.synchronizedSortedSet(new TreeSet<E>(s)), false);
+	}
+
+	/**
+	 * Constructor from the internal set
+	 * @param set the internal set: either a set returned by
+	 * {@link Collections#synchronizedSortedSet(SortedSet)} (which is then also
+	 * used as lock) or a concurrent sorted set
+	 * @param concurrent true if set is a concurrent set which can be read and
+	 * traversed without locking
+	 */
+	protected ObservableSortedSet(SortedSet<E> set, boolean concurrent)
+	{
+		this.set = set;
+		this.concurrent = concurrent;
+		lock = (concurrent ? new Object() : set);
 	}
 
 	/* (non-Javadoc)
@@ -89,7 +275,49 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public Iterator<E> iterator()
 	{
-		return set.iterator();
+		final Iterator<E> it;
+		if (concurrent)
+		{
+			// Weakly consistent iterator
+			it = set.iterator();
+		}
+		else
+		{
+			synchronized (lock)
+			{
+				it = new ArrayList<E>(set).iterator();
+			}
+		}
+
+		// Removals through the iterator are notified to observers
+		return new Iterator<E>()
+		{
+			private E last = null;
+
+			@Override
+			public boolean hasNext()
+			{
+				return it.hasNext();
+			}
+
+			@Override
+			public E next()
+			{
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove()
+			{
+				if (last == null)
+				{
+					throw new IllegalStateException();
+				}
+				ObservableSortedSet.this.remove(last);
+				last = null;
+			}
+		};
 	}
 
 	/* (non-Javadoc)
@@ -116,13 +344,16 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public boolean add(E e)
 	{
-		boolean added = set.add(e);
-		if (added)
+		boolean added;
+		synchronized (lock)
 		{
-			System.out.println(getClass().getSimpleName() + " add(): " + this);
-			setChanged();
-			notifyObservers(set);
+			added = set.add(e);
+			if (added)
+			{
+				record(Change.Type.ADDED, e, indexOf(e));
+			}
 		}
+		fire();
 		return added;
 	}
 
@@ -130,15 +361,20 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	 * @see java.util.Set#remove(java.lang.Object)
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public boolean remove(Object o)
 	{
-		boolean removed = set.remove(o);
-		if (removed)
+		boolean removed;
+		synchronized (lock)
 		{
-			System.out.println(getClass().getSimpleName() + " remove(): " + this);
-			setChanged();
-			notifyObservers(set);
+			int index = (set.contains(o) ? indexOf((E) o) : -1);
+			removed = set.remove(o);
+			if (removed)
+			{
+				record(Change.Type.REMOVED, (E) o, index);
+			}
 		}
+		fire();
 		return removed;
 	}
 
@@ -157,12 +393,22 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public boolean addAll(Collection<? extends E> c)
 	{
-		boolean added = set.addAll(c);
-		if (added)
+		boolean added = false;
+		// changes are notified by endBatch once the lock is released
+		beginBatch();
+		try
+		{
+			synchronized (lock)
+			{
+				for (E e : c)
+				{
+					added |= add(e);
+				}
+			}
+		}
+		finally
 		{
-			System.out.println(getClass().getSimpleName() + " addAll(): " + this);
-			setChanged();
-			notifyObservers(set);
+			endBatch();
 		}
 		return added;
 	}
@@ -173,14 +419,27 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public boolean retainAll(Collection<?> c)
 	{
-		boolean retained = set.retainAll(c);
-		if (retained)
+		boolean removed = false;
+		// changes are notified by endBatch once the lock is released
+		beginBatch();
+		try
+		{
+			synchronized (lock)
+			{
+				for (E e : new ArrayList<E>(set))
+				{
+					if (!c.contains(e))
+					{
+						removed |= remove(e);
+					}
+				}
+			}
+		}
+		finally
 		{
-			System.out.println(getClass().getSimpleName() + " retainAll(): " + this);
-			setChanged();
-			notifyObservers(set);
+			endBatch();
 		}
-		return retained;
+		return removed;
 	}
 
 	/* (non-Javadoc)
@@ -189,12 +448,22 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public boolean removeAll(Collection<?> c)
 	{
-		boolean removed = set.removeAll(c);
-		if (removed)
+		boolean removed = false;
+		// changes are notified by endBatch once the lock is released
+		beginBatch();
+		try
+		{
+			synchronized (lock)
+			{
+				for (Object o : c)
+				{
+					removed |= remove(o);
+				}
+			}
+		}
+		finally
 		{
-//			System.out.println(getClass().getSimpleName() + " removeAll(): " + this);
-			setChanged();
-			notifyObservers(set);
+			endBatch();
 		}
 		return removed;
 	}
@@ -205,10 +474,181 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public void clear()
 	{
-		set.clear();
-//		System.out.println(getClass().getSimpleName() + " clear(): " + this);
-		setChanged();
-		notifyObservers(set);
+		synchronized (lock)
+		{
+			if (!set.isEmpty())
+			{
+				set.clear();
+				record(Change.Type.CLEARED, null, -1);
+			}
+		}
+		fire();
+	}
+
+	/**
+	 * Adds an observer which may require the index of each change in the set
+	 * @param o the observer to add
+	 * @param indices true if the changes notified to this observer should
+	 * contain the index of each added or removed element (which costs a
+	 * traversal of the set for each change), false if indices are not needed
+	 * (as with {@link #addObserver(Observer)})
+	 * @throws NullPointerException if o is null
+	 */
+	public synchronized void addObserver(Observer o, boolean indices)
+	{
+		addObserver(o);
+		if (indices)
+		{
+			indexedObservers.add(o);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Observable#deleteObserver(java.util.Observer)
+	 */
+	@Override
+	public synchronized void deleteObserver(Observer o)
+	{
+		super.deleteObserver(o);
+		indexedObservers.remove(o);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Observable#deleteObservers()
+	 */
+	@Override
+	public synchronized void deleteObservers()
+	{
+		super.deleteObservers();
+		indexedObservers.clear();
+	}
+
+	/**
+	 * Starts a batch of changes: observers will be notified of all changes
+	 * performed until the matching {@link #endBatch()} in a single
+	 * notification. Batches can be nested, notification then occurs at the
+	 * end of the outermost batch.
+	 */
+	public void beginBatch()
+	{
+		synchronized (lock)
+		{
+			batchLevel++;
+		}
+	}
+
+	/**
+	 * Ends a batch of changes started with {@link #beginBatch()} and notifies
+	 * observers of all changes performed during the batch (if any and if this
+	 * is the outermost batch)
+	 * @throws IllegalStateException if there is no batch to end
+	 */
+	public void endBatch()
+	{
+		synchronized (lock)
+		{
+			if (batchLevel == 0)
+			{
+				throw new IllegalStateException("ObservableSortedSet::endBatch:"
+				    + " no batch to end");
+			}
+			batchLevel--;
+			if ((batchLevel == 0) && !pending.isEmpty())
+			{
+				notifications.add(pending);
+				pending = new ArrayList<Change<E>>();
+			}
+		}
+		fire();
+	}
+
+	/**
+	 * Records a change (caller must hold {@link #lock}): the change is
+	 * queued in {@link #notifications} unless a batch is in progress
+	 * @param type the kind of change
+	 * @param element the added or removed element
+	 * @param index the index of the added or removed element
+	 */
+	private void record(Change.Type type, E element, int index)
+	{
+		if (countObservers() == 0)
+		{
+			return;
+		}
+		pending.add(new Change<E>(type, element, index));
+		if (batchLevel == 0)
+		{
+			notifications.add(pending);
+			pending = new ArrayList<Change<E>>();
+		}
+	}
+
+	/**
+	 * Delivers queued {@link #notifications} to observers in recording order
+	 * (outside of {@link #lock} so observers can access this set without
+	 * deadlock). Only one thread delivers at a time: if another thread is
+	 * already delivering, it will also deliver the notifications queued by
+	 * the current thread. Nothing is delivered while the current thread holds
+	 * {@link #lock} (within bulk operations), the outermost call will.
+	 */
+	private void fire()
+	{
+		if (Thread.holdsLock(lock))
+		{
+			return;
+		}
+
+		List<Change<E>> changes;
+		synchronized (lock)
+		{
+			if (notifying)
+			{
+				return;
+			}
+			changes = notifications.poll();
+			notifying = (changes != null);
+		}
+
+		try
+		{
+			while (changes != null)
+			{
+				setChanged();
+				notifyObservers(Collections.unmodifiableList(changes));
+				synchronized (lock)
+				{
+					changes = notifications.poll();
+					notifying = (changes != null);
+				}
+			}
+		}
+		finally
+		{
+			// an observer has thrown an exception
+			if (changes != null)
+			{
+				synchronized (lock)
+				{
+					notifying = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Index of an element in the set (linear, so only computed when an
+	 * observer requested indices; caller must hold {@link #lock})
+	 * @param e the element to search for
+	 * @return the number of elements strictly lower than e in the set or -1
+	 * if no observer requested indices
+	 */
+	private int indexOf(E e)
+	{
+		if (indexedObservers.isEmpty())
+		{
+			return -1;
+		}
+		return set.headSet(e).size();
 	}
 
 	/* (non-Javadoc)
@@ -226,7 +666,8 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public SortedSet<E> subSet(E fromElement, E toElement)
 	{
-		return set.subSet(fromElement, toElement);
+		return Collections.unmodifiableSortedSet(set.subSet(fromElement,
+		                                                    toElement));
 	}
 
 	/* (non-Javadoc)
@@ -235,7 +676,7 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public SortedSet<E> headSet(E toElement)
 	{
-		return set.headSet(toElement);
+		return Collections.unmodifiableSortedSet(set.headSet(toElement));
 	}
 
 	/* (non-Javadoc)
@@ -244,7 +685,7 @@ public class ObservableSortedSet<E> extends Observable implements SortedSet<E>
 	@Override
 	public SortedSet<E> tailSet(E fromElement)
 	{
-		return set.tailSet(fromElement);
+		return Collections.unmodifiableSortedSet(set.tailSet(fromElement));
 	}
 
 	/* (non-Javadoc)
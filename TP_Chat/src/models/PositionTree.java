@@ -0,0 +1,419 @@
+package models;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Forest of order statistic trees whose nodes are the positions (arrival
+ * indices) of the messages of a {@link MessageStore}.
+ * <ul>
+ * <li>Each tree is a treap: a binary search tree ordered as the messages of
+ * a view and balanced (in expectation) by heap ordered pseudo random
+ * priorities derived from the positions, so its height is O(log n)</li>
+ * <li>Each node also records the size of its subtree, so a position can be
+ * inserted at its place, found by its index in the tree
+ * ({@link #select(int, int)}) and ranked ({@link #rank(int)}) in
+ * O(log n)</li>
+ * <li>Trees of a forest are disjoint (a position belongs to at most one
+ * tree), so they all share the same nodes arrays indexed by positions. A
+ * tree is designated by the position of its root (or {@link #NIL} when it is
+ * empty).</li>
+ * </ul>
+ * Trees do not compare messages themselves: insertion and searches are
+ * guided by functions comparing the searched message with the message at a
+ * node's position.
+ * This class is not thread safe.
+ * @author davidroussel
+ */
+final class PositionTree
+{
+	/**
+	 * Null position (empty tree or no such node)
+	 */
+	static final int NIL = -1;
+
+	/**
+	 * Left child of each node
+	 */
+	private int[] left;
+
+	/**
+	 * Right child of each node
+	 */
+	private int[] right;
+
+	/**
+	 * Parent of each node ({@link #NIL} for roots)
+	 */
+	private int[] parent;
+
+	/**
+	 * Size of the subtree of each node
+	 */
+	private int[] size;
+
+	/**
+	 * Constructor
+	 * @param capacity the initial number of positions
+	 */
+	PositionTree(int capacity)
+	{
+		left = new int[capacity];
+		right = new int[capacity];
+		parent = new int[capacity];
+		size = new int[capacity];
+	}
+
+	/**
+	 * Ensures the nodes arrays can contain at least minCapacity positions
+	 * @param minCapacity the minimum capacity
+	 */
+	void ensureCapacity(int minCapacity)
+	{
+		if (minCapacity > size.length)
+		{
+			int capacity = Math.max(minCapacity, size.length * 2);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			parent = Arrays.copyOf(parent, capacity);
+			size = Arrays.copyOf(size, capacity);
+		}
+	}
+
+	/**
+	 * Number of positions in a tree
+	 * @param root the root of the tree
+	 * @return the number of positions in this tree
+	 */
+	int size(int root)
+	{
+		return (root == NIL ? 0 : size[root]);
+	}
+
+	/**
+	 * Inserts a new position in a tree
+	 * @param root the root of the tree
+	 * @param position the new position (which should not belong to any tree
+	 * of this forest)
+	 * @param compare function comparing the new position with the position
+	 * at a node: negative if the new position should be before the node's
+	 * position, positive otherwise
+	 * @return the (new) root of the tree
+	 */
+	int insert(int root, int position, IntUnaryOperator compare)
+	{
+		int newRoot = insertNode(root, position, compare);
+		parent[newRoot] = NIL;
+		return newRoot;
+	}
+
+	/**
+	 * Inserts a new position in a subtree (recursion is bounded by the
+	 * height of the tree)
+	 * @param node the root of the subtree
+	 * @param position the new position
+	 * @param compare function comparing the new position with the position
+	 * at a node
+	 * @return the (new) root of the subtree
+	 */
+	private int insertNode(int node, int position, IntUnaryOperator compare)
+	{
+		if (node == NIL)
+		{
+			left[position] = NIL;
+			right[position] = NIL;
+			size[position] = 1;
+			return position;
+		}
+
+		size[node]++;
+		if (compare.applyAsInt(node) < 0)
+		{
+			int child = insertNode(left[node], position, compare);
+			left[node] = child;
+			parent[child] = node;
+			if (priority(child) > priority(node))
+			{
+				return rotateRight(node);
+			}
+		}
+		else
+		{
+			int child = insertNode(right[node], position, compare);
+			right[node] = child;
+			parent[child] = node;
+			if (priority(child) > priority(node))
+			{
+				return rotateLeft(node);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Builds a tree from positions already in tree order (in linear time)
+	 * @param positions the positions in tree order (which should not belong
+	 * to any other tree of this forest)
+	 * @param from the index of the first position (inclusive) in positions
+	 * @param to the index of the last position (exclusive) in positions
+	 * @return the root of the new tree
+	 */
+	int build(int[] positions, int from, int to)
+	{
+		if (from >= to)
+		{
+			return NIL;
+		}
+
+		/*
+		 * Cartesian tree of the priorities: the right spine of the tree built
+		 * so far is kept on a stack and each new position (the last in tree
+		 * order) takes as left subtree the part of the spine whose priorities
+		 * are lower than its own
+		 */
+		int[] spine = new int[to - from];
+		int top = -1;
+		for (int i = from; i < to; i++)
+		{
+			int position = positions[i];
+			int last = NIL;
+			while ((top >= 0) && (priority(spine[top]) < priority(position)))
+			{
+				last = spine[top--];
+			}
+			left[position] = last;
+			right[position] = NIL;
+			if (last != NIL)
+			{
+				parent[last] = position;
+			}
+			if (top >= 0)
+			{
+				right[spine[top]] = position;
+				parent[position] = spine[top];
+			}
+			spine[++top] = position;
+		}
+
+		int root = spine[0];
+		parent[root] = NIL;
+		updateSizes(root);
+		return root;
+	}
+
+	/**
+	 * Index of a position in its tree
+	 * @param position a position belonging to a tree
+	 * @return the number of positions before this position in its tree
+	 */
+	int rank(int position)
+	{
+		int rank = size(left[position]);
+		for (int node = position; parent[node] != NIL; node = parent[node])
+		{
+			int up = parent[node];
+			if (right[up] == node)
+			{
+				rank += size(left[up]) + 1;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Position at some index of a tree
+	 * @param root the root of the tree
+	 * @param index the index of the position in the tree
+	 * @return the index-th position of the tree
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	int select(int root, int index)
+	{
+		if ((index < 0) || (index >= size(root)))
+		{
+			throw new IndexOutOfBoundsException("PositionTree::select: "
+			    + index);
+		}
+		int node = root;
+		while (true)
+		{
+			int leftSize = size(left[node]);
+			if (index < leftSize)
+			{
+				node = left[node];
+			}
+			else if (index == leftSize)
+			{
+				return node;
+			}
+			else
+			{
+				index -= leftSize + 1;
+				node = right[node];
+			}
+		}
+	}
+
+	/**
+	 * Counts the positions of a tree before a searched position
+	 * @param root the root of the tree
+	 * @param compare function comparing the searched position with the
+	 * position at a node: positive if the node's position is before the
+	 * searched position, negative or zero otherwise
+	 * @return the number of positions of the tree before the searched
+	 * position
+	 */
+	int countBefore(int root, IntUnaryOperator compare)
+	{
+		int count = 0;
+		int node = root;
+		while (node != NIL)
+		{
+			if (compare.applyAsInt(node) > 0)
+			{
+				count += size(left[node]) + 1;
+				node = right[node];
+			}
+			else
+			{
+				node = left[node];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * First position of a tree
+	 * @param root the root of the tree
+	 * @return the first position of the tree or {@link #NIL} if it is empty
+	 */
+	int first(int root)
+	{
+		int node = root;
+		if (node != NIL)
+		{
+			while (left[node] != NIL)
+			{
+				node = left[node];
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Last position of a tree
+	 * @param root the root of the tree
+	 * @return the last position of the tree or {@link #NIL} if it is empty
+	 */
+	int last(int root)
+	{
+		int node = root;
+		if (node != NIL)
+		{
+			while (right[node] != NIL)
+			{
+				node = right[node];
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Next position in a tree (in constant amortized time when traversing a
+	 * whole tree)
+	 * @param position a position belonging to a tree
+	 * @return the position following this position in its tree or
+	 * {@link #NIL} if it is the last one
+	 */
+	int next(int position)
+	{
+		if (right[position] != NIL)
+		{
+			return first(right[position]);
+		}
+		int node = position;
+		int up = parent[node];
+		while ((up != NIL) && (right[up] == node))
+		{
+			node = up;
+			up = parent[node];
+		}
+		return up;
+	}
+
+	/**
+	 * Rotation of a node with its left child
+	 * @param node the node to rotate
+	 * @return the new root of the subtree (node's former left child)
+	 */
+	private int rotateRight(int node)
+	{
+		int pivot = left[node];
+		left[node] = right[pivot];
+		if (left[node] != NIL)
+		{
+			parent[left[node]] = node;
+		}
+		right[pivot] = node;
+		parent[pivot] = parent[node];
+		parent[node] = pivot;
+		size[pivot] = size[node];
+		size[node] = size(left[node]) + size(right[node]) + 1;
+		return pivot;
+	}
+
+	/**
+	 * Rotation of a node with its right child
+	 * @param node the node to rotate
+	 * @return the new root of the subtree (node's former right child)
+	 */
+	private int rotateLeft(int node)
+	{
+		int pivot = right[node];
+		right[node] = left[pivot];
+		if (right[node] != NIL)
+		{
+			parent[right[node]] = node;
+		}
+		left[pivot] = node;
+		parent[pivot] = parent[node];
+		parent[node] = pivot;
+		size[pivot] = size[node];
+		size[node] = size(left[node]) + size(right[node]) + 1;
+		return pivot;
+	}
+
+	/**
+	 * Computes the sizes of all subtrees of a subtree (recursion is bounded
+	 * by the height of the tree)
+	 * @param node the root of the subtree
+	 * @return the size of the subtree
+	 */
+	private int updateSizes(int node)
+	{
+		if (node == NIL)
+		{
+			return 0;
+		}
+		size[node] = updateSizes(left[node]) + updateSizes(right[node]) + 1;
+		return size[node];
+	}
+
+	/**
+	 * Priority of a position: positions are mixed (finalizer of the
+	 * MurmurHash3 function, which is a bijection) so that priorities are
+	 * distinct and look random whatever the order of insertion
+	 * @param position the position
+	 * @return the priority of the position
+	 */
+	private static int priority(int position)
+	{
+		int hash = position;
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+}
@@ -0,0 +1,561 @@
+package models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+
+/**
+ * List of messages in arrival order with a bounded number of messages in
+ * memory.
+ * <ul>
+ * <li>The most recent messages (at most {@link #capacity} + {@link #PAGE_SIZE})
+ * are kept in memory in the {@link #window}</li>
+ * <li>Older messages are spilled by pages of {@link #PAGE_SIZE} messages to an
+ * append-only file</li>
+ * <li>Accessing a spilled message reads back its whole page into a small
+ * cache of recently used pages, so scrolling through older messages only
+ * reads the pages it needs</li>
+ * <li>Sorting all messages ({@link #sortedPositions(Comparator)}) is an
+ * external merge sort: runs of at most {@link #capacity} messages are read
+ * sequentially, sorted in memory and written to temporary files which are
+ * then merged</li>
+ * </ul>
+ * The heap used by this list is therefore bounded by the capacity whatever
+ * the number of messages added. Messages can only be appended (or all
+ * cleared).
+ * This class is not thread safe and should be confined to a single thread
+ * (such as the Event Dispatch Thread in GUI clients).
+ * @author davidroussel
+ */
+public class SpillingMessageList extends AbstractList<Message>
+	implements RandomAccess, Closeable
+{
+	/**
+	 * Number of messages in a page of the spill file
+	 */
+	public static final int PAGE_SIZE = 256;
+
+	/**
+	 * Minimum number of pages in the {@link #cache} (so that painting the
+	 * visible rows of a sorted view does not read the same pages again and
+	 * again)
+	 */
+	private static final int MIN_CACHED_PAGES = 16;
+
+	/**
+	 * Maximum number of messages in memory (not counting cached pages)
+	 * before the oldest page is spilled
+	 */
+	private final int capacity;
+
+	/**
+	 * Most recent messages (the ones following the spilled pages)
+	 */
+	private final ArrayList<Message> window;
+
+	/**
+	 * Append-only file containing the spilled pages
+	 */
+	private final RandomAccessFile file;
+
+	/**
+	 * Directory of the spill file (where temporary run files are created
+	 * while sorting)
+	 */
+	private final File directory;
+
+	/**
+	 * Offsets of the spilled pages in {@link #file}. Only the first
+	 * {@link #pages} are valid.
+	 */
+	private long[] pageOffsets;
+
+	/**
+	 * Number of spilled pages
+	 */
+	private int pages;
+
+	/**
+	 * End of the {@link #file} where the next page is appended
+	 */
+	private long end;
+
+	/**
+	 * Cache of the most recently read pages (indexed by page number, in
+	 * access order)
+	 */
+	private final LinkedHashMap<Integer, Message[]> cache;
+
+	/**
+	 * Constructor
+	 * @param capacity the maximum number of messages in memory (at least
+	 * {@link #PAGE_SIZE})
+	 * @param spillFile the file used to spill older messages (its content is
+	 * erased)
+	 * @throws IllegalArgumentException if capacity is less than
+	 * {@link #PAGE_SIZE}
+	 * @throws IOException if the spill file can not be opened
+	 */
+	public SpillingMessageList(int capacity, File spillFile)
+		throws IOException
+	{
+		if (capacity < PAGE_SIZE)
+		{
+			throw new IllegalArgumentException("SpillingMessageList: capacity "
+			    + capacity + " < " + PAGE_SIZE);
+		}
+		this.capacity = capacity;
+		window = new ArrayList<Message>(capacity + PAGE_SIZE);
+		file = new RandomAccessFile(spillFile, "rw");
+		file.setLength(0);
+		directory = spillFile.getAbsoluteFile().getParentFile();
+		pageOffsets = new long[16];
+		pages = 0;
+		end = 0;
+		final int cachePages = Math.max(MIN_CACHED_PAGES, capacity / PAGE_SIZE);
+		cache = new LinkedHashMap<Integer, Message[]>(cachePages * 2, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Message[]> eldest)
+			{
+				return size() > cachePages;
+			}
+		};
+	}
+
+	/**
+	 * Capacity accessor
+	 * @return the maximum number of messages in memory
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Number of spilled messages
+	 * @return the number of messages in the spill file
+	 */
+	public int spilled()
+	{
+		return pages * PAGE_SIZE;
+	}
+
+	/**
+	 * Number of messages
+	 * @return the number of messages in this list (in memory or spilled)
+	 */
+	@Override
+	public int size()
+	{
+		return spilled() + window.size();
+	}
+
+	/**
+	 * Message access by arrival index (reads back its page if the message has
+	 * been spilled and its page is not cached)
+	 * @param index the arrival index of the message
+	 * @return the message at this index
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 * @throws UncheckedIOException if the page can not be read
+	 */
+	@Override
+	public Message get(int index)
+	{
+		int spilled = spilled();
+		if (index >= spilled)
+		{
+			return window.get(index - spilled);
+		}
+		if (index < 0)
+		{
+			throw new IndexOutOfBoundsException("SpillingMessageList::get: "
+			    + index);
+		}
+
+		Integer page = Integer.valueOf(index / PAGE_SIZE);
+		Message[] messages = cache.get(page);
+		if (messages == null)
+		{
+			try
+			{
+				messages = readPage(page.intValue());
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			cache.put(page, messages);
+		}
+		return messages[index % PAGE_SIZE];
+	}
+
+	/**
+	 * Appends a message (spilling the oldest page iff the window is full)
+	 * @param index the index of the new message which should be
+	 * {@link #size()}
+	 * @param message the message to append
+	 * @throws UnsupportedOperationException if index is not {@link #size()}
+	 * @throws NullPointerException if message is null
+	 * @throws UncheckedIOException if the oldest page can not be spilled
+	 */
+	@Override
+	public void add(int index, Message message)
+	{
+		if (index != size())
+		{
+			throw new UnsupportedOperationException(
+			    "SpillingMessageList::add: messages can only be appended");
+		}
+		if (message == null)
+		{
+			throw new NullPointerException("SpillingMessageList::add: null message");
+		}
+
+		if (window.size() >= (capacity + PAGE_SIZE))
+		{
+			try
+			{
+				writePage();
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		window.add(message);
+		modCount++;
+	}
+
+	/**
+	 * Removes all messages (in memory and in the spill file)
+	 * @throws UncheckedIOException if the spill file can not be truncated
+	 */
+	@Override
+	public void clear()
+	{
+		window.clear();
+		cache.clear();
+		pages = 0;
+		end = 0;
+		modCount++;
+		try
+		{
+			file.setLength(0);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Sorts all messages (stable sort).
+	 * Messages are read sequentially by runs of at most {@link #capacity}
+	 * messages. Each run is sorted in memory and (if there are several runs)
+	 * written with the messages' positions to a temporary file. Runs are
+	 * then merged by reading these files sequentially, so the messages are
+	 * read and written only once whatever their number and the number of
+	 * messages in memory stays bounded.
+	 * @param comparator the comparator to sort messages with
+	 * @return a new array of the positions of all messages sorted with
+	 * comparator (then by position)
+	 * @throws UncheckedIOException if messages can not be read or temporary
+	 * run files can not be written or read
+	 */
+	public int[] sortedPositions(Comparator<? super Message> comparator)
+	{
+		int size = size();
+		int[] result = new int[size];
+		List<File> runs = new ArrayList<File>();
+		// actual length of each run (the last one is usually shorter)
+		int[] runLengths = new int[(size + capacity - 1) / capacity];
+		try
+		{
+			for (int start = 0; start < size; start += capacity)
+			{
+				int end = Math.min(size, start + capacity);
+				final Message[] run = new Message[end - start];
+				Integer[] positions = new Integer[run.length];
+				for (int i = 0; i < run.length; i++)
+				{
+					run[i] = get(start + i);
+					positions[i] = start + i;
+				}
+				final int offset = start;
+				Arrays.sort(positions,
+				            (Integer p1, Integer p2) ->
+				                comparator.compare(run[p1 - offset],
+				                                   run[p2 - offset]));
+
+				if ((start == 0) && (end == size))
+				{
+					// single run: no need to merge
+					for (int i = 0; i < size; i++)
+					{
+						result[i] = positions[i];
+					}
+					return result;
+				}
+
+				File runFile = File.createTempFile("chat-", ".run", directory);
+				runLengths[runs.size()] = run.length;
+				runs.add(runFile);
+				try (DataOutputStream out = new DataOutputStream(
+				    new BufferedOutputStream(new FileOutputStream(runFile))))
+				{
+					for (Integer position : positions)
+					{
+						out.writeInt(position);
+						writeMessage(out, run[position - offset]);
+					}
+				}
+			}
+
+			merge(runs, runLengths, comparator, result);
+			return result;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		finally
+		{
+			for (File runFile : runs)
+			{
+				runFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Merges sorted runs files
+	 * @param runs the sorted runs files
+	 * @param runLengths the number of messages in each run file
+	 * @param comparator the comparator used to sort the runs
+	 * @param result the array to fill with the merged positions
+	 * @throws IOException if a run file can not be read
+	 */
+	private static void merge(List<File> runs,
+	                          int[] runLengths,
+	                          Comparator<? super Message> comparator,
+	                          int[] result)
+		throws IOException
+	{
+		/*
+		 * Run cursors holding the next message and position of each run
+		 * (runs are built from increasing ranges of positions so positions
+		 * break ties as in a stable sort)
+		 */
+		final class Cursor
+		{
+			final DataInputStream in;
+			int remaining;
+			int position;
+			Message message;
+
+			Cursor(File runFile, int size) throws IOException
+			{
+				in = new DataInputStream(
+				    new BufferedInputStream(new FileInputStream(runFile)));
+				remaining = size;
+			}
+
+			boolean advance() throws IOException
+			{
+				if (remaining == 0)
+				{
+					in.close();
+					return false;
+				}
+				remaining--;
+				position = in.readInt();
+				message = readMessage(in);
+				return true;
+			}
+		}
+
+		PriorityQueue<Cursor> cursors = new PriorityQueue<Cursor>(
+		    runs.size(),
+		    (Cursor c1, Cursor c2) -> {
+		        int order = comparator.compare(c1.message, c2.message);
+		        return (order != 0 ? order :
+		            Integer.compare(c1.position, c2.position));
+		    });
+		List<Cursor> opened = new ArrayList<Cursor>(runs.size());
+		try
+		{
+			for (int r = 0; r < runs.size(); r++)
+			{
+				Cursor cursor = new Cursor(runs.get(r), runLengths[r]);
+				opened.add(cursor);
+				if (cursor.advance())
+				{
+					cursors.add(cursor);
+				}
+			}
+
+			for (int i = 0; !cursors.isEmpty(); i++)
+			{
+				Cursor cursor = cursors.poll();
+				result[i] = cursor.position;
+				if (cursor.advance())
+				{
+					cursors.add(cursor);
+				}
+			}
+		}
+		finally
+		{
+			for (Cursor cursor : opened)
+			{
+				cursor.in.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes the spill file
+	 * @throws IOException if the spill file can not be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	/**
+	 * Spills the oldest {@link #PAGE_SIZE} messages of the {@link #window} at
+	 * the end of the {@link #file} as a new page: the byte length of the page
+	 * followed by each message's timestamp, author (if any) and content.
+	 * @throws IOException if the page can not be written
+	 */
+	private void writePage() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(PAGE_SIZE * 64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (int i = 0; i < PAGE_SIZE; i++)
+		{
+			writeMessage(out, window.get(i));
+		}
+		out.flush();
+		byte[] page = bytes.toByteArray();
+
+		file.seek(end);
+		file.writeInt(page.length);
+		file.write(page);
+
+		if (pages == pageOffsets.length)
+		{
+			pageOffsets = Arrays.copyOf(pageOffsets, pages * 2);
+		}
+		pageOffsets[pages++] = end;
+		end += 4 + page.length;
+
+		window.subList(0, PAGE_SIZE).clear();
+	}
+
+	/**
+	 * Reads a spilled page
+	 * @param page the page number
+	 * @return the messages of this page
+	 * @throws IOException if the page can not be read
+	 */
+	private Message[] readPage(int page) throws IOException
+	{
+		file.seek(pageOffsets[page]);
+		byte[] bytes = new byte[file.readInt()];
+		file.readFully(bytes);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		Message[] messages = new Message[PAGE_SIZE];
+		for (int i = 0; i < PAGE_SIZE; i++)
+		{
+			messages[i] = readMessage(in);
+		}
+		return messages;
+	}
+
+	/**
+	 * Writes a message as its timestamp, author (if any) and content
+	 * @param out the output to write to
+	 * @param message the message to write
+	 * @throws IOException if writing fails
+	 */
+	private static void writeMessage(DataOutputStream out, Message message)
+		throws IOException
+	{
+		out.writeLong(message.getTimestamp());
+		out.writeBoolean(message.hasAuthor());
+		if (message.hasAuthor())
+		{
+			writeString(out, message.getAuthor());
+		}
+		writeString(out, message.getContent());
+	}
+
+	/**
+	 * Reads a message written with
+	 * {@link #writeMessage(DataOutputStream, Message)}
+	 * @param in the input to read from
+	 * @return a new message
+	 * @throws IOException if reading fails
+	 */
+	private static Message readMessage(DataInputStream in) throws IOException
+	{
+		long timestamp = in.readLong();
+		String author = (in.readBoolean() ? readString(in) : null);
+		return new Message(timestamp, readString(in), author);
+	}
+
+	/**
+	 * Writes a string as its UTF-8 byte length followed by its UTF-8 bytes
+	 * (contrary to {@link DataOutputStream#writeUTF(String)} there is no
+	 * limit on the string length)
+	 * @param out the output to write to
+	 * @param s the string to write
+	 * @throws IOException if writing fails
+	 */
+	private static void writeString(DataOutputStream out, String s)
+		throws IOException
+	{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written with {@link #writeString(DataOutputStream, String)}
+	 * @param in the input to read from
+	 * @return the string read
+	 * @throws IOException if reading fails
+	 */
+	private static String readString(DataInputStream in) throws IOException
+	{
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
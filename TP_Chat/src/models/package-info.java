@@ -9,9 +9,18 @@ package models;
  * that have sent a message (eventually sorted using {@link models.Message}s
  * ordering criteria. Such a model can be used in a {@link javax.swing.JList}
  * for instance.</li>
+ * <li>{@link models.MessageListModel} a list model presenting the sorted
+ * (and eventually filtered) view of a {@link models.MessageStore} in a
+ * virtualized {@link javax.swing.JList} of messages</li>
+ * <li>{@link models.SpillingMessageList} a list of messages keeping only the
+ * most recent ones in memory and spilling older ones to a file</li>
  * <li>{@link models.AuthorListFilter} a class implementing a
  * {@link java.util.function.Predicate} on the {@link models.Message}s and used
  * to filter Message streams with authors registered in the filter</li>
+ * <li>{@link models.AuthorTable} a symbol table associating each author's
+ * name with a small integer id shared by all messages and models</li>
+ * <li>{@link models.KeywordTrie} a prefix tree of keywords used for
+ * auto-completion</li>
  * <li>{@link models.OSCheck} a class to check the nature of the Operating
  * System</li>
  * </ul>
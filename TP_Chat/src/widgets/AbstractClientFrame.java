@@ -8,25 +8,30 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.PrintWriter;
 import java.util.Map;
-import java.util.Random;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 import javax.swing.JTextPane;
 import javax.swing.TransferHandler;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.Style;
+import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 
+import chat.client.ClientLifecycle;
 import logger.LoggerFactory;
 
 /**
  * Abstract frame containing all common elements to all GUI Chat Clients.
  * <ul>
- * <li>{@link #commonRun} to ensure common run/stop of multiple threads</li>
- * <li>{@link #inPipe} input stream to read messages from server (text or object
- * messages) and displya messages in the client.</li>
+ * <li>{@link #lifecycle} to ensure common run/stop of multiple threads</li>
+ * <li>{@link #inPipe} input stream to read messages from server (text
+ * messages) and displya messages in the client. Clients displaying
+ * {@link models.Message} objects receive them directly through a
+ * {@link chat.client.MessageQueue} instead.</li>
  * <li>{@link #outPipe} output stream to write messages to the server
  * (text)</li>
  * <li>{@link #outPW} output print writer to write user messages to the
@@ -41,6 +46,10 @@ import logger.LoggerFactory;
  * <li>{@link #colorMap} map associating a word with a color in order to
  * associate a unique color to each users logged on the server whe displaying
  * messages</li>
+ * <li>{@link #styleMap} map associating a word with a text style (based on
+ * {@link #documentStyle} with the word's color) so that displaying a
+ * message from a user does not require to modify the
+ * {@link #documentStyle}</li>
  * </ul>
  * @author davidroussel
  */
@@ -52,10 +61,10 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 	private static final long serialVersionUID = 7475861952441319100L;
 
 	/**
-	 * Common run when mutiple threads are used for listening to server's
-	 * messages
+	 * Run state shared with the other threads of the client (when mutiple
+	 * threads are used for listening to server's messages)
 	 */
-	protected Boolean commonRun;
+	protected final ClientLifecycle lifecycle;
 
 	/**
 	 * Piped intput stream to read messages from server
@@ -102,11 +111,23 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 	 */
 	protected Map<String, Color> colorMap;
 
+	/**
+	 * Map associating names to text styles (resolving to
+	 * {@link #documentStyle} with name's color as foreground) so that each
+	 * message from specific users can be inserted in the {@link #document}
+	 * with a single call to
+	 * {@link StyledDocument#insertString(int, String, AttributeSet)}
+	 * This map is updated with calls to {@link #getStyleFromName(String)}
+	 * @see #getStyleFromName(String)
+	 */
+	protected Map<String, AttributeSet> styleMap;
+
 	/**
 	 * [protected] constructor (used in subclasses)
 	 * @param name user name
 	 * @param host chat server's names or IP address
-	 * @param commonRun common run status with other threads in the client
+	 * @param lifecycle run state shared with other threads in the client (or
+	 * null to create a new one)
 	 * @param parentLogger parent logger
 	 * @throws HeadlessException when code that is dependent on a keyboard,
 	 * display, or mouse is called in an environment that does not support a
@@ -114,7 +135,7 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 	 */
 	protected AbstractClientFrame(String name,
 	                              String host,
-	                              Boolean commonRun,
+	                              ClientLifecycle lifecycle,
 	                              Logger parentLogger)
 		throws HeadlessException
 	{
@@ -128,15 +149,15 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 		                                    	parentLogger.getLevel()));
 
 		// --------------------------------------------------------------------
-		// Common run with other threads
+		// Run state shared with other threads
 		//---------------------------------------------------------------------
-		if (commonRun != null)
+		if (lifecycle != null)
 		{
-			this.commonRun = commonRun;
+			this.lifecycle = lifecycle;
 		}
 		else
 		{
-			this.commonRun = Boolean.TRUE;
+			this.lifecycle = new ClientLifecycle(logger);
 		}
 
 		// --------------------------------------------------------------------
@@ -148,6 +169,13 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 		outPipe = new PipedOutputStream();
 		logger.info("AbstractClientFrame : PipedOutputStream Created");
 		outPW = new PrintWriter(outPipe, true);
+		/*
+		 * Closing inPipe makes any further write to it fail, but does not
+		 * wake up a thread blocked reading it (which polls the pipe every
+		 * second): subclasses reading inPipe also register their thread with
+		 * the lifecycle so it is interrupted when stopping
+		 */
+		this.lifecycle.register(inPipe);
 		if (outPW.checkError())
 		{
 			logger.warning("ClientFrame: Output PrintWriter has errors");
@@ -171,7 +199,8 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 		document = null;
 		documentStyle = null;
 		defaultColor = Color.BLACK;
-		colorMap = new TreeMap<String, Color>();
+		colorMap = new ConcurrentHashMap<String, Color>();
+		styleMap = new ConcurrentHashMap<String, AttributeSet>();
 	}
 
 	/**
@@ -211,25 +240,62 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 		/*
 		 * DONE return a color (not too bright, using Color#darker()) from the
 		 * provided name.
-		 * You can use the name's hashcode and a Random#nextInt to generate the
-		 * color
+		 * The name's hashcode is mixed so that similar names (whose hashcodes
+		 * only differ by their low bits) get very different hues
 		 */
-		if (name != null)
+		if ((name == null) || name.isEmpty())
 		{
-			if (name.length() > 0)
+			return null;
+		}
+
+		return colorMap.computeIfAbsent(name, (String key) -> {
+			int hash = mix(key.hashCode());
+			float hue = (hash & 0xFFFF) / 65536.0f;
+			float saturation = 0.6f + (((hash >>> 16) & 0xFF) / 255.0f) * 0.4f;
+			return Color.getHSBColor(hue, saturation, 0.9f).darker();
+		});
+	}
+
+	/**
+	 * Compute text style from name: retrieve style from {@link #styleMap} and
+	 * if this name is not already in the map add a new <name, style> to the
+	 * map before retrieving. The new style resolves to {@link #documentStyle}
+	 * and uses {@link #getColorFromName(String)} as foreground color.
+	 * @param name the name to generate style from
+	 * @return the text style associated to the name or {@link #documentStyle}
+	 * if name is null or empty
+	 */
+	protected AttributeSet getStyleFromName(String name)
+	{
+		if ((name == null) || name.isEmpty())
+		{
+			return documentStyle;
+		}
+
+		return styleMap.computeIfAbsent(name, (String key) -> {
+			SimpleAttributeSet style = new SimpleAttributeSet();
+			if (documentStyle != null)
 			{
-				if (!colorMap.containsKey(name))
-				{
-					Random rand = new Random(name.hashCode());
-					colorMap.put(name, new Color(rand.nextInt()).darker());
-					// colorMap.put(name, name.hashCode()).darker();
-				}
-
-				return colorMap.get(name);
+				style.setResolveParent(documentStyle);
 			}
-		}
+			StyleConstants.setForeground(style, getColorFromName(key));
+			return style;
+		});
+	}
 
-		return null;
+	/**
+	 * Mixes the bits of a hashcode (finalizer of the MurmurHash3 function)
+	 * @param hash the hashcode to mix
+	 * @return the mixed hashcode
+	 */
+	private static int mix(int hash)
+	{
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
 	}
 
 	/**
@@ -12,6 +12,7 @@ import java.awt.event.WindowEvent;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.util.logging.Logger;
 
 import javax.swing.AbstractAction;
@@ -36,6 +37,7 @@ import javax.swing.text.DefaultCaret;
 import javax.swing.text.StyleConstants;
 
 import chat.Vocabulary;
+import chat.client.ClientLifecycle;
 import models.Message;
 
 /**
@@ -95,7 +97,7 @@ public class ClientFrame extends AbstractClientFrame
 	 * Window constructor
 	 * @param name user's name
 	 * @param host server's name or IP address
-	 * @param commonRun common run with other threads
+	 * @param lifecycle run state shared with other threads
 	 * @param parentLogger parent logger
 	 * @throws HeadlessException when code that is dependent on a keyboard,
 	 * display, or mouse is called in an environment that does not support a
@@ -103,11 +105,11 @@ public class ClientFrame extends AbstractClientFrame
 	 */
 	public ClientFrame(String name,
 	                   String host,
-	                   Boolean commonRun,
+	                   ClientLifecycle lifecycle,
 	                   Logger parentLogger)
 	    throws HeadlessException
 	{
-		super(name, host, commonRun, parentLogger);
+		super(name, host, lifecycle, parentLogger);
 		thisRef = this;
 		
 		// -------------------------------------------------------------
@@ -224,29 +226,10 @@ public class ClientFrame extends AbstractClientFrame
 		/*
 		 * adds "[yyyy/MM/dd HH:mm:ss] user > message" at the end of the document
 		 */
-		StringBuffer sb = new StringBuffer();
-
-		sb.append(message);
-		sb.append(Vocabulary.newLine);
-
-		// parse TEXT message for name
-		String source = parseName(message);
-		if ((source != null) && (source.length() > 0))
-		{
-			/*
-			 * Set color for user in document style
-			 */
-			StyleConstants.setForeground(documentStyle,
-			                             getColorFromName(source));
-		}
-
+		// parse TEXT message for name and use its style (if any)
 		document.insertString(document.getLength(),
-		                      sb.toString(),
-		                      documentStyle);
-
-		// Return to default color
-		StyleConstants.setForeground(documentStyle, defaultColor);
-
+		                      message + Vocabulary.newLine,
+		                      getStyleFromName(parseName(message)));
 	}
 
 	/**
@@ -443,7 +426,7 @@ public class ClientFrame extends AbstractClientFrame
 		/**
 		 * Action performing: Clears {@link ClientFrame#serverLabel} and send
 		 * {@link Vocabulary#byeCmd} to server which should terminate this frame
-		 * with the {@link AbstractClientFrame#commonRun} changing to false
+		 * with the {@link AbstractClientFrame#lifecycle} being stopped
 		 * @param e the event that triggered this action [not used]
 		 */
 		@Override
@@ -453,15 +436,10 @@ public class ClientFrame extends AbstractClientFrame
 			serverLabel.setText("");
 			thisRef.validate();
 
-			try
-			{
-				Thread.sleep(1000);
-			}
-			catch (InterruptedException e1)
-			{
-				return;
-			}
-
+			/*
+			 * The user handler stops the lifecycle as soon as bye is sent to
+			 * the server, which closes the connection and this frame's input
+			 */
 			sendMessage(Vocabulary.byeCmd);
 		}
 	}
@@ -499,9 +477,16 @@ public class ClientFrame extends AbstractClientFrame
 	{
 		inBR = new BufferedReader(new InputStreamReader(inPipe));
 
+		/*
+		 * So that stopping the lifecycle wakes up this thread blocked reading
+		 * inPipe (reading a PipedInputStream throws an InterruptedIOException
+		 * when interrupted, whereas closing it does not wake up its reader)
+		 */
+		lifecycle.register(Thread.currentThread());
+
 		String messageIn;
 
-		while (commonRun.booleanValue())
+		while (lifecycle.isRunning())
 		{
 			messageIn = null;
 			/*
@@ -511,17 +496,14 @@ public class ClientFrame extends AbstractClientFrame
 			 * - Si cette ligne de texte n'est pas nulle on affiche le message
 			 * dans le document avec le format voulu en utilisant
 			 * #writeMessage(String)
-			 * - Après la fin de la boucle on change commonRun à false de
-			 * manière synchronisée afin que les autres threads utilisant ce
-			 * commonRun puissent s'arrêter eux aussi :
-			 * synchronized(commonRun)
-			 * {
-			 * commonRun = Boolean.FALSE;
-			 * }
+			 * - Après la fin de la boucle on arrête le lifecycle
+			 * (lifecycle.stop()) afin que les autres threads partageant ce
+			 * lifecycle puissent s'arrêter eux aussi (les flux qu'ils lisent
+			 * sont alors fermés).
 			 * Dans toutes les étapes si un problème survient (erreur,
 			 * exception, ...) on quitte la boucle en ayant au préalable ajouté
 			 * un "warning" ou un "severe" au logger (en fonction de l'erreur
-			 * rencontrée) et mis le commonRun à false (de manière synchronisé).
+			 * rencontrée).
 			 */
 			try
 			{
@@ -530,6 +512,11 @@ public class ClientFrame extends AbstractClientFrame
 				 */
 				messageIn = inBR.readLine();
 			}
+			catch (InterruptedIOException e)
+			{
+				logger.info("ClientFrame: reading interrupted by stop");
+				break;
+			}
 			catch (IOException e)
 			{
 				logger.warning("ClientFrame: I/O Error reading");
@@ -555,14 +542,10 @@ public class ClientFrame extends AbstractClientFrame
 			}
 		}
 
-		if (commonRun.booleanValue())
+		lifecycle.unregister(Thread.currentThread());
+		if (lifecycle.stop())
 		{
-			logger
-			    .info("ClientFrame::cleanup: changing run state at the end ... ");
-			synchronized (commonRun)
-			{
-				commonRun = Boolean.FALSE;
-			}
+			logger.info("ClientFrame::run: changed run state at the end ... ");
 		}
 
 		cleanup();
@@ -13,14 +13,12 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.IOException;
-import java.io.InvalidClassException;
-import java.io.ObjectInputStream;
-import java.io.OptionalDataException;
-import java.io.StreamCorruptedException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.EventObject;
 import java.util.List;
 import java.util.Vector;
@@ -56,18 +54,25 @@ import javax.swing.event.ListSelectionListener;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultCaret;
+import javax.swing.text.Element;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
-import chat.Failure;
 import chat.Vocabulary;
+import chat.client.ClientLifecycle;
+import chat.client.MessageQueue;
 import models.AuthorListFilter;
+import models.KeywordTrie;
 import models.Message;
 import models.Message.MessageOrder;
+import models.MessageListModel;
+import models.MessageOrdering;
+import models.MessageStore;
 import models.NameSetListModel;
+import models.SpillingMessageList;
 import java.awt.ComponentOrientation;
 import javax.swing.JToggleButton;
 import javax.swing.Box;
@@ -91,23 +96,79 @@ public class ClientFrame2 extends AbstractClientFrame
 	 */
 	private static final long serialVersionUID = -7278574480208850744L;
 
+	/**
+	 * Minimum delay (in ms) between two updates of the widgets with newly
+	 * received messages. Messages received during this delay are displayed
+	 * together in a single update.
+	 */
+	private static final long UPDATE_PERIOD = 20;
+
 	/**
 	 * user's name (used to initialize content in the users list)
 	 */
 	private String clientName;
 
 	/**
-	 * List of all received messages
+	 * Store of all received messages (with a view sorted according to
+	 * {@link #ordering})
+	 */
+	private MessageStore messages;
+
+	/**
+	 * Indicates {@link #messages} has been released by
+	 * {@link #releaseMessages()} (only accessed on the Event Dispatch Thread)
 	 */
-	private List<Message> messages;
+	private boolean messagesReleased = false;
+
+	/**
+	 * Temporary file where older messages of {@link #messages} are spilled
+	 * (or null if all messages are kept in memory)
+	 */
+	private File spillFile = null;
+
+	/**
+	 * Ordering of the messages displayed in this window. Each window has its
+	 * own ordering so sorting messages in this window has no effect on
+	 * other views.
+	 */
+	private MessageOrdering ordering = MessageOrdering.NONE;
+
+	/**
+	 * List model presenting {@link #messages} in the {@link #messageList}
+	 */
+	private MessageListModel messageListModel;
+
+	/**
+	 * Virtualized list of messages displayed instead of the
+	 * {@link #textPane} when {@link #listView} is on: only visible rows are
+	 * laid out and painted so very large histories can be displayed
+	 */
+	private JList<Message> messageList;
+
+	/**
+	 * Text pane displaying the {@link AbstractClientFrame#document}
+	 */
+	private JTextPane textPane;
+
+	/**
+	 * Scroll pane displaying either {@link #textPane} or {@link #messageList}
+	 */
+	private JScrollPane messagesScrollPane;
+
+	/**
+	 * Flag indicating the messages view: virtualized {@link #messageList}
+	 * (on) or rich text {@link #textPane} (off)
+	 */
+	private boolean listView;
 	
 	private List<String> messages_user = new Vector<String>();
 	/**
-	 * Object input stream. Used to read {@link Message}s on the
-	 * {@link AbstractClientFrame#inPipe} and display these messages in the
-	 * {@link AbstractClientFrame#document}
+	 * Queue of {@link Message}s received from server. Messages are directly
+	 * delivered to this queue by the client (without any serialization through
+	 * the {@link AbstractClientFrame#inPipe}) and then read in {@link #run()}
+	 * in order to be displayed in the {@link AbstractClientFrame#document}
 	 */
-	private ObjectInputStream inOIS;
+	private final MessageQueue inQueue;
 
 	/**
 	 * Special ListModel containig only unique names and associated to the users
@@ -198,6 +259,12 @@ public class ClientFrame2 extends AbstractClientFrame
 	 * Action to sort all messages by content
 	 */
 	private final Action sortByContentAction = new SortAction(MessageOrder.CONTENT);
+
+	/**
+	 * Action to toggle between the rich text view and the virtualized list
+	 * view of messages
+	 */
+	private final Action listViewAction = new ListViewAction();
 	
 	/**
 	 * The underlying list model to be associated with a {@link JList}.
@@ -217,17 +284,40 @@ public class ClientFrame2 extends AbstractClientFrame
 	private static final String COMMIT_ACTION = "commit";
 	
 	/**
-	 * the list of keywords that trigger the Auto-complete action
+	 * the index of keywords that trigger the Auto-complete action
+	 * (user names and commands)
      */
-	private ArrayList<String> keywords = new ArrayList<String>(1000);
+	private final KeywordTrie keywords = new KeywordTrie();
 	  
-	private Autocomplete autoComplete = new Autocomplete(sendField, keywords);
+	private Autocomplete autoComplete = null;
 	
+	/**
+	 * Window constructor (all received messages are kept in memory)
+	 * @param name user's name
+	 * @param host server's name or IP address
+	 * @param lifecycle run state shared with other threads
+	 * @param parentLogger parent logger
+	 * @throws HeadlessException when code that is dependent on a keyboard,
+	 * display, or mouse is called in an environment that does not support a
+	 * keyboard, display, or mouse
+	 */
+	public ClientFrame2(String name,
+	                    String host,
+	                    ClientLifecycle lifecycle,
+	                    Logger parentLogger)
+	    throws HeadlessException
+	{
+		this(name, host, lifecycle, 0, parentLogger);
+	}
+
 	/**
 	 * Window constructor
 	 * @param name user's name
 	 * @param host server's name or IP address
-	 * @param commonRun common run with other threads
+	 * @param lifecycle run state shared with other threads
+	 * @param window maximum number of received messages kept in memory
+	 * (older messages are spilled to a temporary file) or 0 to keep all
+	 * messages in memory
 	 * @param parentLogger parent logger
 	 * @throws HeadlessException when code that is dependent on a keyboard,
 	 * display, or mouse is called in an environment that does not support a
@@ -235,21 +325,24 @@ public class ClientFrame2 extends AbstractClientFrame
 	 */
 	public ClientFrame2(String name,
 	                    String host,
-	                    Boolean commonRun,
+	                    ClientLifecycle lifecycle,
+	                    int window,
 	                    Logger parentLogger)
 	    throws HeadlessException
 	{
 		// ------------------------------------------------------------
 		// Attributes initialization
 		// ------------------------------------------------------------
-		super(name, host, commonRun, parentLogger);
+		super(name, host, lifecycle, parentLogger);
 		frameRef = this;
 		clientName = name;
 		userListModel = new NameSetListModel();
 		userListModel.add(clientName);
-		messages = new Vector<Message>();
+		messages = createStore(window);
+		messageListModel = new MessageListModel(messages);
+		listView = false;
 
-		inOIS = null;
+		inQueue = new MessageQueue();
 
 		filtering = false;
 
@@ -277,6 +370,10 @@ public class ClientFrame2 extends AbstractClientFrame
 		chckbxmntmFilter.setAction(filterAction);
 		mnMessages.add(chckbxmntmFilter);
 
+		JCheckBoxMenuItem chckbxmntmListView = new JCheckBoxMenuItem("List View");
+		chckbxmntmListView.setAction(listViewAction);
+		mnMessages.add(chckbxmntmListView);
+
 		JMenu mnSort = new JMenu("Sort");
 		mnMessages.add(mnSort);
 
@@ -374,13 +471,13 @@ public class ClientFrame2 extends AbstractClientFrame
 		sendPanel.add(sendButton, BorderLayout.EAST);
 		
 
-		JScrollPane scrollPane = new JScrollPane();
-		getContentPane().add(scrollPane, BorderLayout.CENTER);
-		JTextPane textPane = new JTextPane();
+		messagesScrollPane = new JScrollPane();
+		getContentPane().add(messagesScrollPane, BorderLayout.CENTER);
+		textPane = new JTextPane();
 		textPane.setEditable(false);
 		DefaultCaret caret = (DefaultCaret) textPane.getCaret(); // <-- TODO replace null
 		caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
-		scrollPane.setViewportView(textPane);
+		messagesScrollPane.setViewportView(textPane);
 		/*
 		 * TODO Setup document and documentStylee
 		 * 	- Get Styled Document from textPane
@@ -391,6 +488,27 @@ public class ClientFrame2 extends AbstractClientFrame
 		documentStyle = textPane.addStyle("New Style", null);
 		defaultColor = StyleConstants.getForeground(documentStyle);
 
+		/*
+		 * Virtualized messages list (displayed in messagesScrollPane instead
+		 * of the textPane when listView is on). A prototype value gives all
+		 * rows the same height so the list never measures all its rows.
+		 */
+		messageList = new JList<Message>(messageListModel);
+		messageList.setName("Messages");
+		messageList.setCellRenderer(new MessageRenderer());
+		messageList.setPrototypeCellValue(new Message(0L, "Prototype", null));
+
+		/*
+		 * The document retains all displayed messages, so when older
+		 * messages are spilled the list view is used from the start
+		 */
+		if (spillFile != null)
+		{
+			listView = true;
+			chckbxmntmListView.setSelected(true);
+			messagesScrollPane.setViewportView(messageList);
+		}
+
 		/*
 		 * TODO register all widgets associated to the filterAction
 		 */
@@ -483,214 +601,355 @@ public class ClientFrame2 extends AbstractClientFrame
 		 * userListSelectionModel
 		 */
 		authorFilter = new AuthorListFilter(userListModel, userListSelectionModel); // <-- TODO replace null
+		// So that users removed from the list are also removed from the filter
+		userListModel.addListDataListener(authorFilter);
 	}
 
 	/**
-	 * Client frame's thread run loop: read {@link Message} object with {@link #inOIS} and
+	 * Creates the {@link #messages} store
+	 * @param window maximum number of messages kept in memory (or 0 to keep
+	 * all messages in memory)
+	 * @return a new store spilling older messages to a temporary file if
+	 * window is positive (and the file can be created), a new store keeping
+	 * all messages in memory otherwise
+	 */
+	private MessageStore createStore(int window)
+	{
+		if (window > 0)
+		{
+			try
+			{
+				spillFile = File.createTempFile("chat-", ".messages");
+				spillFile.deleteOnExit();
+				MessageStore store = new MessageStore(
+				    Math.max(window, SpillingMessageList.PAGE_SIZE), spillFile);
+				logger.info("ClientFrame2: keeping at most " + window
+				    + " messages in memory, spilling to " + spillFile);
+				return store;
+			}
+			catch (IOException e)
+			{
+				logger.warning("ClientFrame2: unable to create spill file, "
+				    + "keeping all messages in memory: "
+				    + e.getLocalizedMessage());
+				deleteSpillFile();
+			}
+		}
+		return new MessageStore();
+	}
+
+	/**
+	 * {@link #inQueue} accessor so that the client can deliver messages from
+	 * server to this frame
+	 * @return the queue of messages to display
+	 */
+	public MessageQueue getMessageQueue()
+	{
+		return inQueue;
+	}
+
+	/**
+	 * Client frame's thread run loop: take {@link Message}s from
+	 * {@link #inQueue} and display them.
+	 * Messages are collected in batches and each batch is displayed on the
+	 * Event Dispatch Thread with {@link #displayMessages(List)}, at most once
+	 * every {@link #UPDATE_PERIOD} ms, so a burst of messages only causes a few
+	 * updates of the widgets.
 	 * @see java.lang.Runnable#run()
 	 */
 	@Override
 	public void run()
 	{
-		// DONE create an ObjectInputStream on the #inPipe to be able to read
-		// Message objects
-		try
-		{
-			inOIS = new ObjectInputStream(inPipe);
-		}
-		catch (StreamCorruptedException sce)
-		{
-			logger.severe("ClientFrame2: "
-			        + Failure.USER_INPUT_STREAM.toString()
-			        + " Output Object stream: " + "stream header is incorrect, "
-			        + sce.getLocalizedMessage());
-			System.exit(Failure.USER_INPUT_STREAM.toInteger());
-		}
-		catch (IOException ioe)
-		{
-			logger.severe("ClientFrame2: "
-			        + Failure.USER_INPUT_STREAM.toString()
-			        + " IOException, " + ioe.getLocalizedMessage());
-			System.exit(Failure.USER_INPUT_STREAM.toInteger());
-		}
+		long lastUpdate = 0;
+
+		// So that stopping the lifecycle wakes up this thread from inQueue
+		lifecycle.register(Thread.currentThread());
 
-		while(commonRun.booleanValue())
+		while(lifecycle.isRunning())
 		{
-			Message message = null;
-			// DONE Read message from inOIS
+			final List<Message> batch = new ArrayList<Message>();
 			try
 			{
-				message = (Message)inOIS.readObject();
+				// Wait for next message from server
+				Message message = inQueue.take();
+				if (message == null)
+				{
+					logger.info("ClientFrame2 : no more messages from server");
+					break;
+				}
+				batch.add(message);
+
+				// Wait for the end of current update period
+				long wait = (lastUpdate + UPDATE_PERIOD) - System.currentTimeMillis();
+				if (wait > 0)
+				{
+					Thread.sleep(wait);
+				}
+
+				// Then collect all messages received in the meantime
+				inQueue.drainTo(batch);
+
+				SwingUtilities.invokeAndWait(() -> displayMessages(batch));
+				lastUpdate = System.currentTimeMillis();
 			}
-			catch (ClassNotFoundException | InvalidClassException |
-			       StreamCorruptedException | OptionalDataException e)
+			catch (InterruptedException e)
 			{
-				logger.severe("ClientFrame2 : error reading object"
-				    + e.getLocalizedMessage());
+				if (lifecycle.isRunning())
+				{
+					logger.warning("ClientFrame2 : interrupted while waiting "
+					    + "for messages" + e.getLocalizedMessage());
+				}
 				break;
 			}
-			catch (IOException e)
+			catch (InvocationTargetException e)
 			{
-				logger.severe("ClientFrame2 : error reading object "
-				    + "IO Exception : " + e.getLocalizedMessage());
-				break;
+				logger.warning("ClientFrame2 : error displaying messages "
+				    + e.getCause());
 			}
+		}
+
+		lifecycle.unregister(Thread.currentThread());
+		if (lifecycle.stop())
+		{
+			logger.info("ClientFrame2::run: changed run state at the end ... ");
+		}
+
+		cleanup();
+	}
 
-			// DONE Add the current message to the #messages list
-			messages.add(message);
+	/**
+	 * Adds a batch of new messages to {@link #messages}, their authors to the
+	 * {@link #userListModel} and {@link #keywords} and display them.
+	 * Each message is inserted at its index in the sorted view of
+	 * {@link #messages} (into the {@link #messageListModel} or the
+	 * {@link AbstractClientFrame#document}), so nothing is rebuilt, even
+	 * when messages are not added at the end of the view.
+	 * Should be called on the Event Dispatch Thread.
+	 * @param batch the new messages
+	 */
+	protected void displayMessages(List<Message> batch)
+	{
+		/*
+		 * DONE Add the current messages to the #messages store and insert
+		 * each of them at its index in the (filtered) sorted view
+		 */
+		BitSet authorIds = (filtering ? authorFilter.getAuthorIds() : null);
+		boolean added = false;
+		for (Message message : batch)
+		{
+			int index = messages.add(message);
+			if (listView)
+			{
+				added |= messageListModel.insert(message, index);
+			}
+			else if (isDisplayed(message))
+			{
+				int line = (filtering ?
+				    messages.filteredIndex(index, authorIds) : index);
+				insertMessage(message, lineOffset(line));
+			}
+		}
+		if (added)
+		{
+			scrollToLastMessage();
+		}
 
-			// DONE Update #userListModel with evt new author
+		// DONE Update #userListModel with evt new authors
+		for (Message message : batch)
+		{
 			String author = message.getAuthor();
 			if ((author != null) && (author.length() > 0))
 			{
 				userListModel.add(author);
-				if (!keywords.contains(author)) {
-					keywords.add(author);
-					autoComplete = new Autocomplete(sendField, keywords);
-				}
+				// Incremental insertion into the autocomplete index
+				keywords.add(author);
 			}
-			
-
-			// DONE update messages
-			updateMessages();
 		}
+	}
 
-		if (commonRun.booleanValue())
+	/**
+	 * Offset of a line of the {@link AbstractClientFrame#document} (each
+	 * displayed message occupies one line)
+	 * @param line the index of the line
+	 * @return the offset of the beginning of this line or the length of the
+	 * document if there is no such line
+	 */
+	private int lineOffset(int line)
+	{
+		Element root = document.getDefaultRootElement();
+		if (line < root.getElementCount())
 		{
-			logger.info("ClientFrame::cleanup: changing run state at the end ... ");
-			synchronized (commonRun)
-			{
-				commonRun = Boolean.FALSE;
-			}
+			return root.getElement(line).getStartOffset();
 		}
+		return document.getLength();
+	}
 
-		cleanup();
+	/**
+	 * Scrolls the {@link #messageList} to its last row
+	 */
+	private void scrollToLastMessage()
+	{
+		int last = messageListModel.getSize() - 1;
+		if (last >= 0)
+		{
+			messageList.ensureIndexIsVisible(last);
+		}
 	}
 
 	/**
-	 * Cleanup: clear {@link #messages}, close {@link #inOIS} and calls
-	 * super cleanup
+	 * Cleanup: clear {@link #inQueue}, release {@link #messages} on the Event
+	 * Dispatch Thread then calls super cleanup.
+	 * The messages store is confined to the Event Dispatch Thread, which may
+	 * still be painting the {@link #messageList} or displaying a batch of
+	 * messages posted before this thread stopped: the store is released by
+	 * {@link #releaseMessages()} after all these pending updates.
 	 * @see AbstractClientFrame#cleanup()
 	 */
 	@Override
 	public void cleanup()
 	{
-		messages.clear();
+		logger.info("ClientFrame2::cleanup: clearing messages queue...");
+		inQueue.clear();
+
+		if (SwingUtilities.isEventDispatchThread())
+		{
+			releaseMessages();
+		}
+		else
+		{
+			SwingUtilities.invokeLater(this::releaseMessages);
+		}
+
+		super.cleanup();
+	}
+
+	/**
+	 * Clears {@link #messages} (and the rows of {@link #messageListModel}
+	 * referring to them), closes the store then deletes its
+	 * {@link #spillFile} (which can only be deleted once the store closed
+	 * it). Should be called on the Event Dispatch Thread. The store can not
+	 * be used afterwards, so it is only released once.
+	 */
+	private void releaseMessages()
+	{
+		if (messagesReleased)
+		{
+			return;
+		}
+		messagesReleased = true;
 
-		logger.info("ClientFrame2::cleanup: closing object input stream...");
+		messages.clear();
+		messageListModel.refresh();
 		try
 		{
-			inOIS.close();
+			messages.close();
 		}
 		catch (IOException e)
 		{
-			logger.warning("ClientFrame2::cleanup: failed to close input stream"
-			    + e.getLocalizedMessage());
+			logger.warning("ClientFrame2::releaseMessages: failed to close "
+			    + "messages store: " + e.getLocalizedMessage());
 		}
+		deleteSpillFile();
+	}
 
-		super.cleanup();
+	/**
+	 * Deletes {@link #spillFile} (if any). The file should not be opened by
+	 * a store anymore.
+	 */
+	private void deleteSpillFile()
+	{
+		if (spillFile != null)
+		{
+			if (!spillFile.delete())
+			{
+				logger.warning("ClientFrame2::deleteSpillFile: failed to delete "
+				    + spillFile);
+			}
+			spillFile = null;
+		}
 	}
 
 	/**
 	 * Adds a new message at the end of {@link AbstractClientFrame#document}.
 	 * The date part of the message "[yyyy/MM/dd HH:mm:ss]" should be displayed
 	 * with default color whereas the "user > message" part should be displayed
-	 * with user's specific color ({@link #getColorFromName(String)})
+	 * with user's specific style ({@link #getStyleFromName(String)}).
+	 * Message fields are used directly: neither the message string
+	 * representation nor the document style need to be built or modified.
 	 * @param message The message to display
 	 * le message à afficher dans le
-	 * {@link AbstractClientFrame#document} en modifiant au besoin le
-	 * {@link AbstractClientFrame#documentStyle}
-	 * @throws BadLocationException if the position to insert text is invalid
+	 * {@link AbstractClientFrame#document}
 	 */
-	protected void appendMessage(Message message)// throws BadLocationException
+	protected void appendMessage(Message message)
+	{
+		insertMessage(message, document.getLength());
+	}
+
+	/**
+	 * Inserts a new message at some offset of the
+	 * {@link AbstractClientFrame#document} with the same styles as
+	 * {@link #appendMessage(Message)}
+	 * @param message The message to display
+	 * @param offset the offset of the beginning of a line of the document
+	 */
+	protected void insertMessage(Message message, int offset)
 	{
 		/*
-		 * adds "[yyyy/MM/dd HH:mm:ss] user > message" at the end of the document
+		 * inserts "[yyyy/MM/dd HH:mm:ss] user > message" at offset
 		 */
-		StringBuffer sb = new StringBuffer();
-
-		sb.append(message);
-		sb.append(Vocabulary.newLine);
-
-		// parse TEXT message for name
-		String source = parseName(message.toString());
-		if ((source != null) && (source.length() > 0))
-		{
-			/*
-			 * Set color for user in document style
-			 */
-			StyleConstants.setForeground(documentStyle,
-			                             getColorFromName(source));
-		}
 		try
 		{
-			/*
-			 * TODO Adds message date to the end of the document with default
-			 * style
-			 */
-			document.insertString(document.getLength(),message.getDate().toString(), documentStyle); // <-- TODO replace
-			/*
-			 * TODO If message has no author (server's message) adds the
-			 * message content with default style,
-			 * otherwise
-			 * Adds "user > content" message part with user's color
-			 * obtained from AbstractClientFrame#getColorFromName
-			 * followed by a new line
-			 * then re-set the default style in document Style
-			 */
-			// TODO ...
-			if(message.getAuthor() == null)
+			if (message.hasAuthor())
 			{
-				document.insertString(document.getLength(), message.getContent(), documentStyle);		
+				/*
+				 * DONE Adds message date with default style, then
+				 * "user > content" with user's style followed by a new line
+				 */
+				String date = message.getDatePrefix();
+				document.insertString(offset, date, documentStyle);
+				String author = message.getAuthor();
+				document.insertString(offset + date.length(),
+				                      author + " > " + message.getContent()
+				                          + Vocabulary.newLine,
+				                      getStyleFromName(author));
 			}
-			else {
-				Color color = getColorFromName(message.getAuthor());
-				StyleConstants.setForeground(documentStyle,color);
-				document.insertString(document.getLength(),
-	                      sb.toString(),
-	                      documentStyle);
-				StyleConstants.setForeground(documentStyle,defaultColor);
+			else
+			{
+				/*
+				 * DONE Server's message: date and content with default style
+				 */
+				document.insertString(offset,
+				                      message.getDatePrefix()
+				                          + message.getContent()
+				                          + Vocabulary.newLine,
+				                      documentStyle);
 			}
 		}
 		catch (BadLocationException ble)
 		{
-			logger.warning("ClientFrame2::appendMessage(...); Bad Location : "
+			logger.warning("ClientFrame2::insertMessage(...); Bad Location : "
 			    + ble.getLocalizedMessage());
 		}
 	}
-	
+
 	/**
-	 * Search for user's name in a string formatted as "user > message".
-	 * This method is used to extract user's name from text messages
-	 * @param message the message to parse
-	 * @return user's name or null if there is no user's name (server's
-	 * messages)
+	 * Checks if a message should be displayed according to current
+	 * {@link #filtering} status and {@link #authorFilter}
+	 * @param message the message to check
+	 * @return true if filtering is off or if message passes the
+	 * {@link #authorFilter}
 	 */
-	protected String parseName(String message)
+	protected boolean isDisplayed(Message message)
 	{
-		if (message.contains(">") && message.contains("]"))
-		{
-			int pos1 = message.indexOf(']');
-			int pos2 = message.indexOf('>');
-			try
-			{
-				return new String(message.substring(pos1 + 2, pos2 - 1));
-			}
-			catch (IndexOutOfBoundsException iobe)
-			{
-				logger.warning("ClientFrame::parseName: index out of bounds");
-				return null;
-			}
-		}
-		else
-		{
-			return null;
-		}
+		return !filtering || authorFilter.test(message);
 	}
 
 	/**
 	 * Update all messages in document according to {@link #authorFilter}'s
-	 * status and ordering set into {@link Message} class
+	 * status and ordering set into {@link Message} class.
+	 * This rebuilds the whole document and should only be used when ordering
+	 * or filtering changes, new messages are inserted with
+	 * {@link #insertMessage(Message, int)}
 	 */
 	protected void updateMessages() // throws BadLocationException
 	{
@@ -701,7 +960,6 @@ public class ClientFrame2 extends AbstractClientFrame
 		{
 			// Clears document
 			document.remove(0, document.getLength());
-			document.insertString(0, "clear", documentStyle); // <-- TODO replace
 		}
 		catch (BadLocationException ex)
 		{
@@ -710,26 +968,38 @@ public class ClientFrame2 extends AbstractClientFrame
 		}
 
 		/*
-		 * TODO Then creates a stream from messages
+		 * Then creates a stream from messages sorted according to this
+		 * window's ordering (the sorted view of the messages store is
+		 * only resorted when this ordering changes)
 		 */
-		Stream<Message> stream = messages.stream(); // <-- TODO replace
+		messages.setOrdering(ordering);
 
 		/*
-		 * TODO If Message has any orders then sort the stream
+		 * In list view the document stays empty and the list model is
+		 * refreshed instead (only visible rows will then be rendered)
 		 */
-		if (Message.orderSize() > 0)
+		if (listView)
 		{
-			// If there is an ordering set into Message sort the stream
-			stream = stream.sorted(); // <-- TODO replace
+			messageListModel.setFilter(filtering ?
+			    authorFilter.getAuthorIds() : null);
+			scrollToLastMessage();
+			return;
 		}
 
+		Stream<Message> stream;
+
 		/*
-		 * TODO if filtering is on then filter the stream with authorFilter
+		 * DONE if filtering is on then only stream messages of authors
+		 * selected in authorFilter (merging their posting lists in the
+		 * messages store instead of filtering all messages)
 		 */
 		if (filtering)
 		{
-			// filter sorted stream according to #authorFilter
-			stream = stream.filter(authorFilter); // <-- TODO replace
+			stream = messages.stream(authorFilter.getAuthorIds());
+		}
+		else
+		{
+			stream = messages.stream();
 		}
 
 		/*
@@ -770,7 +1040,7 @@ public class ClientFrame2 extends AbstractClientFrame
 		/**
 		 * Action performing: Clears {@link ClientFrame#serverLabel} and send
 		 * {@link Vocabulary#byeCmd} to server which should terminate this frame
-		 * with the {@link AbstractClientFrame#commonRun} changing to false
+		 * with the {@link AbstractClientFrame#lifecycle} being stopped
 		 * @param e the event that triggered this action [not used]
 		 */
 		@Override
@@ -780,14 +1050,10 @@ public class ClientFrame2 extends AbstractClientFrame
 			// TODO Complete ...
 			//serverLabel.setText("");
 			frameRef.validate();
-			try
-			{
-				Thread.sleep(1000); // don't ask why
-			}
-			catch (InterruptedException e1)
-			{
-				return;
-			}
+			/*
+			 * The user handler stops the lifecycle as soon as bye is sent to
+			 * the server, which interrupts this frame's thread
+			 */
 			sendMessage(Vocabulary.byeCmd);
 		}
 	}
@@ -846,11 +1112,13 @@ public class ClientFrame2 extends AbstractClientFrame
 			 */
 			// TODO Complete ...
 			userListModel.clear();
+			authorFilter.clear();
 			/*
 			 * Clears recorded messages
 			 */
 			// TODO Complete ...
 			messages.clear();
+			messageListModel.refresh();
 		}
 	}
 
@@ -1020,7 +1288,11 @@ public class ClientFrame2 extends AbstractClientFrame
 			 * iff needed
 			 */
 			authorFilter.setFiltering(newFiltering);
-			updateMessages();
+			if (newFiltering != filtering)
+			{
+				filtering = newFiltering;
+				updateMessages();
+			}
 
 			/*
 			 * TODO Update all buttons associated to this action with
@@ -1032,6 +1304,52 @@ public class ClientFrame2 extends AbstractClientFrame
 		}
 	}
 
+	/**
+	 * Action to toggle between the rich text view of messages
+	 * ({@link ClientFrame2#textPane}) and the virtualized list view
+	 * ({@link ClientFrame2#messageList})
+	 */
+	private class ListViewAction extends AbstractAction
+	{
+		/**
+		 * Serial ID because enclosing class is serializable ?
+		 */
+		private static final long serialVersionUID = 5024178425371934651L;
+
+		/**
+		 * Constructor.
+		 * Sets name and description
+		 */
+		public ListViewAction()
+		{
+			putValue(NAME, "List View");
+			putValue(SHORT_DESCRIPTION,
+				"Display messages in a list (for very large histories)");
+		}
+
+		/**
+		 * Action performing: Toggle list view on/off, display the
+		 * corresponding widget then {@link ClientFrame2#updateMessages()}
+		 * (which empties the document in list view or rebuilds it otherwise)
+		 * @param e the event that triggered this action. Used to determine
+		 * button source
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			AbstractButton button = (AbstractButton) e.getSource();
+			boolean newListView = button.isSelected();
+			logger.info("List view is " + (newListView ? "On" : "Off"));
+			if (newListView != listView)
+			{
+				listView = newListView;
+				messagesScrollPane.setViewportView(listView ?
+				    messageList : textPane);
+				updateMessages();
+			}
+		}
+	}
+
 	// ----------------------------------------------------------------
 	// User list related actions
 	// ----------------------------------------------------------------
@@ -1074,8 +1392,11 @@ public class ClientFrame2 extends AbstractClientFrame
 			 */
 			// TODO ...
 			userListSelectionModel.clearSelection();
-			authorFilter.clear();
-			updateMessages();
+			// Selection listener may already have cleared the filter
+			if (authorFilter.clear() && filtering)
+			{
+				updateMessages();
+			}
 		}
 	}
 
@@ -1198,7 +1519,7 @@ public class ClientFrame2 extends AbstractClientFrame
 		 * @param e the event that triggered this action. Used to determine
 		 * if the widget triggering this action is selected or unseleced in
 		 * order to set or unset sorting by adding or removing order into
-		 * {@link Message} class.
+		 * this window's {@link ClientFrame2#ordering}.
 		 */
 		@Override
 		public void actionPerformed(ActionEvent e)
@@ -1214,13 +1535,18 @@ public class ClientFrame2 extends AbstractClientFrame
 			boolean selected = button.isSelected();  // <-- TODO replace ...
 
 			// TODO ...
+			MessageOrdering newOrdering;
 			if (selected) {
-				Message.addOrder(order);
+				newOrdering = ordering.with(order);
 			}
 			else {
-				Message.removeOrder(order);
+				newOrdering = ordering.without(order);
+			}
+			if (newOrdering != ordering)
+			{
+				ordering = newOrdering;
+				updateMessages();
 			}
-			updateMessages();
 		}
 	}
 
@@ -1271,18 +1597,20 @@ public class ClientFrame2 extends AbstractClientFrame
 			 */
 			if (!isAdjusting)
 			{
-				// TODO ...
-				authorFilter.clear();
-				int i;
-				for (i=firstIndex; i<=lastIndex; i++) {
-					if (lsm.isSelectedIndex(i)) {
-						authorFilter.add(userListModel.getElementAt(i));
-					}
+				/*
+				 * Only users between firstIndex and lastIndex may have
+				 * changed selection state, so update authorFilter
+				 * incrementally and update messages only if it has changed
+				 */
+				boolean changed = authorFilter.update(userListModel,
+				                                      lsm,
+				                                      firstIndex,
+				                                      lastIndex);
+				if (changed && filtering)
+				{
+					updateMessages();
 				}
 			}
-			if (filtering) {
-				updateMessages();
-			}
 		}
 	}
 
@@ -1340,19 +1668,102 @@ public class ClientFrame2 extends AbstractClientFrame
 			return this;
 		}
 	}
+
+	/**
+	 * Message renderer for drawing messages in the {@link #messageList}: the
+	 * date part with default color and the "user > message" part with user's
+	 * color (as in {@link ClientFrame2#appendMessage(Message)})
+	 * @author davidroussel
+	 */
+	private class MessageRenderer extends JPanel
+		implements ListCellRenderer<Message>
+	{
+		/**
+		 * Serial ID because enclosing class is serializable ?
+		 */
+		private static final long serialVersionUID = -1837310853657230718L;
+
+		/**
+		 * Label for the date part
+		 */
+		private final JLabel dateLabel;
+
+		/**
+		 * Label for the "user > message" part
+		 */
+		private final JLabel textLabel;
+
+		/**
+		 * Constructor
+		 */
+		public MessageRenderer()
+		{
+			super(new BorderLayout(0, 0));
+			dateLabel = new JLabel();
+			textLabel = new JLabel();
+			add(dateLabel, BorderLayout.WEST);
+			add(textLabel, BorderLayout.CENTER);
+			setOpaque(true);
+		}
+
+		/**
+		 * Customized rendering for a message: date with default color and
+		 * "user > message" with user's color
+		 * @see
+		 * javax.swing.ListCellRenderer#getListCellRendererComponent(javax.swing
+		 * .JList, java.lang.Object, int, boolean, boolean)
+		 */
+		@Override
+		public Component getListCellRendererComponent(
+			JList<? extends Message> list, Message value, int index,
+			boolean isSelected, boolean cellHasFocus)
+		{
+			Color foreground = (isSelected ? list.getSelectionForeground() :
+			    list.getForeground());
+			Color color = foreground;
+			if (value == null)
+			{
+				dateLabel.setText("");
+				textLabel.setText("");
+			}
+			else
+			{
+				dateLabel.setText(value.getDatePrefix());
+				if (value.hasAuthor())
+				{
+					textLabel.setText(value.getAuthor() + " > "
+					    + value.getContent());
+					if (!isSelected)
+					{
+						color = frameRef.getColorFromName(value.getAuthor());
+					}
+				}
+				else
+				{
+					textLabel.setText(value.getContent());
+				}
+			}
+			setBackground(isSelected ? list.getSelectionBackground() :
+			    list.getBackground());
+			dateLabel.setForeground(foreground);
+			textLabel.setForeground(color);
+			dateLabel.setFont(list.getFont());
+			textLabel.setFont(list.getFont());
+			setEnabled(list.isEnabled());
+			return this;
+		}
+	}
 	
 	public class Autocomplete implements DocumentListener {
 
 
 		  private JTextField textField;
-		  private ArrayList<String> keywords;
+		  private KeywordTrie keywords;
 		  private Mode mode = Mode.INSERT;
 
-		  public Autocomplete(JTextField textField, ArrayList<String> keywords) {
+		  public Autocomplete(JTextField textField, KeywordTrie keywords) {
 			this.textField = textField;
 		    this.keywords = keywords;
-		    //this.keywords = keywords;
-		    Collections.sort(keywords);
 		  }
 
 		  @Override
@@ -1386,17 +1797,14 @@ public class ClientFrame2 extends AbstractClientFrame
 		    if (pos - w < 2)
 		      return;
 
-		    String prefix = content.substring(w + 1).toLowerCase();
-		    int n = Collections.binarySearch(keywords, prefix);
-		    if (n < 0 && -n <= keywords.size()) {
-		      String match = keywords.get(-n - 1);
-		      if (match.startsWith(prefix)) {
-		        // A completion is found
-		        String completion = match.substring(pos - w);
-		        // We cannot modify Document from within notification,
-		        // so we submit a task that does the change later
-		        SwingUtilities.invokeLater(new CompletionTask(completion, pos + 1));
-		      }
+		    String prefix = content.substring(w + 1);
+		    String match = keywords.first(prefix);
+		    if ((match != null) && (match.length() > prefix.length())) {
+		      // A completion is found (prefix matches regardless of case)
+		      String completion = match.substring(prefix.length());
+		      // We cannot modify Document from within notification,
+		      // so we submit a task that does the change later
+		      SwingUtilities.invokeLater(new CompletionTask(completion, pos + 1));
 		    } else {
 		      // Nothing found
 		      mode = Mode.INSERT;
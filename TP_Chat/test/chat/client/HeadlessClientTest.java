@@ -0,0 +1,149 @@
+package chat.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chat.server.ChatServer;
+import models.Message;
+
+/**
+ * Tests of {@link HeadlessClient} against a {@link ChatServer} running in
+ * process: posted messages complete with their own broadcast, even when the
+ * server replays older messages with the same content.
+ * @author davidroussel
+ */
+public class HeadlessClientTest
+{
+	/**
+	 * Logger of server and clients (warnings only)
+	 */
+	private static final Logger logger = Logger.getLogger("HeadlessClientTest");
+
+	/**
+	 * The running server
+	 */
+	private ChatServer server;
+
+	/**
+	 * The server's thread
+	 */
+	private Thread serverThread;
+
+	/**
+	 * Starts a server on a free port
+	 * @throws Exception if the server can not be started
+	 */
+	@BeforeEach
+	public void setUp() throws Exception
+	{
+		logger.setLevel(Level.WARNING);
+		int port;
+		try (ServerSocket socket = new ServerSocket(0))
+		{
+			port = socket.getLocalPort();
+		}
+		server = new ChatServer(port, 100, false, 10, logger);
+		serverThread = new Thread(server, "ChatServer");
+		serverThread.start();
+	}
+
+	/**
+	 * Stops the server
+	 * @throws InterruptedException if interrupted while waiting for the
+	 * server
+	 */
+	@AfterEach
+	public void tearDown() throws InterruptedException
+	{
+		server.setListening(false);
+		serverThread.join(5000);
+	}
+
+	/**
+	 * A post completes with the message broadcasted back by the server
+	 * @throws Exception if connection or posting fails
+	 */
+	@Test
+	public void testPost() throws Exception
+	{
+		try (HeadlessClient alice = HeadlessClient.connect("localhost",
+		                                                   server.getPort(),
+		                                                   "alice", null,
+		                                                   logger))
+		{
+			Message message = alice.post("hello").get(5, TimeUnit.SECONDS);
+			assertEquals("hello", message.getContent());
+			assertEquals("alice", message.getAuthor());
+			assertTrue(alice.isConnected());
+			alice.bye().get(5, TimeUnit.SECONDS);
+			assertFalse(alice.isConnected());
+		}
+	}
+
+	/**
+	 * A message posted after a catch-up is not completed by a replayed
+	 * message with the same content
+	 * @throws Exception if connection or posting fails
+	 */
+	@Test
+	public void testPostAfterCatchUp() throws Exception
+	{
+		List<Message> received = new CopyOnWriteArrayList<Message>();
+		MessageListener listener = new MessageListener()
+		{
+			@Override
+			public void messageReceived(Message message)
+			{
+				received.add(message);
+			}
+
+			@Override
+			public void connectionClosed()
+			{
+			}
+		};
+		try (HeadlessClient alice = HeadlessClient.connect("localhost",
+		                                                   server.getPort(),
+		                                                   "alice", listener,
+		                                                   logger))
+		{
+			Message first = alice.post("hello").get(5, TimeUnit.SECONDS);
+			Thread.sleep(20);
+
+			alice.catchUp().get(5, TimeUnit.SECONDS);
+			long sent = System.currentTimeMillis();
+			Message second = alice.post("hello").get(5, TimeUnit.SECONDS);
+
+			assertNotSame(first, second);
+			assertTrue(second.getTimestamp() >= sent);
+			// original, replayed and new message (delivered to the listener
+			// after the post's future is completed)
+			long hellos = 0;
+			for (int i = 0; (i < 100) && (hellos < 3); i++)
+			{
+				Thread.sleep(10);
+				hellos = received.stream()
+				    .filter((Message m) -> m.getContent().equals("hello"))
+				    .count();
+			}
+			assertEquals(3, hellos);
+
+			// the replay is over: posts are matched as usual
+			Message third = alice.post("again").get(5, TimeUnit.SECONDS);
+			assertEquals("again", third.getContent());
+		}
+	}
+}
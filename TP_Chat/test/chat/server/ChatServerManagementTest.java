@@ -0,0 +1,256 @@
+package chat.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.RuntimeMBeanException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chat.client.HeadlessClient;
+
+/**
+ * Tests of the MBeans registered by a running {@link ChatServer}, read and
+ * tuned in process through the platform {@link MBeanServer} as a JMX
+ * console would.
+ * @author davidroussel
+ */
+public class ChatServerManagementTest
+{
+	/**
+	 * Logger of servers and clients (warnings only)
+	 */
+	private static final Logger logger = Logger.getLogger("ChatServerManagementTest");
+
+	/**
+	 * The platform MBean server
+	 */
+	private final MBeanServer mbeanServer =
+	    ManagementFactory.getPlatformMBeanServer();
+
+	/**
+	 * The running server
+	 */
+	private ChatServer server;
+
+	/**
+	 * The server's thread
+	 */
+	private Thread serverThread;
+
+	/**
+	 * Name of the server MBean
+	 */
+	private ObjectName serverName;
+
+	/**
+	 * Name of the metrics MBean
+	 */
+	private ObjectName metricsName;
+
+	/**
+	 * Starts a server on a free port and waits for its MBeans registration
+	 * @throws Exception if the server can not be started
+	 */
+	@BeforeEach
+	public void setUp() throws Exception
+	{
+		logger.setLevel(Level.WARNING);
+		int port;
+		try (ServerSocket socket = new ServerSocket(0))
+		{
+			port = socket.getLocalPort();
+		}
+		server = new ChatServer(port, 100, false, 10, logger);
+		serverThread = new Thread(server, "ChatServer");
+		serverThread.start();
+
+		serverName = ChatServerManagement.objectName(
+		    ChatServerManagement.SERVER_TYPE, port);
+		metricsName = ChatServerManagement.objectName(
+		    ChatServerManagement.METRICS_TYPE, port);
+		for (int i = 0; (i < 100) && !mbeanServer.isRegistered(metricsName); i++)
+		{
+			Thread.sleep(20);
+		}
+		assertTrue(mbeanServer.isRegistered(serverName));
+		assertTrue(mbeanServer.isRegistered(metricsName));
+	}
+
+	/**
+	 * Stops the server and checks its MBeans are unregistered
+	 * @throws InterruptedException if interrupted while waiting for the
+	 * server
+	 */
+	@AfterEach
+	public void tearDown() throws InterruptedException
+	{
+		server.setListening(false);
+		serverThread.join(5000);
+		assertFalse(serverThread.isAlive());
+		assertFalse(mbeanServer.isRegistered(serverName));
+		assertFalse(mbeanServer.isRegistered(metricsName));
+	}
+
+	/**
+	 * Connects a client and posts messages
+	 * @param name the client's name
+	 * @param messages the number of messages to post
+	 * @return the connected client
+	 * @throws Exception if connection or posting fails
+	 */
+	private HeadlessClient connect(String name, int messages) throws Exception
+	{
+		HeadlessClient client = HeadlessClient.connect("localhost",
+		                                               server.getPort(),
+		                                               name, null, logger);
+		for (int i = 0; i < messages; i++)
+		{
+			client.post(name + " " + i).get(5, TimeUnit.SECONDS);
+		}
+		return client;
+	}
+
+	/**
+	 * Waits for an attribute to reach a value: a message echoed to its author
+	 * may be received before the server counts its delivery
+	 * @param name the MBean name
+	 * @param attribute the attribute name
+	 * @param expected the expected value
+	 * @throws Exception if JMX access fails or if interrupted
+	 */
+	private void awaitAttribute(ObjectName name, String attribute, Object expected)
+		throws Exception
+	{
+		for (int i = 0; (i < 100) &&
+		     !expected.equals(mbeanServer.getAttribute(name, attribute)); i++)
+		{
+			Thread.sleep(20);
+		}
+		assertEquals(expected, mbeanServer.getAttribute(name, attribute));
+	}
+
+	/**
+	 * Clients, history and messages counts are read through the server MBean
+	 * and history capacity can be reduced at runtime
+	 * @throws Exception if a client or JMX access fails
+	 */
+	@Test
+	public void testServerAttributes() throws Exception
+	{
+		try (HeadlessClient bob = connect("bob", 0);
+		     HeadlessClient alice = connect("alice", 12))
+		{
+			assertEquals(server.getPort(), mbeanServer.getAttribute(serverName, "Port"));
+			assertEquals(2L, mbeanServer.getAttribute(serverName, "ConnectedClients"));
+			assertArrayEquals(new String[] {"alice", "bob"},
+			                  (String[]) mbeanServer.getAttribute(serverName,
+			                                                      "ClientNames"));
+			assertEquals(10, mbeanServer.getAttribute(serverName, "HistoryCapacity"));
+			assertEquals(10L, mbeanServer.getAttribute(serverName, "HistorySize"));
+			assertEquals(12L, mbeanServer.getAttribute(serverName, "MessagesReceived"));
+			awaitAttribute(serverName, "MessagesDelivered", 24L);
+			assertTrue((Double) mbeanServer.getAttribute(serverName, "ReceivedRate") > 0.0);
+
+			mbeanServer.setAttribute(serverName, new Attribute("HistoryCapacity", 3));
+			assertEquals(3, server.getHistoryCapacity());
+			assertEquals(3L, mbeanServer.getAttribute(serverName, "HistorySize"));
+
+			RuntimeMBeanException e = assertThrows(RuntimeMBeanException.class,
+			    () -> mbeanServer.setAttribute(serverName,
+			                                   new Attribute("HistoryCapacity", -1)));
+			assertInstanceOf(IllegalArgumentException.class, e.getCause());
+			assertEquals(3, server.getHistoryCapacity());
+		}
+	}
+
+	/**
+	 * Rate limit and slow consumer timeout are tuned through the server MBean
+	 * @throws Exception if a client or JMX access fails
+	 */
+	@Test
+	public void testTuning() throws Exception
+	{
+		mbeanServer.setAttribute(serverName, new Attribute("SlowConsumerTimeout", 500L));
+		assertEquals(500L, server.getSlowConsumerTimeout());
+		assertEquals(500L, mbeanServer.getAttribute(serverName, "SlowConsumerTimeout"));
+
+		mbeanServer.setAttribute(serverName, new Attribute("RateLimit", 20));
+		assertEquals(20, server.getRateLimit());
+		assertEquals(20, mbeanServer.getAttribute(serverName, "RateLimit"));
+
+		try (HeadlessClient alice = connect("alice", 0))
+		{
+			// 10 messages at 20 messages per second take at least 400 ms
+			long start = System.nanoTime();
+			for (int i = 0; i < 10; i++)
+			{
+				alice.post("throttled " + i).get(5, TimeUnit.SECONDS);
+			}
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue(elapsed >= 400, "10 messages in " + elapsed + " ms");
+			assertTrue(server.getMetrics().get(ServerMetrics.THROTTLED) > 0);
+		}
+
+		mbeanServer.setAttribute(serverName, new Attribute("RateLimit", 0));
+		assertEquals(0, server.getRateLimit());
+	}
+
+	/**
+	 * Metrics are read one by one through the metrics MBean, which also
+	 * dumps and resets them
+	 * @throws Exception if a client or JMX access fails
+	 */
+	@Test
+	public void testMetricsAttributes() throws Exception
+	{
+		try (HeadlessClient alice = connect("alice", 5))
+		{
+			assertEquals(5L, mbeanServer.getAttribute(metricsName,
+			                                          ServerMetrics.RECEIVED));
+			assertEquals(1L, mbeanServer.getAttribute(metricsName,
+			                                          ServerMetrics.CLIENTS));
+			assertEquals(5L, mbeanServer.getAttribute(metricsName,
+			    ServerMetrics.BROADCAST_LATENCY + ".count"));
+			assertTrue((Long) mbeanServer.getAttribute(metricsName,
+			    ServerMetrics.BROADCAST_LATENCY + ".p99") > 0L);
+			awaitAttribute(metricsName, ServerMetrics.BACKLOG_PREFIX + "alice", 0L);
+			assertThrows(AttributeNotFoundException.class,
+			             () -> mbeanServer.getAttribute(metricsName, "no.such.metric"));
+			assertThrows(AttributeNotFoundException.class,
+			             () -> mbeanServer.getAttribute(metricsName,
+			                 ServerMetrics.BROADCAST_LATENCY + ".p42"));
+			assertThrows(AttributeNotFoundException.class,
+			             () -> mbeanServer.setAttribute(metricsName,
+			                 new Attribute(ServerMetrics.RECEIVED, 0L)));
+
+			assertTrue(((String) mbeanServer.invoke(metricsName,
+			                                        ServerMetricsDynamicMBean.DUMP,
+			                                        null, null))
+			    .contains(ServerMetrics.RECEIVED));
+			mbeanServer.invoke(metricsName, ServerMetricsDynamicMBean.RESET,
+			                   null, null);
+			assertEquals(0L, mbeanServer.getAttribute(metricsName,
+			    ServerMetrics.BROADCAST_LATENCY + ".count"));
+			assertEquals(5L, mbeanServer.getAttribute(metricsName,
+			                                          ServerMetrics.RECEIVED));
+		}
+	}
+}
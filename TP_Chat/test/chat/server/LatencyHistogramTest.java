@@ -0,0 +1,115 @@
+package chat.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link LatencyHistogram}: statistics and percentiles are within
+ * the histogram's precision (1%) of the exact values.
+ * @author davidroussel
+ */
+public class LatencyHistogramTest
+{
+	/**
+	 * Checks a percentile against the exact value
+	 * @param histogram the histogram
+	 * @param sorted the sorted recorded values
+	 * @param percentile the percentile
+	 */
+	private static void checkPercentile(LatencyHistogram histogram,
+	                                    long[] sorted,
+	                                    double percentile)
+	{
+		int rank = (int) Math.ceil((percentile / 100.0) * sorted.length);
+		long exact = sorted[Math.max(rank, 1) - 1];
+		long value = histogram.getValueAtPercentile(percentile);
+		assertTrue(value >= exact, "p" + percentile + " " + value
+		    + " < " + exact);
+		assertTrue(value <= (exact + (exact / 100) + 1), "p" + percentile
+		    + " " + value + " > " + exact + " + 1%");
+	}
+
+	/**
+	 * An empty histogram reports zeros
+	 */
+	@Test
+	public void testEmpty()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0L, histogram.getCount());
+		assertEquals(0L, histogram.getMin());
+		assertEquals(0L, histogram.getMax());
+		assertEquals(0.0, histogram.getMean());
+		assertEquals(0L, histogram.getValueAtPercentile(99.0));
+	}
+
+	/**
+	 * Small values have their own bucket so percentiles are exact
+	 */
+	@Test
+	public void testSmallValues()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long v = 1; v <= 100; v++)
+		{
+			histogram.record(v);
+		}
+		assertEquals(100L, histogram.getCount());
+		assertEquals(1L, histogram.getMin());
+		assertEquals(100L, histogram.getMax());
+		assertEquals(50.5, histogram.getMean(), 1e-9);
+		assertEquals(50L, histogram.getValueAtPercentile(50.0));
+		assertEquals(99L, histogram.getValueAtPercentile(99.0));
+		assertEquals(100L, histogram.getValueAtPercentile(100.0));
+		assertEquals(1L, histogram.getValueAtPercentile(0.0));
+	}
+
+	/**
+	 * Percentiles of values spread over several orders of magnitude are
+	 * within 1% of the exact values
+	 */
+	@Test
+	public void testPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random rand = new Random(42);
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++)
+		{
+			// log-uniform values from 1 ns to about 10 s
+			values[i] = (long) Math.pow(10.0, rand.nextDouble() * 10.0);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, histogram.getCount());
+		assertEquals(values[0], histogram.getMin());
+		assertEquals(values[values.length - 1], histogram.getMax());
+		for (double percentile : new double[] {1.0, 50.0, 90.0, 99.0, 99.9})
+		{
+			checkPercentile(histogram, values, percentile);
+		}
+		assertEquals(values[values.length - 1],
+		             histogram.getValueAtPercentile(100.0));
+	}
+
+	/**
+	 * Negative values are recorded as 0 and reset empties the histogram
+	 */
+	@Test
+	public void testNegativeAndReset()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5L);
+		assertEquals(0L, histogram.getMax());
+		assertEquals(1L, histogram.getCount());
+		histogram.reset();
+		assertEquals(0L, histogram.getCount());
+		assertEquals(0L, histogram.getValueAtPercentile(50.0));
+	}
+}
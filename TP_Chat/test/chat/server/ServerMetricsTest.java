@@ -0,0 +1,38 @@
+package chat.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link ServerMetrics} gauges.
+ * @author davidroussel
+ */
+public class ServerMetricsTest
+{
+	/**
+	 * A client leaving after another client with the same name registered
+	 * its own backlog gauge does not remove the new client's gauge
+	 */
+	@Test
+	public void testRemoveReplacedGauge()
+	{
+		ServerMetrics metrics = new ServerMetrics();
+		String name = ServerMetrics.BACKLOG_PREFIX + "bob";
+		LongSupplier leaving = () -> 1L;
+		LongSupplier joining = () -> 2L;
+
+		metrics.gauge(name, leaving);
+		metrics.gauge(name, joining);
+		assertFalse(metrics.removeGauge(name, leaving));
+		assertEquals(2L, metrics.get(name));
+		assertTrue(metrics.snapshot().containsKey(name));
+
+		assertTrue(metrics.removeGauge(name, joining));
+		assertFalse(metrics.snapshot().containsKey(name));
+	}
+}
@@ -0,0 +1,107 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.swing.DefaultListSelectionModel;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link AuthorListFilter}: the filter follows the selection of a
+ * {@link NameSetListModel} and forgets authors removed from the list model.
+ * @author davidroussel
+ */
+public class AuthorListFilterTest
+{
+	/**
+	 * The list model of authors
+	 */
+	private NameSetListModel model;
+
+	/**
+	 * The selection of authors
+	 */
+	private DefaultListSelectionModel selection;
+
+	/**
+	 * The filter under test (listening to the list model)
+	 */
+	private AuthorListFilter filter;
+
+	/**
+	 * Creates a list model of three authors and a filter listening to it
+	 */
+	@BeforeEach
+	public void setUp()
+	{
+		model = new NameSetListModel();
+		model.add("alice");
+		model.add("bob");
+		model.add("charlie");
+		selection = new DefaultListSelectionModel();
+		filter = new AuthorListFilter(model, selection);
+		model.addListDataListener(filter);
+		filter.setFiltering(true);
+	}
+
+	/**
+	 * Message from an author
+	 * @param author the author's name
+	 * @return a new message from this author
+	 */
+	private static Message from(String author)
+	{
+		return new Message(1000L, "hello", author);
+	}
+
+	/**
+	 * The filter follows selection changes
+	 */
+	@Test
+	public void testUpdate()
+	{
+		selection.setSelectionInterval(0, 1);
+		assertTrue(filter.update(model, selection, 0, 2));
+		assertTrue(filter.test(from("alice")));
+		assertTrue(filter.test(from("bob")));
+		assertFalse(filter.test(from("charlie")));
+
+		selection.removeSelectionInterval(0, 0);
+		assertTrue(filter.update(model, selection, 0, 0));
+		assertFalse(filter.test(from("alice")));
+		assertFalse(filter.update(model, selection, 0, 2));
+	}
+
+	/**
+	 * Clearing the list model clears the filter
+	 */
+	@Test
+	public void testClearedModel()
+	{
+		selection.setSelectionInterval(0, 2);
+		filter.update(model, selection, 0, 2);
+		model.clear();
+		selection.clearSelection();
+
+		assertTrue(filter.getAuthorIds().isEmpty());
+		model.add("bob");
+		assertFalse(filter.test(from("bob")));
+	}
+
+	/**
+	 * Authors removed from the list model are removed from the filter
+	 */
+	@Test
+	public void testRemovedAuthor()
+	{
+		selection.setSelectionInterval(0, 2);
+		filter.update(model, selection, 0, 2);
+		model.remove("bob");
+
+		assertTrue(filter.test(from("alice")));
+		assertFalse(filter.test(from("bob")));
+		assertTrue(filter.test(from("charlie")));
+	}
+}
@@ -0,0 +1,158 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link MessageListModel}: a message added anywhere in the sorted
+ * view of the store only inserts its own row (with or without filter), and
+ * rows are the same as after a full refresh.
+ * @author davidroussel
+ */
+public class MessageListModelTest
+{
+	/**
+	 * Ordering by author then date
+	 */
+	private static final MessageOrdering BY_AUTHOR =
+	    MessageOrdering.of(Message.MessageOrder.AUTHOR,
+	                       Message.MessageOrder.DATE);
+
+	/**
+	 * The store presented by the model
+	 */
+	private MessageStore store;
+
+	/**
+	 * The model under test
+	 */
+	private MessageListModel model;
+
+	/**
+	 * Received events as strings such as "added 1-1"
+	 */
+	private List<String> events;
+
+	/**
+	 * Creates an empty sorted store presented by a model listened to by a
+	 * listener recording events
+	 */
+	@BeforeEach
+	public void setUp()
+	{
+		store = new MessageStore();
+		store.setOrdering(BY_AUTHOR);
+		model = new MessageListModel(store);
+		events = new ArrayList<String>();
+		model.addListDataListener(new ListDataListener()
+		{
+			@Override
+			public void intervalAdded(ListDataEvent e)
+			{
+				events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e)
+			{
+				events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e)
+			{
+				events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+		});
+	}
+
+	/**
+	 * Model content as a list
+	 * @return the messages of the model in row order
+	 */
+	private List<Message> content()
+	{
+		List<Message> content = new ArrayList<Message>();
+		for (int i = 0; i < model.getSize(); i++)
+		{
+			content.add(model.getElementAt(i));
+		}
+		return content;
+	}
+
+	/**
+	 * Adds messages to the store and inserts them into the model, checking
+	 * that each insertion fires a single event on the new row
+	 * @param messages the messages to add
+	 */
+	private void insert(List<Message> messages)
+	{
+		for (Message message : messages)
+		{
+			int index = store.add(message);
+			events.clear();
+			if (model.insert(message, index))
+			{
+				assertEquals(1, events.size());
+				String event = events.get(0);
+				int row = Integer.parseInt(event.substring(event.indexOf('-') + 1));
+				assertEquals("added " + row + "-" + row, event);
+				assertEquals(message, model.getElementAt(row));
+			}
+			else
+			{
+				assertEquals(0, events.size());
+			}
+		}
+	}
+
+	/**
+	 * Without filter rows are the store's view
+	 */
+	@Test
+	public void testInsert()
+	{
+		insert(SpillingMessageListTest.messages(300));
+
+		assertEquals(store.size(), model.getSize());
+		List<Message> inserted = content();
+		model.refresh();
+		assertEquals(inserted, content());
+	}
+
+	/**
+	 * With a filter only messages of the filtered authors are inserted at
+	 * their index in the filtered view
+	 */
+	@Test
+	public void testInsertFiltered()
+	{
+		AuthorTable table = AuthorTable.getInstance();
+		BitSet authors = new BitSet();
+		authors.set(table.id("author0"));
+		authors.set(table.id("author2"));
+		model.setFilter(authors);
+
+		insert(SpillingMessageListTest.messages(300));
+
+		assertEquals(store.count(authors), model.getSize());
+		List<Message> inserted = content();
+		for (Message message : inserted)
+		{
+			assertTrue("author0".equals(message.getAuthor()) ||
+			           "author2".equals(message.getAuthor()));
+		}
+		model.refresh();
+		assertEquals(inserted, content());
+	}
+}
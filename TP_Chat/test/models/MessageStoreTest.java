@@ -0,0 +1,259 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of {@link MessageStore}: the view stays sorted when messages are
+ * added, is rebuilt when the ordering changes and filtered views (merging
+ * authors posting lists) contain the same messages in the same order as a
+ * filter applied on the view, with messages all in memory or partly spilled.
+ * @author davidroussel
+ */
+public class MessageStoreTest
+{
+	/**
+	 * Window of spilled stores
+	 */
+	private static final int WINDOW = 256;
+
+	/**
+	 * Directory of spill files
+	 */
+	@TempDir
+	File directory;
+
+	/**
+	 * Ordering by author then date
+	 */
+	private static final MessageOrdering BY_AUTHOR =
+	    MessageOrdering.of(Message.MessageOrder.AUTHOR,
+	                       Message.MessageOrder.DATE);
+
+	/**
+	 * Messages of a store in view order
+	 * @param store the store
+	 * @return a new list of the store's messages in view order
+	 */
+	private static List<Message> view(MessageStore store)
+	{
+		List<Message> view = new ArrayList<Message>();
+		for (int i = 0; i < store.size(); i++)
+		{
+			view.add(store.getSorted(i));
+		}
+		return view;
+	}
+
+	/**
+	 * Messages sorted in memory (stable sort)
+	 * @param messages the messages to sort
+	 * @param ordering the ordering
+	 * @return a new list of sorted messages
+	 */
+	private static List<Message> sorted(List<Message> messages,
+	                                    MessageOrdering ordering)
+	{
+		List<Message> sorted = new ArrayList<Message>(messages);
+		sorted.sort(ordering);
+		return sorted;
+	}
+
+	/**
+	 * Checks a store's view and filtered views against messages sorted in
+	 * memory
+	 * @param store the store to check
+	 * @param messages the messages added to the store in arrival order
+	 */
+	private static void check(MessageStore store, List<Message> messages)
+	{
+		List<Message> expected = sorted(messages, store.getOrdering());
+		assertEquals(expected, view(store));
+		assertEquals(expected, store.stream().collect(Collectors.toList()));
+
+		AuthorTable table = AuthorTable.getInstance();
+		BitSet authors = new BitSet();
+		authors.set(table.id("author1"));
+		authors.set(table.id("author3"));
+		List<Message> filtered = expected.stream()
+		    .filter((Message m) -> "author1".equals(m.getAuthor()) ||
+		                           "author3".equals(m.getAuthor()))
+		    .collect(Collectors.toList());
+		assertEquals(filtered.size(), store.count(authors));
+		assertEquals(filtered, store.stream(authors).collect(Collectors.toList()));
+		int[] positions = store.positions(authors);
+		assertEquals(filtered.size(), positions.length);
+		for (int i = 0; i < positions.length; i++)
+		{
+			assertEquals(filtered.get(i), store.get(positions[i]));
+		}
+		int before = 0;
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(before, store.filteredIndex(i, authors));
+			if (filtered.contains(expected.get(i)))
+			{
+				before++;
+			}
+		}
+	}
+
+	/**
+	 * Messages are kept in arrival order without ordering
+	 */
+	@Test
+	public void testArrivalOrder()
+	{
+		MessageStore store = new MessageStore();
+		List<Message> messages = SpillingMessageListTest.messages(100);
+		for (int i = 0; i < messages.size(); i++)
+		{
+			assertEquals(i, store.add(messages.get(i)));
+		}
+		assertFalse(store.isSorted());
+		assertEquals(messages, view(store));
+	}
+
+	/**
+	 * Messages added to a sorted store are inserted at their view index
+	 */
+	@Test
+	public void testAddSorted()
+	{
+		MessageStore store = new MessageStore();
+		assertTrue(store.setOrdering(BY_AUTHOR));
+		assertFalse(store.setOrdering(BY_AUTHOR));
+		List<Message> messages = SpillingMessageListTest.messages(500);
+		List<Message> added = new ArrayList<Message>();
+		for (Message message : messages)
+		{
+			int index = store.add(message);
+			added.add(message);
+			assertEquals(message, store.getSorted(index));
+		}
+		check(store, added);
+	}
+
+	/**
+	 * Changing the ordering resorts the view, back to arrival order included
+	 */
+	@Test
+	public void testSetOrdering()
+	{
+		MessageStore store = new MessageStore();
+		List<Message> messages = SpillingMessageListTest.messages(500);
+		messages.forEach(store::add);
+		check(store, messages);
+		store.setOrdering(BY_AUTHOR);
+		check(store, messages);
+		store.setOrdering(MessageOrdering.of(Message.MessageOrder.CONTENT));
+		check(store, messages);
+		store.setOrdering(MessageOrdering.NONE);
+		check(store, messages);
+	}
+
+	/**
+	 * Messages added after the view has been resorted are inserted at their
+	 * view index (in the middle of the view with a content ordering)
+	 */
+	@Test
+	public void testAddAfterSetOrdering()
+	{
+		MessageStore store = new MessageStore();
+		List<Message> messages = SpillingMessageListTest.messages(1000);
+		List<Message> added = new ArrayList<Message>(messages.subList(0, 500));
+		added.forEach(store::add);
+		store.setOrdering(MessageOrdering.of(Message.MessageOrder.CONTENT));
+		for (Message message : messages.subList(500, 1000))
+		{
+			int index = store.add(message);
+			added.add(message);
+			assertEquals(message, store.getSorted(index));
+		}
+		check(store, added);
+	}
+
+	/**
+	 * A store with a window spills older messages and still sorts and filters
+	 * all messages
+	 * @throws IOException if the spill file can not be used
+	 */
+	@Test
+	public void testSpilledStore() throws IOException
+	{
+		try (MessageStore store =
+		    new MessageStore(WINDOW, new File(directory, "spill")))
+		{
+			List<Message> messages = SpillingMessageListTest.messages(4 * WINDOW);
+			messages.forEach(store::add);
+			check(store, messages);
+			store.setOrdering(BY_AUTHOR);
+			check(store, messages);
+			List<Message> more = SpillingMessageListTest.messages(WINDOW);
+			more.forEach(store::add);
+			messages.addAll(more);
+			check(store, messages);
+		}
+	}
+
+	/**
+	 * Changing the ordering of a store with a window whose size is not a
+	 * multiple of the window (as when the user sorts messages in a client
+	 * started with a window)
+	 * @throws IOException if the spill file can not be used
+	 */
+	@Test
+	public void testSpilledStorePartialRun() throws IOException
+	{
+		try (MessageStore store =
+		    new MessageStore(300, new File(directory, "partial")))
+		{
+			List<Message> messages = SpillingMessageListTest.messages(1000);
+			messages.forEach(store::add);
+			store.setOrdering(BY_AUTHOR);
+			check(store, messages);
+			store.setOrdering(MessageOrdering.of(Message.MessageOrder.CONTENT));
+			check(store, messages);
+		}
+	}
+
+	/**
+	 * Clearing a store keeps its ordering
+	 */
+	@Test
+	public void testClear()
+	{
+		MessageStore store = new MessageStore();
+		store.setOrdering(BY_AUTHOR);
+		SpillingMessageListTest.messages(50).forEach(store::add);
+		store.clear();
+		assertTrue(store.isEmpty());
+		assertEquals(BY_AUTHOR, store.getOrdering());
+		List<Message> messages = SpillingMessageListTest.messages(20);
+		messages.forEach(store::add);
+		check(store, messages);
+	}
+
+	/**
+	 * Positions of messages from no author
+	 */
+	@Test
+	public void testNoAuthors()
+	{
+		MessageStore store = new MessageStore();
+		SpillingMessageListTest.messages(20).forEach(store::add);
+		assertArrayEquals(new int[0], store.positions(new BitSet()));
+	}
+}
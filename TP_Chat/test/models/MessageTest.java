@@ -0,0 +1,99 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link Message} authors: names are only registered in the
+ * {@link AuthorTable} when their id is requested, so creating or
+ * deserializing messages (as the server does) never fills the table.
+ * @author davidroussel
+ */
+public class MessageTest
+{
+	/**
+	 * Serializes and deserializes a message
+	 * @param message the message to copy
+	 * @return a deserialized copy of message
+	 * @throws IOException if serialization fails
+	 * @throws ClassNotFoundException if deserialization fails
+	 */
+	private static Message copy(Message message)
+		throws IOException, ClassNotFoundException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(message);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(
+		    new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			return (Message) in.readObject();
+		}
+	}
+
+	/**
+	 * Created and deserialized messages do not register their authors until
+	 * their ids are requested
+	 * @throws IOException if serialization fails
+	 * @throws ClassNotFoundException if deserialization fails
+	 */
+	@Test
+	public void testLazyRegistration() throws IOException, ClassNotFoundException
+	{
+		AuthorTable table = AuthorTable.getInstance();
+		String name = "unregistered-" + System.nanoTime();
+		Message message = new Message(1000L, "hello", name);
+		Message copy = copy(message);
+		assertEquals(AuthorTable.NO_AUTHOR, table.find(name));
+		assertEquals(message, copy);
+		assertEquals(message.hashCode(), copy.hashCode());
+		assertEquals(AuthorTable.NO_AUTHOR, table.find(name));
+
+		int id = message.getAuthorId();
+		assertEquals(id, table.find(name));
+		assertEquals(id, copy.getAuthorId());
+		assertSame(message.getAuthor(), copy.getAuthor());
+		assertEquals(message, copy);
+	}
+
+	/**
+	 * Messages without author are never registered
+	 */
+	@Test
+	public void testNoAuthor()
+	{
+		Message message = new Message(1000L, "hello", null);
+		assertEquals(AuthorTable.NO_AUTHOR, message.getAuthorId());
+		assertEquals(null, message.getAuthor());
+	}
+
+	/**
+	 * Authors are compared by name whether they are registered or not
+	 */
+	@Test
+	public void testAuthorOrder()
+	{
+		MessageOrdering byAuthor = MessageOrdering.of(Message.MessageOrder.AUTHOR);
+		Message a = new Message(1000L, "hello", "a" + System.nanoTime());
+		Message b = new Message(1000L, "hello", "b" + System.nanoTime());
+		Message server = new Message(1000L, "hello", null);
+		assertTrue(byAuthor.compare(a, b) < 0);
+		b.getAuthorId();
+		assertTrue(byAuthor.compare(b, a) > 0);
+		assertTrue(byAuthor.compare(server, a) < 0);
+		assertEquals(0, byAuthor.compare(a, new Message(2000L, "bye", a.getAuthor())));
+		assertNotEquals(a, b);
+	}
+}
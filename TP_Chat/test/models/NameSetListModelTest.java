@@ -0,0 +1,155 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link NameSetListModel}: names are unique and sorted, and each
+ * change fires a {@link ListDataEvent} on the exact index of the added or
+ * removed name.
+ * @author davidroussel
+ */
+public class NameSetListModelTest
+{
+	/**
+	 * The model under test
+	 */
+	private NameSetListModel model;
+
+	/**
+	 * Received events as strings such as "added 1-1"
+	 */
+	private List<String> events;
+
+	/**
+	 * Creates an empty model listened to by a listener recording events
+	 */
+	@BeforeEach
+	public void setUp()
+	{
+		model = new NameSetListModel();
+		events = new ArrayList<String>();
+		model.addListDataListener(new ListDataListener()
+		{
+			@Override
+			public void intervalAdded(ListDataEvent e)
+			{
+				events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e)
+			{
+				events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e)
+			{
+				events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+		});
+	}
+
+	/**
+	 * Model content as a list
+	 * @return the names of the model in index order
+	 */
+	private List<String> content()
+	{
+		List<String> content = new ArrayList<String>();
+		for (int i = 0; i < model.getSize(); i++)
+		{
+			content.add(model.getElementAt(i));
+		}
+		return content;
+	}
+
+	/**
+	 * Names are inserted at their sorted index
+	 */
+	@Test
+	public void testAdd()
+	{
+		assertTrue(model.add("charlie"));
+		assertTrue(model.add("alice"));
+		assertTrue(model.add("bob"));
+		assertFalse(model.add("bob"));
+		assertFalse(model.add(""));
+		assertFalse(model.add(null));
+
+		assertEquals(Arrays.asList("alice", "bob", "charlie"), content());
+		assertEquals(Arrays.asList("added 0-0", "added 0-0", "added 1-1"),
+		             events);
+		assertEquals(1, model.indexOf("bob"));
+		assertEquals(-1, model.indexOf("dave"));
+		assertTrue(model.contains("alice"));
+		assertNull(model.getElementAt(3));
+	}
+
+	/**
+	 * Removals fire events on the removed index
+	 */
+	@Test
+	public void testRemove()
+	{
+		model.add("alice");
+		model.add("bob");
+		model.add("charlie");
+		events.clear();
+
+		assertTrue(model.remove("bob"));
+		assertFalse(model.remove("bob"));
+		assertTrue(model.remove(1));
+		assertFalse(model.remove(5));
+
+		assertEquals(Arrays.asList("alice"), content());
+		assertEquals(Arrays.asList("removed 1-1", "removed 1-1"), events);
+	}
+
+	/**
+	 * Names are a snapshot which is not affected by later changes
+	 */
+	@Test
+	public void testGetNames()
+	{
+		model.add("bob");
+		model.add("alice");
+		List<String> names = model.getNames();
+		model.add("charlie");
+		model.remove("alice");
+
+		assertEquals(Arrays.asList("alice", "bob"), names);
+		assertEquals(Arrays.asList("bob", "charlie"), model.getNames());
+	}
+
+	/**
+	 * Clearing fires a single event on the whole range
+	 */
+	@Test
+	public void testClear()
+	{
+		model.add("alice");
+		model.add("bob");
+		events.clear();
+
+		model.clear();
+		model.clear();
+
+		assertEquals(0, model.getSize());
+		assertEquals(Arrays.asList("removed 0-1"), events);
+		assertEquals("", model.toString());
+	}
+}
@@ -0,0 +1,410 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import models.ObservableSortedSet.Change;
+
+/**
+ * Tests of {@link ObservableSortedSet} and
+ * {@link ConcurrentObservableSortedSet} notifications: observers receive the
+ * list of changes with the index of each added or removed element, and
+ * batches are notified once.
+ * @author davidroussel
+ */
+public class ObservableSortedSetTest
+{
+	/**
+	 * Implementations under test
+	 * @return suppliers of empty sets of both implementations
+	 */
+	static Stream<Supplier<ObservableSortedSet<String>>> implementations()
+	{
+		return Stream.of(ObservableSortedSet<String>::new,
+		                 ConcurrentObservableSortedSet<String>::new);
+	}
+
+	/**
+	 * Observer recording all notifications
+	 */
+	private static class Recorder implements Observer
+	{
+		/**
+		 * Received notifications (each one a list of changes)
+		 */
+		final List<List<Change<String>>> notifications =
+		    new ArrayList<List<Change<String>>>();
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void update(Observable o, Object arg)
+		{
+			notifications.add((List<Change<String>>) arg);
+		}
+
+		/**
+		 * All received changes as strings
+		 * @return the received changes (such as "ADDED b at 1") of all
+		 * notifications
+		 */
+		List<String> changes()
+		{
+			List<String> changes = new ArrayList<String>();
+			for (List<Change<String>> notification : notifications)
+			{
+				for (Change<String> change : notification)
+				{
+					changes.add(change.toString());
+				}
+			}
+			return changes;
+		}
+	}
+
+	/**
+	 * Observer mirroring the set in a list by applying each change at its
+	 * index
+	 */
+	private static class Mirror implements Observer
+	{
+		/**
+		 * Mirrored elements
+		 */
+		final List<String> elements = new ArrayList<String>();
+
+		/**
+		 * Number of received changes
+		 */
+		int changes = 0;
+
+		/**
+		 * Number of removed elements which were not at the notified index
+		 */
+		int mismatches = 0;
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void update(Observable o, Object arg)
+		{
+			for (Change<String> change : (List<Change<String>>) arg)
+			{
+				switch (change.getType())
+				{
+					case ADDED:
+						elements.add(change.getIndex(), change.getElement());
+						break;
+					case REMOVED:
+						String removed = elements.remove(change.getIndex());
+						if (!removed.equals(change.getElement()))
+						{
+							mismatches++;
+						}
+						break;
+					case CLEARED:
+						elements.clear();
+						break;
+				}
+				changes++;
+			}
+		}
+	}
+
+	/**
+	 * Runs writers concurrently until they all end
+	 * @param count the number of writer threads
+	 * @param writer the writer run by each thread (with the index of the
+	 * thread)
+	 * @throws InterruptedException if interrupted while waiting for writers
+	 */
+	private static void runWriters(int count, IntConsumer writer)
+		throws InterruptedException
+	{
+		Thread[] threads = new Thread[count];
+		for (int i = 0; i < count; i++)
+		{
+			final int id = i;
+			threads[i] = new Thread(() -> writer.accept(id));
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+	}
+
+	/**
+	 * Each single change is notified with its index
+	 * @param implementation the set implementation
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testSingleChanges(Supplier<ObservableSortedSet<String>> implementation)
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		Recorder recorder = new Recorder();
+		set.addObserver(recorder, true);
+
+		assertTrue(set.add("c"));
+		assertTrue(set.add("a"));
+		assertTrue(set.add("b"));
+		assertFalse(set.add("b"));
+		assertTrue(set.remove("a"));
+		assertFalse(set.remove("z"));
+		set.clear();
+		set.clear();
+
+		assertEquals(5, recorder.notifications.size());
+		assertEquals(Arrays.asList("ADDED c at 0", "ADDED a at 0",
+		                           "ADDED b at 1", "REMOVED a at 0",
+		                           "CLEARED"),
+		             recorder.changes());
+		assertTrue(set.isEmpty());
+	}
+
+	/**
+	 * Bulk operations are notified once with all their changes
+	 * @param implementation the set implementation
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testBulkChanges(Supplier<ObservableSortedSet<String>> implementation)
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		Recorder recorder = new Recorder();
+		set.addObserver(recorder, true);
+
+		assertTrue(set.addAll(Arrays.asList("d", "b", "a", "c")));
+		assertEquals(1, recorder.notifications.size());
+		assertEquals(4, recorder.notifications.get(0).size());
+
+		assertTrue(set.removeAll(Arrays.asList("a", "z", "c")));
+		assertEquals(2, recorder.notifications.size());
+		assertEquals(Arrays.asList("REMOVED a at 0", "REMOVED c at 1"),
+		             recorder.changes().subList(4, 6));
+
+		assertTrue(set.retainAll(Arrays.asList("d")));
+		assertEquals(3, recorder.notifications.size());
+		assertEquals("REMOVED b at 0", recorder.changes().get(6));
+		assertEquals(Arrays.asList("d"), new ArrayList<String>(set));
+
+		assertFalse(set.addAll(Arrays.asList("d")));
+		assertEquals(3, recorder.notifications.size());
+	}
+
+	/**
+	 * Nested batches are notified once at the end of the outermost batch
+	 * @param implementation the set implementation
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testBatch(Supplier<ObservableSortedSet<String>> implementation)
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		Recorder recorder = new Recorder();
+		set.addObserver(recorder, true);
+
+		set.beginBatch();
+		set.add("b");
+		set.beginBatch();
+		set.add("a");
+		set.endBatch();
+		assertTrue(recorder.notifications.isEmpty());
+		set.remove("b");
+		set.endBatch();
+
+		assertEquals(1, recorder.notifications.size());
+		assertEquals(Arrays.asList("ADDED b at 0", "ADDED a at 0",
+		                           "REMOVED b at 1"),
+		             recorder.changes());
+		assertThrows(IllegalStateException.class, set::endBatch);
+	}
+
+	/**
+	 * Observers of bulk operations are notified once the set is unlocked, so
+	 * they can wait for another thread accessing the set
+	 * @param implementation the set implementation
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testBulkNotificationUnlocked(Supplier<ObservableSortedSet<String>> implementation)
+		throws InterruptedException
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		List<Boolean> accessed = new ArrayList<Boolean>();
+		set.addObserver((Observable o, Object arg) -> {
+			if (accessed.isEmpty())
+			{
+				Thread other = new Thread(() -> set.contains("a"));
+				other.start();
+				try
+				{
+					other.join(2000);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				accessed.add(Boolean.valueOf(!other.isAlive()));
+			}
+		});
+
+		set.addAll(Arrays.asList("a", "b"));
+		assertEquals(Arrays.asList(Boolean.TRUE), accessed);
+	}
+
+	/**
+	 * Changes performed concurrently by several writers are all notified,
+	 * in the order they have been performed
+	 * @param implementation the set implementation
+	 * @throws InterruptedException if interrupted while waiting for writers
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testConcurrentWriters(Supplier<ObservableSortedSet<String>> implementation)
+		throws InterruptedException
+	{
+		final int writers = 4;
+		final int adds = 2000;
+		ObservableSortedSet<String> set = implementation.get();
+		Mirror mirror = new Mirror();
+		set.addObserver(mirror, true);
+
+		runWriters(writers, (int id) -> {
+			for (int i = 0; i < adds; i++)
+			{
+				set.add("w" + id + "-" + i);
+			}
+		});
+
+		assertEquals(writers * adds, set.size());
+		assertEquals(writers * adds, mirror.changes);
+		assertEquals(new ArrayList<String>(set), mirror.elements);
+	}
+
+	/**
+	 * Additions and removals of the same elements by concurrent writers are
+	 * notified with indices consistent with the order of the changes
+	 * @param implementation the set implementation
+	 * @throws InterruptedException if interrupted while waiting for writers
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testConcurrentAddsAndRemovals(Supplier<ObservableSortedSet<String>> implementation)
+		throws InterruptedException
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		Mirror mirror = new Mirror();
+		set.addObserver(mirror, true);
+		AtomicInteger changes = new AtomicInteger();
+
+		runWriters(4, (int id) -> {
+			Random rand = new Random(id);
+			for (int i = 0; i < 5000; i++)
+			{
+				String element = "e" + rand.nextInt(200);
+				boolean changed = (rand.nextBoolean() ? set.add(element)
+				                                      : set.remove(element));
+				if (changed)
+				{
+					changes.incrementAndGet();
+				}
+			}
+		});
+
+		assertEquals(changes.get(), mirror.changes);
+		assertEquals(0, mirror.mismatches);
+		assertEquals(new ArrayList<String>(set), mirror.elements);
+	}
+
+	/**
+	 * Indices are only computed for observers requesting them
+	 * @param implementation the set implementation
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testIndicesOnRequest(Supplier<ObservableSortedSet<String>> implementation)
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		Recorder recorder = new Recorder();
+		set.addObserver(recorder);
+		set.add("b");
+		set.add("a");
+		assertEquals(Arrays.asList("ADDED b at -1", "ADDED a at -1"),
+		             recorder.changes());
+
+		Recorder indexed = new Recorder();
+		set.addObserver(indexed, true);
+		set.remove("b");
+		assertEquals("REMOVED b at 1", indexed.changes().get(0));
+
+		set.deleteObserver(indexed);
+		set.add("c");
+		assertEquals("ADDED c at -1", recorder.changes().get(3));
+	}
+
+	/**
+	 * Sub set views can not be used to change the set without notification
+	 * @param implementation the set implementation
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testUnmodifiableViews(Supplier<ObservableSortedSet<String>> implementation)
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		set.addAll(Arrays.asList("a", "b", "c"));
+
+		assertEquals(Arrays.asList("b"), new ArrayList<String>(set.subSet("b", "c")));
+		assertEquals(Arrays.asList("a"), new ArrayList<String>(set.headSet("b")));
+		assertEquals(Arrays.asList("b", "c"), new ArrayList<String>(set.tailSet("b")));
+		assertThrows(UnsupportedOperationException.class,
+		             () -> set.headSet("c").add("a0"));
+		assertThrows(UnsupportedOperationException.class,
+		             () -> set.tailSet("a").remove("b"));
+		assertThrows(UnsupportedOperationException.class,
+		             () -> set.subSet("a", "c").clear());
+		assertEquals(3, set.size());
+	}
+
+	/**
+	 * Removals through the iterator are notified
+	 * @param implementation the set implementation
+	 */
+	@ParameterizedTest
+	@MethodSource("implementations")
+	public void testIteratorRemove(Supplier<ObservableSortedSet<String>> implementation)
+	{
+		ObservableSortedSet<String> set = implementation.get();
+		set.addAll(Arrays.asList("a", "b", "c"));
+		Recorder recorder = new Recorder();
+		set.addObserver(recorder, true);
+
+		for (Iterator<String> it = set.iterator(); it.hasNext();)
+		{
+			if (it.next().equals("b"))
+			{
+				it.remove();
+			}
+		}
+
+		assertEquals(Arrays.asList("REMOVED b at 1"), recorder.changes());
+		assertEquals(Arrays.asList("a", "c"), new ArrayList<String>(set));
+	}
+}
@@ -0,0 +1,146 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link PositionTree}: positions inserted in random order or built
+ * from sorted positions are selected, ranked, counted and traversed as in a
+ * sorted list.
+ * @author davidroussel
+ */
+public class PositionTreeTest
+{
+	/**
+	 * Number of positions
+	 */
+	private static final int COUNT = 2000;
+
+	/**
+	 * Random keys of positions (ties broken by positions)
+	 */
+	private static final int[] KEYS = new int[COUNT];
+
+	static
+	{
+		Random rand = new Random(COUNT);
+		for (int i = 0; i < COUNT; i++)
+		{
+			KEYS[i] = rand.nextInt(COUNT / 4);
+		}
+	}
+
+	/**
+	 * Order of positions according to their {@link #KEYS}
+	 */
+	private static final Comparator<Integer> ORDER =
+	    Comparator.comparingInt((Integer p) -> KEYS[p])
+	              .thenComparingInt((Integer p) -> p);
+
+	/**
+	 * Checks a tree against sorted positions
+	 * @param tree the forest containing the tree
+	 * @param root the root of the tree
+	 * @param sorted the positions of the tree in order
+	 */
+	private static void check(PositionTree tree, int root, List<Integer> sorted)
+	{
+		assertEquals(sorted.size(), tree.size(root));
+		for (int i = 0; i < sorted.size(); i++)
+		{
+			int position = sorted.get(i);
+			assertEquals(position, tree.select(root, i));
+			assertEquals(i, tree.rank(position));
+			assertEquals(i, tree.countBefore(root,
+			    (int node) -> ORDER.compare(position, node)));
+		}
+
+		List<Integer> traversed = new ArrayList<Integer>();
+		for (int p = tree.first(root); p != PositionTree.NIL; p = tree.next(p))
+		{
+			traversed.add(p);
+		}
+		assertEquals(sorted, traversed);
+		assertEquals(sorted.get(sorted.size() - 1).intValue(), tree.last(root));
+	}
+
+	/**
+	 * Positions inserted one by one in a tree
+	 */
+	@Test
+	public void testInsert()
+	{
+		PositionTree tree = new PositionTree(16);
+		int root = PositionTree.NIL;
+		List<Integer> sorted = new ArrayList<Integer>();
+		for (int p = 0; p < COUNT; p++)
+		{
+			final int position = p;
+			tree.ensureCapacity(position + 1);
+			root = tree.insert(root, position,
+			                   (int node) -> ORDER.compare(position, node));
+			sorted.add(position);
+		}
+		sorted.sort(ORDER);
+		check(tree, root, sorted);
+	}
+
+	/**
+	 * Two trees of a forest built from sorted positions then grown by
+	 * insertions
+	 */
+	@Test
+	public void testBuildForest()
+	{
+		PositionTree tree = new PositionTree(COUNT);
+		List<Integer> evens = new ArrayList<Integer>();
+		List<Integer> odds = new ArrayList<Integer>();
+		for (int p = 0; p < COUNT / 2; p++)
+		{
+			(p % 2 == 0 ? evens : odds).add(p);
+		}
+		evens.sort(ORDER);
+		odds.sort(ORDER);
+		int[] positions = new int[COUNT / 2];
+		for (int i = 0; i < evens.size(); i++)
+		{
+			positions[i] = evens.get(i);
+		}
+		for (int i = 0; i < odds.size(); i++)
+		{
+			positions[evens.size() + i] = odds.get(i);
+		}
+		int evenRoot = tree.build(positions, 0, evens.size());
+		int oddRoot = tree.build(positions, evens.size(), positions.length);
+		assertEquals(PositionTree.NIL, tree.build(positions, 0, 0));
+		check(tree, evenRoot, evens);
+		check(tree, oddRoot, odds);
+
+		for (int p = COUNT / 2; p < COUNT; p++)
+		{
+			final int position = p;
+			if (p % 2 == 0)
+			{
+				evenRoot = tree.insert(evenRoot, position,
+				    (int node) -> ORDER.compare(position, node));
+				evens.add(position);
+			}
+			else
+			{
+				oddRoot = tree.insert(oddRoot, position,
+				    (int node) -> ORDER.compare(position, node));
+				odds.add(position);
+			}
+		}
+		evens.sort(ORDER);
+		odds.sort(ORDER);
+		check(tree, evenRoot, evens);
+		check(tree, oddRoot, odds);
+	}
+}
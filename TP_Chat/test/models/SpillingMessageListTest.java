@@ -0,0 +1,213 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of {@link SpillingMessageList}: messages spilled to a file are read
+ * back unchanged and sorting by runs gives the same positions as sorting in
+ * memory.
+ * @author davidroussel
+ */
+public class SpillingMessageListTest
+{
+	/**
+	 * Capacity of the tested list
+	 */
+	private static final int CAPACITY = 256;
+
+	/**
+	 * Directory of the spill file (and of the run files)
+	 */
+	@TempDir
+	File directory;
+
+	/**
+	 * The list under test
+	 */
+	private SpillingMessageList list;
+
+	/**
+	 * Creates an empty list
+	 * @throws IOException if the spill file can not be opened
+	 */
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		list = new SpillingMessageList(CAPACITY, new File(directory, "spill"));
+	}
+
+	/**
+	 * Closes the spill file
+	 * @throws IOException if the spill file can not be closed
+	 */
+	@AfterEach
+	public void tearDown() throws IOException
+	{
+		list.close();
+	}
+
+	/**
+	 * Random messages from a few authors (some without author)
+	 * @param count the number of messages
+	 * @return a new list of messages
+	 */
+	static List<Message> messages(int count)
+	{
+		Random rand = new Random(count);
+		List<Message> messages = new ArrayList<Message>(count);
+		for (int i = 0; i < count; i++)
+		{
+			int author = rand.nextInt(5);
+			messages.add(new Message(1000000L + rand.nextInt(count),
+			                         "content " + rand.nextInt(100),
+			                         (author < 4 ? "author" + author : null)));
+		}
+		return messages;
+	}
+
+	/**
+	 * Positions of messages sorted in memory (stable sort)
+	 * @param messages the messages to sort
+	 * @param comparator the comparator to sort messages with
+	 * @return the positions of the sorted messages
+	 */
+	static int[] sortedInMemory(List<Message> messages,
+	                            Comparator<? super Message> comparator)
+	{
+		List<Integer> positions = new ArrayList<Integer>();
+		for (int i = 0; i < messages.size(); i++)
+		{
+			positions.add(i);
+		}
+		positions.sort((Integer p1, Integer p2) ->
+		    comparator.compare(messages.get(p1), messages.get(p2)));
+		int[] result = new int[positions.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = positions.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Capacity lower than a page is rejected
+	 */
+	@Test
+	public void testCapacityTooSmall()
+	{
+		assertThrows(IllegalArgumentException.class,
+		             () -> new SpillingMessageList(SpillingMessageList.PAGE_SIZE - 1,
+		                                           new File(directory, "small")));
+	}
+
+	/**
+	 * Spilled messages are read back unchanged and in order
+	 */
+	@Test
+	public void testSpillAndGet()
+	{
+		List<Message> messages = messages(5 * CAPACITY);
+		list.addAll(messages);
+
+		assertEquals(messages.size(), list.size());
+		assertEquals(0, list.spilled() % SpillingMessageList.PAGE_SIZE);
+		assertEquals(messages.size() - CAPACITY - SpillingMessageList.PAGE_SIZE,
+		             list.spilled());
+		for (int i = 0; i < messages.size(); i++)
+		{
+			Message expected = messages.get(i);
+			Message actual = list.get(i);
+			assertEquals(expected, actual);
+			assertEquals(expected.getAuthor(), actual.getAuthor());
+		}
+	}
+
+	/**
+	 * Messages can only be appended
+	 */
+	@Test
+	public void testAppendOnly()
+	{
+		list.add(new Message("first"));
+		assertThrows(UnsupportedOperationException.class,
+		             () -> list.add(0, new Message("second")));
+	}
+
+	/**
+	 * Clearing removes spilled messages
+	 */
+	@Test
+	public void testClear()
+	{
+		list.addAll(messages(3 * CAPACITY));
+		list.clear();
+		assertEquals(0, list.size());
+		assertEquals(0, list.spilled());
+		list.add(new Message("again"));
+		assertEquals("again", list.get(0).getContent());
+	}
+
+	/**
+	 * Sorting a list whose size is a multiple of its capacity (runs of the
+	 * same length) gives the same positions as a stable sort in memory
+	 */
+	@Test
+	public void testSortedPositionsFullRuns()
+	{
+		List<Message> messages = messages(4 * CAPACITY);
+		list.addAll(messages);
+		MessageOrdering ordering = MessageOrdering.of(Message.MessageOrder.AUTHOR,
+		                                              Message.MessageOrder.DATE);
+		assertArrayEquals(sortedInMemory(messages, ordering),
+		                  list.sortedPositions(ordering));
+	}
+
+	/**
+	 * Sorting a list whose size is not a multiple of its capacity (last run
+	 * shorter than the others) gives the same positions as a stable sort in
+	 * memory
+	 * @throws IOException if the spill file can not be opened
+	 */
+	@Test
+	public void testSortedPositionsPartialRun() throws IOException
+	{
+		try (SpillingMessageList spilling =
+		    new SpillingMessageList(300, new File(directory, "partial")))
+		{
+			List<Message> messages = messages(1000);
+			spilling.addAll(messages);
+			MessageOrdering ordering =
+			    MessageOrdering.of(Message.MessageOrder.CONTENT,
+			                       Message.MessageOrder.DATE);
+			assertArrayEquals(sortedInMemory(messages, ordering),
+			                  spilling.sortedPositions(ordering));
+		}
+	}
+
+	/**
+	 * Sorting a list holding less than its capacity (single run)
+	 */
+	@Test
+	public void testSortedPositionsSingleRun()
+	{
+		List<Message> messages = messages(CAPACITY / 2);
+		list.addAll(messages);
+		MessageOrdering ordering = MessageOrdering.of(Message.MessageOrder.CONTENT);
+		assertArrayEquals(sortedInMemory(messages, ordering),
+		                  list.sortedPositions(ordering));
+	}
+}